@@ -1,8 +1,16 @@
 package avl_tree;
 
 import exception.*;
+import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Class to implement a BalanceSearchTree.
@@ -18,13 +26,20 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
    * pair as well as reference to its left child node and its right child node.
    * A node also has balanceFactor and height.
    * 
+   * Every node also carries the fields of the optional features, used or not:
+   * live and deleted for lazy deletion, hash for hashing and hits for the
+   * adaptive mode. On a 64-bit JVM with compressed references they grow a
+   * node from 40 to 64 bytes, before the key and the value. Trees that keep
+   * millions of keys, or churn through nodes, pay this cost even with every
+   * feature off; the node pool only saves the allocations.
+   * 
    * @param <K> is the generic type of key.
    * @param <V> is the generic type of value.
    * 
    * @author Debra Deppeler.
    */
   @SuppressWarnings("hiding")
-  class Node<K, V> {
+  static class Node<K, V> {
     K key; // Key of node.
     V value; // Value of node.
     Node<K, V> left; // Reference to its left child node.
@@ -32,6 +47,11 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
     int balanceFactor; // Balance factor of node, difference between
                        // left-subtree's height and right-subtree's height.
     int height; // Height of this node.
+    int size; // Number of nodes of the sub-tree rooted at this node.
+    int live; // Number of nodes of the sub-tree that are not tombstones.
+    boolean deleted; // True for a tombstone left by lazy deletion.
+    long hash; // Sum of the entry hashes of the sub-tree, while hashing.
+    int hits; // Lookups of the key since the last biased rebuild, decayed.
 
     /**
      * BSTNode constructor that takes key-value pair as well as left and right
@@ -48,6 +68,8 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
       this.left = leftChild;
       this.right = rightChild;
       this.height = 1; // Default height of new node is 1.
+      this.size = 1; // A new node is alone in its sub-tree.
+      this.live = 1;
       this.balanceFactor = 0; // Zero as left and right subtrees's height are 0.
     }
 
@@ -64,6 +86,22 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
 
   private Node<K, V> root; // Root of the tree.
   private int numKeys; // Number of key-value pairs in BALST data structure.
+  private Node<K, V> minNode; // Node with the smallest key, null when empty.
+  private Node<K, V> maxNode; // Node with the largest key, null when empty.
+  private TreeMetrics metrics; // Counters, null while instrumentation is off.
+  private int comparisons; // Key comparisons of the current operation.
+  private int pathLength; // Nodes visited by the current operation.
+  private double maxTombstoneRatio; // Lazy deletion threshold, 0 when off.
+  private int numTombstones; // Nodes marked deleted but still linked.
+  private ChangeStream<K, V> changes; // Receives changes, null when detached.
+  private Node<K, V> freeNodes; // Removed nodes to reuse, linked by right.
+  private int numFreeNodes; // Number of nodes in freeNodes.
+  private int maxFreeNodes; // Bound of freeNodes, 0 when pooling is off.
+  private boolean hashing; // True while sub-tree hashes are maintained.
+  private boolean adaptive; // True while lookups bias the shape of the tree.
+  private boolean biased; // True while the shape is not an AVL shape.
+  private int lookups; // Lookups since the last biased rebuild.
+  private BlockedBloomFilter filter; // Filter of the keys, null when off.
 
   /**
    * Constructor of this balanced search tree data structure. Initialize root as
@@ -75,434 +113,2259 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
   }
 
   /**
-   * Private helper method to check if the BALST is empty.
-   * 
-   * @return true if root is null and there is no keys, false otherwise.
+   * Attach counters that record comparisons, rotations, path lengths and
+   * traversal sizes of the following operations, or detach them with null.
+   * Operations slower than the Flight Recorder threshold are also emitted as
+   * TreeOperationEvent while counters are attached. The counts of the current
+   * operation are kept in the tree, so lookups must not run concurrently while
+   * counters are attached; without counters, get and contains write nothing.
+   *
+   * @param metrics counters to record into, or null to turn recording off.
    */
-  private boolean isEmpty() {
-    // Empty when root is null and there is no keys.
-    return this.numKeys == 0 && this.root == null;
+  public void setMetrics(TreeMetrics metrics) {
+    this.metrics = metrics;
   }
 
   /**
-   * Returns the key that is in the root node of this BST. If root is null,
-   * returns null.
-   * 
-   * @return key found at root node, or null.
+   * Returns the counters attached to this tree.
+   *
+   * @return attached counters, or null if recording is off.
    */
-  @Override
-  public K getKeyAtRoot() {
-    if (this.isEmpty())
-      return null;
-    else
-      return this.root.key;
+  public TreeMetrics getMetrics() {
+    return this.metrics;
   }
 
   /**
-   * Tries to find a node with a key that matches the specified key. If a
-   * matching node is found, it returns the returns the key that is in the left
-   * child. If the left child of the found node is null, returns null.
-   * 
-   * @param key A key to search for.
-   * @return The key that is in the left child of the found key.
-   * 
-   * @throws IllegalNullArgumentException if key argument is null.
-   * @throws KeyNotFoundException    if key is not found in this BST.
+   * Attach a stream that receives every following insert, update and removal
+   * of a key, or detach it with null. Split and concat publish one event per
+   * moved key while a stream is attached. Every change is published after it
+   * is applied; a closed stream is detached by the next change, which is
+   * applied without being published.
+   *
+   * @param changes stream to publish into, or null to stop publishing.
    */
-  @Override
-  public K getKeyOfLeftChildOf(K key)
-      throws IllegalNullArgumentException, KeyNotFoundException {
-    if (key == null) // Throw IllegalNullArgumentException when null key.
-      throw new IllegalNullArgumentException();
-    if (getNodeHelper(key, this.root) == null) // Key not found.
-      throw new KeyNotFoundException(); // Throw KeyNotFoundException.
-    else if (getNodeHelper(key, this.root).left == null)
-      return null; // Key found has no left child.
-    else // Key found and it has left child.
-      return getNodeHelper(key, this.root).left.key;
+  public void setChangeStream(ChangeStream<K, V> changes) {
+    this.changes = changes;
   }
 
   /**
-   * Tries to find a node with a key that matches the specified key. If a
-   * matching node is found, it returns the returns the key that is in the right
-   * child. If the right child of the found node is null, returns null.
-   * 
-   * @param key A key to search for.
-   * @return The key that is in the right child of the found key.
-   * 
-   * @throws IllegalNullArgumentException if key is null.
-   * @throws KeyNotFoundException    if key is not found in this BST.
+   * Returns the change stream attached to this tree.
+   *
+   * @return attached stream, or null if changes are not published.
    */
-  @Override
-  public K getKeyOfRightChildOf(K key)
-      throws IllegalNullArgumentException, KeyNotFoundException {
-    if (key == null) // Throw IllegalNullArgumentException when null key.
-      throw new IllegalNullArgumentException();
-    if (getNodeHelper(key, this.root) == null) // Key not found.
-      throw new KeyNotFoundException(); // Throw KeyNotFoundException.
-    else if (getNodeHelper(key, this.root).right == null)
-      return null; // Key found has no right child.
-    else // Key found and it has right child.
-      return getNodeHelper(key, this.root).right.key;
+  public ChangeStream<K, V> getChangeStream() {
+    return this.changes;
   }
 
   /**
-   * Returns the height of this BST. H is defined as the number of levels in the
-   * tree.
-   * 
-   * If root is null, return 0. If root is a leaf, return 1 Else return 1 +
-   * max(height(root.left), height(root.right)).
-   * 
-   * Examples: A BST with no keys, has a height of zero (0). A BST with one key,
-   * has a height of one (1). A BST with two keys, has a height of two (2). A
-   * BST with three keys, can be balanced with a height of two(2) or it may be
-   * linear with a height of three (3) ... and so on for tree with other heights
-   * 
-   * @return the number of levels that contain keys in this BINARY SEARCH TREE
+   * Publish a change if a stream is attached. Subclasses of this package call
+   * it when they change a value without going through this class.
+   *
+   * @param type  type of change.
+   * @param key   changed key.
+   * @param value new value, or removed value for REMOVE.
    */
-  @Override
-  public int getHeight() {
-    return getHeight(this.root);
+  void publishChange(ChangeEvent.Type type, K key, V value) {
+    if (this.changes != null && this.changes.publish(type, key, value) == 0)
+      this.changes = null; // Closed, detach it.
   }
 
   /**
-   * Get the height of a specific node.
-   * 
-   * @param current current node to calculate height.
-   * @return height of a specific node.
+   * Refuse a change made by the consumer of the attached stream, before
+   * anything is changed. Subclasses of this package call it first in their
+   * own changes.
+   *
+   * @throws IllegalStateException if called by the consumer of the stream.
    */
-  private int getHeight(Node<K, V> current) {
-    if (current == null)
-      return 0; // Node passed in is null.
-    if (current.left == null && current.right == null)
-      return 1; // Both children are null, height is 1.
-    if (current.left == null) // Left child is null, right child is not null.
-      return 1 + current.right.height; // Height is 1 + right child's size.
-    if (current.right == null) // Left child is not null, right child is null.
-      return 1 + current.left.height; // Height is 1 + left child's size.
-    // Else, it's 1 + max of left child's size and right child's size.
-    return 1 + Math.max(current.left.height, current.right.height);
+  void checkPublisher() {
+    if (this.changes != null)
+      this.changes.checkPublisher();
   }
 
   /**
-   * Get the balance factor of a specific node.
-   * 
-   * @param current current node to calculate height.
-   * @return balance factor of a specific node.
+   * Publish the removal of a node unlinked by remove, pollFirst or pollLast,
+   * if a stream is attached. Subclasses of this package that keep several
+   * values in a node override it to publish each of them.
+   *
+   * @param node the removed node.
    */
-  private int getBalanceFactor(Node<K, V> current) {
-    if (current == null)
-      return 0;
-    // Balance factor is difference of left and right sub-trees's height.
-    return getHeight(current.left) - getHeight(current.right);
+  void publishRemoved(Node<K, V> node) {
+    publishChange(ChangeEvent.Type.REMOVE, node.key, node.value);
   }
 
   /**
-   * Returns the keys of the data structure in sorted order. In the case of
-   * binary search trees, the visit order is: L V R.
-   * 
-   * If the SearchTree is empty, an empty list is returned.
-   * 
-   * @return List of Keys in-order.
+   * Publish the same change for every live key of a sub-tree, in order, if a
+   * stream is attached.
+   *
+   * @param type    type of change.
+   * @param current root of the sub-tree.
    */
-  @Override
-  public List<K> getInOrderTraversal() {
-    return getInOrderHelper(this.root); // Call recursive helper method.
+  private void publishAll(ChangeEvent.Type type, Node<K, V> current) {
+    if (this.changes == null || current == null)
+      return;
+    publishAll(type, current.left);
+    if (!current.deleted)
+      publishChange(type, current.key, current.value);
+    publishAll(type, current.right);
   }
 
   /**
-   * Recursive method to traverse tree in-order.
-   * 
-   * @param current the current node.
-   * @return the list of keys in-order.
+   * Start recording an operation if counters are attached. Subclasses of this
+   * package call it around the operations they do not delegate to this class.
+   *
+   * @return Flight Recorder event of the operation, or null if recording is
+   *         off.
    */
-  private List<K> getInOrderHelper(Node<K, V> current) {
-    // Create ArrayList to store keys.
-    List<K> keys = new ArrayList<K>();
-    if (current == null) // Base case: empty tree.
-      return keys;
-    // Recursive case: add left, add current, add right.
-    keys.addAll(getInOrderHelper(current.left)); // Add keys left sub-tree.
-    keys.add(current.key); // Add current node's key.
-    keys.addAll(getInOrderHelper(current.right)); // Add keys right sub-tree.
+  TreeOperationEvent beginOperation() {
+    if (this.metrics == null)
+      return null;
+    this.comparisons = 0;
+    this.pathLength = 0;
+    TreeOperationEvent event = new TreeOperationEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Finish recording an operation started with beginOperation.
+   *
+   * @param event     event returned by beginOperation.
+   * @param operation type of operation.
+   */
+  void endOperation(TreeOperationEvent event,
+      TreeMetrics.Operation operation) {
+    if (event == null || this.metrics == null)
+      return;
+    this.metrics.recordOperation(operation, this.comparisons, this.pathLength);
+    event.end();
+    if (event.shouldCommit()) { // Only slow operations are committed.
+      event.operation = operation.name();
+      event.comparisons = this.comparisons;
+      event.pathLength = this.pathLength;
+      event.numKeys = this.numKeys;
+      event.commit();
+    }
+  }
+
+  /**
+   * Add to the counts of the current operation if counters are attached.
+   * Without counters, operations write nothing, so lookups only read the tree.
+   *
+   * @param comparisons key comparisons to add.
+   * @param pathLength  visited nodes to add.
+   */
+  private void count(int comparisons, int pathLength) {
+    if (this.metrics == null)
+      return;
+    this.comparisons += comparisons;
+    this.pathLength += pathLength;
+  }
+
+  /**
+   * Record a rotation case if counters are attached.
+   *
+   * @param isDouble true for left-right and right-left cases.
+   */
+  private void recordRotation(boolean isDouble) {
+    if (this.metrics != null)
+      this.metrics.recordRotation(isDouble);
+  }
+
+  /**
+   * Record the size of a traversal if counters are attached.
+   *
+   * @param keys keys returned by the traversal.
+   * @return the same keys.
+   */
+  private List<K> recordTraversal(List<K> keys) {
+    if (this.metrics != null)
+      this.metrics.recordTraversal(keys.size());
     return keys;
   }
 
   /**
-   * Returns the keys of the data structure in pre-order traversal order. In the
-   * case of binary search trees, the order is: V L R.
-   * 
-   * If the SearchTree is empty, an empty list is returned.
+   * Returns the root node, for renderers and other helpers of this package.
+   * Compacts the tree first if lazy deletion has left tombstones.
    * 
-   * @return List of Keys in pre-order.
+   * @return root of the tree, or null if the tree is empty.
    */
-  @Override
-  public List<K> getPreOrderTraversal() {
-    return getPreOrderHelper(this.root); // Call recursive helper method.
+  Node<K, V> getRoot() {
+    purgeTombstones();
+    return this.root;
   }
 
   /**
-   * Recursive method to traverse tree pre-order.
+   * Construct the node of a new key. Subclasses of this package override it to
+   * use their own node type or to index the new node.
    * 
-   * @param current the current node.
-   * @return the list of keys pre-order.
+   * @param key   key of node.
+   * @param value value of node.
+   * @return the new node.
    */
-  private List<K> getPreOrderHelper(Node<K, V> current) {
-    // Create ArrayList to store keys.
-    List<K> keys = new ArrayList<K>();
-    if (current == null) // Base case: empty tree.
-      return keys;
-    // Recursive case: add current, add left, add right.
-    keys.add(current.key); // Add current node's key.
-    keys.addAll(getPreOrderHelper(current.left)); // Add keys left sub-tree.
-    keys.addAll(getPreOrderHelper(current.right)); // Add keys right sub-tree.
-    return keys;
+  Node<K, V> createNode(K key, V value) {
+    Node<K, V> node = this.freeNodes;
+    if (node == null)
+      return new Node<K, V>(key, value);
+    this.freeNodes = node.right; // Reuse a removed node.
+    this.numFreeNodes--;
+    node.key = key;
+    node.value = value;
+    node.right = null;
+    node.height = 1;
+    node.size = 1;
+    node.live = 1;
+    node.balanceFactor = 0;
+    return node;
   }
 
+  /**
+   * Keep removed nodes, up to maxPooled of them, and reuse them for the next
+   * inserted keys instead of allocating, or stop with 0. A pooled node drops
+   * its key and value, so the pool does not keep them reachable.
+   *
+   * @param maxPooled largest number of removed nodes kept, 0 to turn pooling
+   *                  off and release the pooled nodes.
+   *
+   * @throws IllegalArgumentException      if maxPooled is negative.
+   * @throws UnsupportedOperationException if the tree uses its own nodes.
+   */
+  public void setNodePool(int maxPooled) {
+    if (maxPooled < 0)
+      throw new IllegalArgumentException("maxPooled < 0");
+    if (maxPooled > 0)
+      ensurePlainTree();
+    this.maxFreeNodes = maxPooled;
+    while (this.numFreeNodes > maxPooled) { // Release the extra nodes.
+      this.freeNodes = this.freeNodes.right;
+      this.numFreeNodes--;
+    }
+  }
 
   /**
-   * Returns the keys of the data structure in post-order traversal order. In
-   * the case of binary search trees, the order is: L R V.
-   * 
-   * If the SearchTree is empty, an empty list is returned.
-   * 
-   * @return List of Keys in post-order.
+   * Returns the number of removed nodes waiting to be reused.
+   *
+   * @return number of pooled nodes.
    */
-  @Override
-  public List<K> getPostOrderTraversal() {
-    return getPostOrderHelper(this.root); // Call recursive helper method.
+  public int getNumPooledNodes() {
+    return this.numFreeNodes;
   }
 
   /**
-   * Recursive method to traverse tree post-order.
-   * 
-   * @param current the current node.
-   * @return the list of keys post-order.
+   * Put a node that is no longer linked into the pool, if it is not full.
+   *
+   * @param node unlinked node.
    */
-  private List<K> getPostOrderHelper(Node<K, V> current) {
-    // Create ArrayList to store keys.
-    List<K> keys = new ArrayList<K>();
-    if (current == null) // Base case: empty tree.
-      return keys;
-    // Recursive case: add left, add right, add current.
-    keys.addAll(getPostOrderHelper(current.left)); // Add keys left sub-tree.
-    keys.addAll(getPostOrderHelper(current.right)); // Add keys right sub-tree.
-    keys.add(current.key); // Add current node's key.
-    return keys;
+  private void recycle(Node<K, V> node) {
+    if (this.numFreeNodes >= this.maxFreeNodes)
+      return;
+    node.key = null;
+    node.value = null;
+    node.left = null;
+    node.right = this.freeNodes;
+    node.deleted = false;
+    node.hits = 0; // Lookups of the old key do not count for the next one.
+    this.freeNodes = node;
+    this.numFreeNodes++;
   }
 
   /**
-   * Returns the keys of the data structure in level-order traversal order.
+   * Find the node of a key for the point operations (get, contains, insert,
+   * remove and the child queries). Subclasses of this package override it to
+   * answer from an index instead of a descent.
    * 
-   * The root is first in the list, then the keys found in the next level down,
-   * and so on.
+   * @param key key to be looked for, not null.
+   * @return live node that contains key if found, otherwise null.
+   */
+  Node<K, V> findNode(K key) {
+    Node<K, V> node = getNodeHelper(key, this.root);
+    return node == null || node.deleted ? null : node;
+  }
+
+  /**
+   * Called before reads that visit many keys or depend on the key order:
+   * traversals, streams, batched lookups, digests and the smallest and largest
+   * keys. Subclasses of this package that expire entries override it to
+   * remove them first.
+   */
+  void expire() {
+  }
+
+  /**
+   * Called after a node has been unlinked from the tree by remove, pollFirst
+   * or pollLast. Subclasses of this package override it to drop the node from
+   * their own structures.
    * 
-   * If the SearchTree is empty, an empty list is returned.
+   * @param node the removed node.
+   */
+  void nodeRemoved(Node<K, V> node) {
+  }
+
+  /**
+   * Called before split, concat and lazy deletion, which move or keep nodes
+   * without going through createNode and nodeRemoved. Subclasses of this
+   * package that keep their own structures over the nodes override it to
+   * throw.
    * 
-   * @return List of Keys in level-order.
+   * @throws UnsupportedOperationException if the tree cannot move its nodes.
    */
-  @Override
-  public List<K> getLevelOrderTraversal() {
-    // Create ArrayList to store keys.
-    List<K> keys = new ArrayList<K>();
-    if (isEmpty())
-      return keys;
-    for (int i = 1; i <= this.root.height; ++i) { // Loop through each level.
-      keys.addAll(getLevelOrderHelper(this.root, i)); // Add keys on that level.
+  void ensurePlainTree() {
+  }
+
+  /**
+   * Maintain, or stop maintaining, a hash of every sub-tree: the sum of the
+   * hashes of its entries, each mixed from the hash codes of its key and
+   * value. A sum does not depend on the shape of the tree, so replicas with
+   * the same entries have the same digests whatever the order of their
+   * updates, and the digest of a key range is found in O(log n). Hashes are
+   * updated with heights and sizes, and cost a few operations per node on the
+   * path of each update. Turning hashing on costs O(n).
+   *
+   * @param hashing true to maintain the hashes, false to stop.
+   */
+  public void setHashing(boolean hashing) {
+    this.hashing = hashing;
+    if (hashing)
+      hashAll(this.root);
+  }
+
+  /**
+   * Returns true if sub-tree hashes are maintained.
+   *
+   * @return true if hashing is on.
+   */
+  public boolean isHashing() {
+    return this.hashing;
+  }
+
+  /**
+   * Compute the hashes of a sub-tree from scratch.
+   *
+   * @param current root of the sub-tree.
+   */
+  private void hashAll(Node<K, V> current) {
+    if (current == null)
+      return;
+    hashAll(current.left);
+    hashAll(current.right);
+    updateHash(current);
+  }
+
+  /**
+   * Update the hash of a node from the hashes of its children, if hashing is
+   * on.
+   *
+   * @param current node whose children are up to date.
+   */
+  private void updateHash(Node<K, V> current) {
+    if (!this.hashing)
+      return;
+    current.hash = entryHash(current)
+        + (current.left == null ? 0 : current.left.hash)
+        + (current.right == null ? 0 : current.right.hash);
+  }
+
+  /**
+   * Update the hashes on the path of a key whose value has changed in place,
+   * if hashing is on. Subclasses of this package call it when they change a
+   * value without going through this class.
+   *
+   * @param key key whose node has changed.
+   */
+  void refreshHash(K key) {
+    if (this.hashing)
+      refreshHashHelper(this.root, key);
+  }
+
+  /**
+   * Refresh hash helper method.
+   *
+   * @param current root of the sub-tree on the path of key.
+   * @param key     key whose node has changed.
+   */
+  private void refreshHashHelper(Node<K, V> current, K key) {
+    if (current == null)
+      return;
+    int compare = key.compareTo(current.key);
+    if (compare < 0)
+      refreshHashHelper(current.left, key);
+    else if (compare > 0)
+      refreshHashHelper(current.right, key);
+    updateHash(current);
+  }
+
+  /**
+   * Hash of the entry of a node: a 64-bit mix of the hash codes of its key and
+   * value, 0 for a tombstone.
+   *
+   * @param node node of the entry.
+   * @return hash of the entry.
+   */
+  private long entryHash(Node<K, V> node) {
+    if (node.deleted)
+      return 0;
+    long hash = (long) node.key.hashCode() << 32
+        ^ (valueHash(node) & 0xFFFFFFFFL);
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL; // Finalizer of
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L; // MurmurHash3.
+    return hash ^ (hash >>> 33);
+  }
+
+  /**
+   * Hash code of the value of a node. Subclasses of this package that keep
+   * several values in a node override it to hash all of them.
+   *
+   * @param node node of the entry.
+   * @return hash code of the value.
+   */
+  int valueHash(Node<K, V> node) {
+    return Objects.hashCode(node.value);
+  }
+
+  /**
+   * Returns the digest of the whole tree, the sum of the hashes of its
+   * entries.
+   *
+   * @return digest of the tree, 0 if it is empty.
+   *
+   * @throws IllegalStateException if hashing is off.
+   */
+  public long digest() {
+    return rangeDigest(null, false, null, false);
+  }
+
+  /**
+   * Returns the digest of the keys greater than or equal to lo and smaller
+   * than hi in O(log n). Replicas compare the digests of matching ranges to
+   * find the ranges they disagree on.
+   *
+   * @param lo smallest key of the range.
+   * @param hi key after the range.
+   * @return digest of the range, 0 if it is empty.
+   *
+   * @throws IllegalNullArgumentException if lo or hi is null.
+   * @throws IllegalStateException        if hashing is off.
+   */
+  public long rangeDigest(K lo, K hi) throws IllegalNullArgumentException {
+    if (lo == null || hi == null)
+      throw new IllegalNullArgumentException();
+    if (lo.compareTo(hi) >= 0)
+      return 0;
+    return rangeDigest(lo, true, hi, false);
+  }
+
+  /**
+   * Digest of a range whose bounds are not crossed.
+   *
+   * @param lo          lower bound, null for none.
+   * @param loInclusive true if lo is in the range.
+   * @param hi          upper bound, null for none.
+   * @param hiInclusive true if hi is in the range.
+   * @return digest of the range.
+   *
+   * @throws IllegalStateException if hashing is off.
+   */
+  private long rangeDigest(K lo, boolean loInclusive, K hi,
+      boolean hiInclusive) {
+    if (!this.hashing)
+      throw new IllegalStateException("hashing is off");
+    expire();
+    Node<K, V> root = this.root; // Tombstones hash to 0.
+    long upper = hi == null ? (root == null ? 0 : root.hash)
+        : prefixDigest(hi, hiInclusive);
+    return upper - (lo == null ? 0 : prefixDigest(lo, !loInclusive));
+  }
+
+  /**
+   * Sum of the hashes of the entries before key, like rank with hashes.
+   *
+   * @param key       key to stop at.
+   * @param inclusive true to count key itself.
+   * @return digest of the keys before key.
+   */
+  private long prefixDigest(K key, boolean inclusive) {
+    long digest = 0;
+    Node<K, V> current = this.root;
+    while (current != null) {
+      int compare = key.compareTo(current.key);
+      if (compare < 0 || (compare == 0 && !inclusive))
+        current = current.left;
+      else { // Current and its left sub-tree come before key.
+        digest += entryHash(current)
+            + (current.left == null ? 0 : current.left.hash);
+        current = current.right;
+      }
+    }
+    return digest;
+  }
+
+  /**
+   * Returns the keys whose entries differ between this tree and other: keys
+   * present in only one of them, or with values that are not equal. Only the
+   * ranges whose digests differ are visited, halving them at a middle key, so
+   * the cost is O(d log^2 n) for d differences instead of O(n).
+   *
+   * @param other tree to compare with.
+   * @return the differing keys, in increasing order.
+   *
+   * @throws IllegalNullArgumentException if other is null.
+   * @throws IllegalStateException        if hashing is off in either tree.
+   */
+  public List<K> diff(AvlTree<K, V> other) throws IllegalNullArgumentException {
+    if (other == null)
+      throw new IllegalNullArgumentException();
+    if (!this.hashing || !other.hashing)
+      throw new IllegalStateException("hashing is off");
+    expire();
+    other.expire();
+    List<K> keys = new ArrayList<K>();
+    diffHelper(other, null, false, null, false, keys);
+    return keys;
+  }
+
+  /**
+   * Diff helper method, for a range whose bounds are not crossed.
+   *
+   * @param other       tree to compare with.
+   * @param lo          lower bound, null for none.
+   * @param loInclusive true if lo is in the range.
+   * @param hi          upper bound, null for none.
+   * @param hiInclusive true if hi is in the range.
+   * @param keys        list of differing keys to append to.
+   */
+  private void diffHelper(AvlTree<K, V> other, K lo, boolean loInclusive,
+      K hi, boolean hiInclusive, List<K> keys) {
+    int before = lo == null ? 0 : rank(lo, !loInclusive);
+    int count = (hi == null ? this.numKeys : rank(hi, hiInclusive)) - before;
+    int otherBefore = lo == null ? 0 : other.rank(lo, !loInclusive);
+    int otherCount = (hi == null ? other.numKeys : other.rank(hi, hiInclusive))
+        - otherBefore;
+    if (count == otherCount && rangeDigest(lo, loInclusive, hi, hiInclusive)
+        == other.rangeDigest(lo, loInclusive, hi, hiInclusive))
+      return; // Same entries, unless hashes collide.
+    if (count == 0 && otherCount == 0)
+      return;
+    K middle = count >= otherCount ? selectKey(before + count / 2)
+        : other.selectKey(otherBefore + otherCount / 2);
+    diffHelper(other, lo, loInclusive, middle, false, keys);
+    Node<K, V> node = findNode(middle);
+    Node<K, V> otherNode = other.findNode(middle);
+    if (node == null || otherNode == null
+        || !Objects.equals(node.value, otherNode.value)
+        || valueHash(node) != other.valueHash(otherNode))
+      keys.add(middle);
+    diffHelper(other, middle, false, hi, hiInclusive, keys);
+  }
+
+  /**
+   * Attach a blocked Bloom filter of the keys, or detach it with 0. Lookups
+   * of get and contains consult it first, so most lookups of missing keys
+   * never descend in the tree. Insertions add their key to the filter;
+   * removals leave it there until the filter is rebuilt, in O(n), at the next
+   * lookup after half of the keys have been removed or the filter is full.
+   * That rebuild writes to the tree from get or contains, so lookups must not
+   * run concurrently while a filter is attached.
+   *
+   * The filter hashes keys with hashCode, so keys that compare equal must
+   * have equal hash codes, as for HashIndexedAvlTree. BigDecimal keys, for
+   * one, do not: 1.0 and 1.00 compare equal but hash differently, and the
+   * filter would report 1.00 as missing from a tree holding 1.0.
+   *
+   * @param bitsPerKey bits of filter per key, 10 gives about 1% of false
+   *                   positives, or 0 to detach the filter.
+   *
+   * @throws IllegalArgumentException if bitsPerKey is negative.
+   */
+  public void setFilter(int bitsPerKey) {
+    if (bitsPerKey < 0)
+      throw new IllegalArgumentException("bitsPerKey < 0");
+    this.filter = bitsPerKey == 0 ? null : new BlockedBloomFilter(bitsPerKey);
+    if (this.filter != null)
+      rebuildFilter();
+  }
+
+  /**
+   * Returns the filter attached to this tree, with its statistics.
+   *
+   * @return attached filter, or null if lookups are not filtered.
+   */
+  public BlockedBloomFilter getFilter() {
+    return this.filter;
+  }
+
+  /**
+   * Fill the filter again with the live keys of the tree.
+   */
+  private void rebuildFilter() {
+    this.filter.clear(this.numKeys);
+    List<Node<K, V>> stack = new ArrayList<Node<K, V>>();
+    if (this.root != null)
+      stack.add(this.root);
+    while (!stack.isEmpty()) {
+      Node<K, V> node = stack.remove(stack.size() - 1);
+      if (!node.deleted)
+        this.filter.add(node.key);
+      if (node.left != null)
+        stack.add(node.left);
+      if (node.right != null)
+        stack.add(node.right);
+    }
+    this.filter.recordRebuild();
+  }
+
+  /**
+   * Record removed keys in the filter, if there is one.
+   *
+   * @param count number of removed keys.
+   */
+  private void keysRemoved(int count) {
+    if (this.filter != null)
+      this.filter.removed(count);
+  }
+
+  /**
+   * Find the node of a key for get and contains: ask the filter first, then
+   * descend, and count the lookup for the filter and the adaptive mode.
+   * Subclasses of this package use it for their own get and contains.
+   *
+   * @param key key to look up, not null.
+   * @return node of key, or null if key is not in the tree.
+   */
+  Node<K, V> lookup(K key) {
+    if (this.filter != null) {
+      if (this.filter.needsRebuild(this.numKeys))
+        rebuildFilter();
+      if (!this.filter.mightContain(key)) {
+        this.filter.recordQuery(false, false);
+        return null;
+      }
+    }
+    Node<K, V> node = findNode(key);
+    if (this.filter != null)
+      this.filter.recordQuery(true, node != null);
+    recordAccess(node);
+    return node;
+  }
+
+  /**
+   * Turn the adaptive mode on or off. While it is on, get and contains count
+   * the lookups of each key, and after as many lookups as there are keys the
+   * tree is rebuilt so that often looked up keys are near the root: each
+   * sub-tree is rooted at the weighted median of its keys, moved as little as
+   * needed to keep the height within 1.5 times the smallest possible height,
+   * so lookups stay O(log n) in the worst case. Counts are halved at each
+   * rebuild, so the shape follows changes of the distribution.
+   *
+   * A biased tree is not an AVL tree. The next insertion or removal rebuilds
+   * it perfectly balanced first, in O(n), which is paid for by the lookups
+   * that triggered the biased rebuild. Lookups change the shape, so readers
+   * of an adaptive tree must not run concurrently.
+   *
+   * @param adaptive true to bias the shape toward frequent lookups.
+   */
+  public void setAdaptive(boolean adaptive) {
+    this.adaptive = adaptive;
+    this.lookups = 0;
+    if (!adaptive)
+      restoreBalance();
+  }
+
+  /**
+   * Returns true if lookups bias the shape of the tree.
+   *
+   * @return true if the adaptive mode is on.
+   */
+  public boolean isAdaptive() {
+    return this.adaptive;
+  }
+
+  /**
+   * Count a lookup in adaptive mode, and rebuild the tree once enough lookups
+   * have been counted.
+   *
+   * @param node node found by the lookup, or null for a miss.
+   */
+  private void recordAccess(Node<K, V> node) {
+    if (!this.adaptive)
+      return;
+    if (node != null && node.hits < Integer.MAX_VALUE)
+      node.hits++;
+    if (++this.lookups >= Math.max(64, this.numKeys)) {
+      this.lookups = 0;
+      rebuildBiased();
+    }
+  }
+
+  /**
+   * Rebuild the tree with often looked up keys near the root, see
+   * setAdaptive.
+   */
+  private void rebuildBiased() {
+    purgeTombstones();
+    List<Node<K, V>> nodes = inOrderNodes();
+    int n = nodes.size();
+    long[] weights = new long[n + 1]; // Prefix sums of hits + 1.
+    for (int i = 0; i < n; i++) {
+      Node<K, V> node = nodes.get(i);
+      weights[i + 1] = weights[i] + node.hits + 1;
+      node.hits >>>= 1; // Decay.
+    }
+    int minHeight = 32 - Integer.numberOfLeadingZeros(n); // log2(n + 1).
+    this.root = biasedHelper(nodes, weights, 0, n, minHeight + minHeight / 2);
+    this.biased = true;
+  }
+
+  /**
+   * Biased rebuild helper method.
+   *
+   * @param nodes   nodes in key order.
+   * @param weights prefix sums of the weights of nodes.
+   * @param from    index of the first node, inclusive.
+   * @param to      index of the last node, exclusive.
+   * @param height  height the sub-tree must not exceed, enough for its nodes.
+   * @return root of the sub-tree.
+   */
+  private Node<K, V> biasedHelper(List<Node<K, V>> nodes, long[] weights,
+      int from, int to, int height) {
+    if (from >= to)
+      return null;
+    // Smallest index whose prefix reaches half of the weight of the run.
+    long half = (weights[from] + weights[to]) / 2;
+    int lo = from;
+    int hi = to - 1;
+    while (lo < hi) {
+      int middle = (lo + hi) >>> 1;
+      if (weights[middle + 1] < half)
+        lo = middle + 1;
+      else
+        hi = middle;
+    }
+    // Each side must fit in height - 1 levels.
+    int fit = height >= 31 ? Integer.MAX_VALUE : (1 << (height - 1)) - 1;
+    int index = Math.max(lo, to - 1 - fit);
+    index = (int) Math.min(index, (long) from + fit);
+    Node<K, V> current = nodes.get(index);
+    current.left = biasedHelper(nodes, weights, from, index, height - 1);
+    current.right = biasedHelper(nodes, weights, index + 1, to, height - 1);
+    current.height = getHeight(current);
+    current.size = getSize(current);
+    current.live = getLive(current);
+    updateHash(current);
+    current.balanceFactor = getBalanceFactor(current);
+    return current;
+  }
+
+  /**
+   * Rebuild a biased tree perfectly balanced, before a change that relies on
+   * the AVL shape.
+   */
+  private void restoreBalance() {
+    if (!this.biased)
+      return;
+    List<Node<K, V>> nodes = inOrderNodes();
+    this.root = buildHelper(nodes, 0, nodes.size());
+    this.biased = false;
+  }
+
+  /**
+   * @return every node of the tree, tombstones included, in key order.
+   */
+  private List<Node<K, V>> inOrderNodes() {
+    List<Node<K, V>> nodes = new ArrayList<Node<K, V>>(this.numKeys);
+    List<Node<K, V>> stack = new ArrayList<Node<K, V>>();
+    Node<K, V> current = this.root;
+    while (current != null || !stack.isEmpty()) { // Iterative in-order walk.
+      while (current != null) {
+        stack.add(current);
+        current = current.left;
+      }
+      current = stack.remove(stack.size() - 1);
+      nodes.add(current);
+      current = current.right;
+    }
+    return nodes;
+  }
+
+  /**
+   * Fill an empty tree with key-value pairs given in increasing key order. The
+   * tree is built perfectly balanced in O(n), without comparing keys and
+   * without any rotation.
+   *
+   * @param keys   keys in increasing order.
+   * @param values values of keys, in the same order.
+   * @param from   index of the first pair, inclusive.
+   * @param to     index of the last pair, exclusive.
+   */
+  void buildSorted(List<K> keys, List<V> values, int from, int to) {
+    checkPublisher();
+    List<Node<K, V>> nodes = new ArrayList<Node<K, V>>(to - from);
+    for (int i = from; i < to; i++)
+      nodes.add(createNode(keys.get(i), values.get(i)));
+    this.root = buildHelper(nodes, 0, nodes.size());
+    this.numKeys = nodes.size();
+    refreshBounds();
+    publishAll(ChangeEvent.Type.INSERT, this.root);
+    if (this.filter != null)
+      this.filter.invalidate();
+  }
+
+  /**
+   * Build helper method, the middle node becomes the root of the sub-tree.
+   *
+   * @param nodes nodes in increasing key order, relinked in place.
+   * @param from  index of the first node of the sub-tree, inclusive.
+   * @param to    index of the last node of the sub-tree, exclusive.
+   * @return root of the sub-tree, null if it is empty.
+   */
+  private Node<K, V> buildHelper(List<Node<K, V>> nodes, int from, int to) {
+    if (from >= to)
+      return null;
+    int middle = (from + to) >>> 1;
+    Node<K, V> current = nodes.get(middle);
+    current.left = buildHelper(nodes, from, middle);
+    current.right = buildHelper(nodes, middle + 1, to);
+    current.height = getHeight(current);
+    current.size = getSize(current);
+    current.live = getLive(current);
+    updateHash(current);
+    current.balanceFactor = getBalanceFactor(current);
+    return current;
+  }
+
+  /**
+   * Turn lazy deletion on or off. While it is on, remove only marks the node
+   * of key as a tombstone in a single descent, without unlinking or
+   * re-balancing anything, and reads skip tombstones. Once tombstones make up
+   * more than maxTombstoneRatio of the nodes, the tree is compacted: the live
+   * nodes are relinked into a perfectly balanced tree in O(n). The smallest
+   * and largest keys are still removed at once, so firstKey and lastKey stay
+   * O(1). Traversals, streams, navigation, rank and digests skip tombstones,
+   * using a count of live nodes kept beside each sub-tree size. Only the
+   * queries of the shape itself (root, children, height, print and
+   * rendering), split, concat and range removal compact the tree first, so
+   * they change it in O(n) while it has tombstones.
+   *
+   * @param maxTombstoneRatio share of tombstones that triggers compaction,
+   *                          between 0 exclusive and 1 exclusive, or 0 to turn
+   *                          lazy deletion off after compacting the tree.
+   *
+   * @throws IllegalArgumentException      if maxTombstoneRatio is out of
+   *                                       range.
+   * @throws UnsupportedOperationException if this tree cannot keep
+   *                                       tombstones.
+   */
+  public void setLazyDeletion(double maxTombstoneRatio) {
+    if (!(maxTombstoneRatio >= 0 && maxTombstoneRatio < 1))
+      throw new IllegalArgumentException("maxTombstoneRatio not in [0, 1)");
+    if (maxTombstoneRatio > 0)
+      ensurePlainTree();
+    this.maxTombstoneRatio = maxTombstoneRatio;
+    purgeTombstones();
+  }
+
+  /**
+   * Unlink every tombstone by relinking the live nodes, in key order, into a
+   * perfectly balanced tree. Costs O(n), and nothing if there is no tombstone.
+   */
+  public void compact() {
+    purgeTombstones();
+  }
+
+  /**
+   * Returns the number of tombstones left by lazy deletion since the last
+   * compaction.
+   *
+   * @return number of nodes marked deleted but still linked.
+   */
+  public int getNumTombstones() {
+    return this.numTombstones;
+  }
+
+  /**
+   * Compact the tree if it has tombstones.
+   */
+  private void purgeTombstones() {
+    if (this.numTombstones == 0)
+      return;
+    List<Node<K, V>> nodes = new ArrayList<Node<K, V>>(this.numKeys);
+    List<Node<K, V>> stack = new ArrayList<Node<K, V>>();
+    Node<K, V> current = this.root;
+    while (current != null || !stack.isEmpty()) { // Iterative in-order walk.
+      while (current != null) {
+        stack.add(current);
+        current = current.left;
+      }
+      current = stack.remove(stack.size() - 1);
+      Node<K, V> right = current.right;
+      if (!current.deleted)
+        nodes.add(current);
+      else
+        recycle(current);
+      current = right;
+    }
+    this.root = buildHelper(nodes, 0, nodes.size());
+    this.numTombstones = 0; // The cached smallest and largest nodes are live.
+    this.biased = false;
+  }
+
+  /**
+   * Add to the live counts on the path of a key whose node has just been
+   * marked as a tombstone or revived.
+   *
+   * @param key   key of the node, which is in the tree.
+   * @param delta -1 for a new tombstone, 1 for a revived one.
+   */
+  private void adjustLive(K key, int delta) {
+    Node<K, V> current = this.root;
+    while (current != null) {
+      current.live += delta;
+      int compare = key.compareTo(current.key);
+      if (compare == 0)
+        return;
+      current = compare < 0 ? current.left : current.right;
+    }
+  }
+
+  /**
+   * Unlink the smallest and largest nodes while they are tombstones, so the
+   * cached ones are always live. Called after one of them has been removed.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private void purgeBounds() {
+    Node<K, V>[] next = (Node<K, V>[]) new Node[1];
+    while (this.minNode != null && this.minNode.deleted) {
+      next[0] = null;
+      this.root = removeMinHelper(this.root, next);
+      this.numTombstones--;
+      recycle(this.minNode);
+      this.minNode = next[0];
+    }
+    while (this.maxNode != null && this.maxNode.deleted) {
+      next[0] = null;
+      this.root = removeMaxHelper(this.root, next);
+      this.numTombstones--;
+      recycle(this.maxNode);
+      this.maxNode = next[0];
+    }
+    if (this.root == null) {
+      this.minNode = null;
+      this.maxNode = null;
+    }
+  }
+
+  /**
+   * Private helper method to check if the BALST is empty.
+   * 
+   * @return true if root is null and there is no keys, false otherwise.
+   */
+  private boolean isEmpty() {
+    // Empty when root is null and there is no keys.
+    return this.numKeys == 0 && this.root == null;
+  }
+
+  /**
+   * Returns the key that is in the root node of this BST. If root is null,
+   * returns null. Compacts the tree first if it has tombstones.
+   * 
+   * @return key found at root node, or null.
+   */
+  @Override
+  public K getKeyAtRoot() {
+    purgeTombstones();
+    if (this.isEmpty())
+      return null;
+    else
+      return this.root.key;
+  }
+
+  /**
+   * Tries to find a node with a key that matches the specified key. If a
+   * matching node is found, it returns the returns the key that is in the left
+   * child. If the left child of the found node is null, returns null. Compacts
+   * the tree first if it has tombstones.
+   * 
+   * @param key A key to search for.
+   * @return The key that is in the left child of the found key.
+   * 
+   * @throws IllegalNullArgumentException if key argument is null.
+   * @throws KeyNotFoundException    if key is not found in this BST.
+   */
+  @Override
+  public K getKeyOfLeftChildOf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    purgeTombstones();
+    if (key == null) // Throw IllegalNullArgumentException when null key.
+      throw new IllegalNullArgumentException();
+    if (findNode(key) == null) // Key not found.
+      throw new KeyNotFoundException(); // Throw KeyNotFoundException.
+    else if (findNode(key).left == null)
+      return null; // Key found has no left child.
+    else // Key found and it has left child.
+      return findNode(key).left.key;
+  }
+
+  /**
+   * Tries to find a node with a key that matches the specified key. If a
+   * matching node is found, it returns the returns the key that is in the right
+   * child. If the right child of the found node is null, returns null.
+   * Compacts the tree first if it has tombstones.
+   * 
+   * @param key A key to search for.
+   * @return The key that is in the right child of the found key.
+   * 
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException    if key is not found in this BST.
+   */
+  @Override
+  public K getKeyOfRightChildOf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    purgeTombstones();
+    if (key == null) // Throw IllegalNullArgumentException when null key.
+      throw new IllegalNullArgumentException();
+    if (findNode(key) == null) // Key not found.
+      throw new KeyNotFoundException(); // Throw KeyNotFoundException.
+    else if (findNode(key).right == null)
+      return null; // Key found has no right child.
+    else // Key found and it has right child.
+      return findNode(key).right.key;
+  }
+
+  /**
+   * Returns the height of this BST. H is defined as the number of levels in the
+   * tree.
+   * 
+   * If root is null, return 0. If root is a leaf, return 1 Else return 1 +
+   * max(height(root.left), height(root.right)).
+   * 
+   * Examples: A BST with no keys, has a height of zero (0). A BST with one key,
+   * has a height of one (1). A BST with two keys, has a height of two (2). A
+   * BST with three keys, can be balanced with a height of two(2) or it may be
+   * linear with a height of three (3) ... and so on for tree with other heights
+   * 
+   * Compacts the tree first if it has tombstones.
+   * 
+   * @return the number of levels that contain keys in this BINARY SEARCH TREE
+   */
+  @Override
+  public int getHeight() {
+    purgeTombstones();
+    return getHeight(this.root);
+  }
+
+  /**
+   * Get the height of a specific node.
+   * 
+   * @param current current node to calculate height.
+   * @return height of a specific node.
+   */
+  private int getHeight(Node<K, V> current) {
+    if (current == null)
+      return 0; // Node passed in is null.
+    if (current.left == null && current.right == null)
+      return 1; // Both children are null, height is 1.
+    if (current.left == null) // Left child is null, right child is not null.
+      return 1 + current.right.height; // Height is 1 + right child's size.
+    if (current.right == null) // Left child is not null, right child is null.
+      return 1 + current.left.height; // Height is 1 + left child's size.
+    // Else, it's 1 + max of left child's size and right child's size.
+    return 1 + Math.max(current.left.height, current.right.height);
+  }
+
+  /**
+   * Get the number of nodes of the sub-tree rooted at a specific node.
+   * 
+   * @param current current node to calculate size.
+   * @return size of the sub-tree, 0 if current is null.
+   */
+  private int getSize(Node<K, V> current) {
+    if (current == null)
+      return 0;
+    return 1 + (current.left == null ? 0 : current.left.size)
+        + (current.right == null ? 0 : current.right.size);
+  }
+
+  /**
+   * Get the number of live nodes of the sub-tree rooted at a specific node.
+   * 
+   * @param current current node to count the live nodes of.
+   * @return live nodes of the sub-tree, 0 if current is null.
+   */
+  private int getLive(Node<K, V> current) {
+    if (current == null)
+      return 0;
+    return (current.deleted ? 0 : 1)
+        + (current.left == null ? 0 : current.left.live)
+        + (current.right == null ? 0 : current.right.live);
+  }
+
+  /**
+   * Get the balance factor of a specific node.
+   * 
+   * @param current current node to calculate height.
+   * @return balance factor of a specific node.
+   */
+  private int getBalanceFactor(Node<K, V> current) {
+    if (current == null)
+      return 0;
+    // Balance factor is difference of left and right sub-trees's height.
+    return getHeight(current.left) - getHeight(current.right);
+  }
+
+  /**
+   * Returns the keys of the data structure in sorted order. In the case of
+   * binary search trees, the visit order is: L V R.
+   * 
+   * If the SearchTree is empty, an empty list is returned.
+   * 
+   * @return List of Keys in-order.
+   */
+  @Override
+  public List<K> getInOrderTraversal() {
+    expire();
+    // Call recursive helper method.
+    return recordTraversal(getInOrderHelper(this.root));
+  }
+
+  /**
+   * Recursive method to traverse tree in-order.
+   * 
+   * @param current the current node.
+   * @return the list of keys in-order.
+   */
+  private List<K> getInOrderHelper(Node<K, V> current) {
+    // Create ArrayList to store keys.
+    List<K> keys = new ArrayList<K>();
+    if (current == null) // Base case: empty tree.
+      return keys;
+    // Recursive case: add left, add current, add right.
+    keys.addAll(getInOrderHelper(current.left)); // Add keys left sub-tree.
+    if (!current.deleted) // Skip tombstones.
+      keys.add(current.key); // Add current node's key.
+    keys.addAll(getInOrderHelper(current.right)); // Add keys right sub-tree.
+    return keys;
+  }
+
+  /**
+   * Returns the keys of the data structure in pre-order traversal order. In the
+   * case of binary search trees, the order is: V L R.
+   * 
+   * If the SearchTree is empty, an empty list is returned.
+   * 
+   * @return List of Keys in pre-order.
+   */
+  @Override
+  public List<K> getPreOrderTraversal() {
+    expire();
+    // Call recursive helper method.
+    return recordTraversal(getPreOrderHelper(this.root));
+  }
+
+  /**
+   * Recursive method to traverse tree pre-order.
+   * 
+   * @param current the current node.
+   * @return the list of keys pre-order.
+   */
+  private List<K> getPreOrderHelper(Node<K, V> current) {
+    // Create ArrayList to store keys.
+    List<K> keys = new ArrayList<K>();
+    if (current == null) // Base case: empty tree.
+      return keys;
+    // Recursive case: add current, add left, add right.
+    if (!current.deleted) // Skip tombstones.
+      keys.add(current.key); // Add current node's key.
+    keys.addAll(getPreOrderHelper(current.left)); // Add keys left sub-tree.
+    keys.addAll(getPreOrderHelper(current.right)); // Add keys right sub-tree.
+    return keys;
+  }
+
+
+  /**
+   * Returns the keys of the data structure in post-order traversal order. In
+   * the case of binary search trees, the order is: L R V.
+   * 
+   * If the SearchTree is empty, an empty list is returned.
+   * 
+   * @return List of Keys in post-order.
+   */
+  @Override
+  public List<K> getPostOrderTraversal() {
+    expire();
+    // Call recursive helper method.
+    return recordTraversal(getPostOrderHelper(this.root));
+  }
+
+  /**
+   * Recursive method to traverse tree post-order.
+   * 
+   * @param current the current node.
+   * @return the list of keys post-order.
+   */
+  private List<K> getPostOrderHelper(Node<K, V> current) {
+    // Create ArrayList to store keys.
+    List<K> keys = new ArrayList<K>();
+    if (current == null) // Base case: empty tree.
+      return keys;
+    // Recursive case: add left, add right, add current.
+    keys.addAll(getPostOrderHelper(current.left)); // Add keys left sub-tree.
+    keys.addAll(getPostOrderHelper(current.right)); // Add keys right sub-tree.
+    if (!current.deleted) // Skip tombstones.
+      keys.add(current.key); // Add current node's key.
+    return keys;
+  }
+
+  /**
+   * Returns the keys of the data structure in level-order traversal order.
+   * 
+   * The root is first in the list, then the keys found in the next level down,
+   * and so on.
+   * 
+   * If the SearchTree is empty, an empty list is returned.
+   * 
+   * @return List of Keys in level-order.
+   */
+  @Override
+  public List<K> getLevelOrderTraversal() {
+    expire();
+    // Create ArrayList to store keys.
+    List<K> keys = new ArrayList<K>();
+    if (isEmpty())
+      return keys;
+    for (int i = 1; i <= this.root.height; ++i) { // Loop through each level.
+      keys.addAll(getLevelOrderHelper(this.root, i)); // Add keys on that level.
+    }
+    return recordTraversal(keys);
+  }
+
+  /**
+   * Recursive method to traverse tree level-order.
+   * 
+   * @param current the current node.
+   * @param level   level of tree.
+   * @return the list of keys in-order.
+   */
+  private List<K> getLevelOrderHelper(Node<K, V> current, int level) {
+    // Create ArrayList to store keys for this level.
+    List<K> keys = new ArrayList<K>();
+    if (current == null) // Base case: empty tree.
+      return keys;
+    if (level == 1 && !current.deleted) // Add a live key at level 1.
+      keys.add(current.key);
+    else if (level > 1) { // Recursive case: add children's key of current node.
+      keys.addAll(getLevelOrderHelper(current.left, level - 1));
+      keys.addAll(getLevelOrderHelper(current.right, level - 1));
+    }
+    return keys;
+  }
+
+  /**
+   * Add the key-value pair to the data structure and increase the number of
+   * keys. If key is null, throw IllegalNullArgumentException. If key is already in
+   * data structure, throw DuplicateKeyException. Do not increase the number of
+   * keys in the structure, if key-value pair is not added.
+   * 
+   * @param key   A key to insert.
+   * @param value A value to insert.
+   */
+  @Override
+  public void insert(K key, V value)
+      throws IllegalNullArgumentException, DuplicateKeyException {
+    checkPublisher();
+    TreeOperationEvent event = beginOperation();
+    try {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      if (!isAppend(key) && findNode(key) != null)
+        throw new DuplicateKeyException();
+      insertNew(key, value);
+    } finally {
+      endOperation(event, TreeMetrics.Operation.INSERT);
+    }
+  }
+
+  /**
+   * Add a key-value pair whose key is larger than every key in the data
+   * structure, as in ingest of time-ordered keys. The key is compared with the
+   * largest key only, and the new node is attached below the right spine of
+   * the tree, rebalancing only the spine. Insert and put detect such keys
+   * themselves, append also rejects the others.
+   * 
+   * @param key   A key to append.
+   * @param value A value to append.
+   * 
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws DuplicateKeyException        if key is the largest key.
+   * @throws IllegalArgumentException     if key is smaller than the largest
+   *                                      key.
+   */
+  public void append(K key, V value)
+      throws IllegalNullArgumentException, DuplicateKeyException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    if (this.maxNode != null) {
+      int compare = key.compareTo(this.maxNode.key);
+      if (compare == 0)
+        throw new DuplicateKeyException();
+      if (compare < 0)
+        throw new IllegalArgumentException("key is not the largest key");
+    }
+    insert(key, value); // Subclasses keep their bookkeeping.
+  }
+
+  /**
+   * Returns true if key is larger than every key in the data structure, so
+   * that it is absent and goes at the end of the right spine.
+   * 
+   * @param key a key, not null.
+   * @return true if key is larger than the largest key.
+   */
+  private boolean isAppend(K key) {
+    if (this.maxNode == null)
+      return false;
+    count(1, 0);
+    return key.compareTo(this.maxNode.key) > 0;
+  }
+
+  /**
+   * Associate value with key: replace the value if key is already in the data
+   * structure, otherwise insert the key-value pair.
+   * 
+   * @param key   A key to insert or update.
+   * @param value A value to associate with key.
+   * @return the previous value of key, or null if key was not present.
+   * 
+   * @throws IllegalNullArgumentException if key is null.
+   */
+  public V put(K key, V value) throws IllegalNullArgumentException {
+    checkPublisher();
+    TreeOperationEvent event = beginOperation();
+    try {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      Node<K, V> node = isAppend(key) ? null : findNode(key);
+      if (node == null) {
+        insertNew(key, value);
+        return null;
+      }
+      V previous = node.value;
+      node.value = value;
+      refreshHash(key);
+      publishChange(ChangeEvent.Type.UPDATE, key, value);
+      return previous;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.PUT);
+    }
+  }
+
+  /**
+   * Insert a key known not to be in the data structure.
+   * 
+   * @param key   A key to insert.
+   * @param value A value to insert.
+   */
+  private void insertNew(K key, V value) {
+    restoreBalance();
+    boolean append = this.maxNode != null
+        && key.compareTo(this.maxNode.key) > 0;
+    if (!append && this.numTombstones > 0) { // Revive a tombstone of key.
+      Node<K, V> tombstone = getNodeHelper(key, this.root);
+      if (tombstone != null) {
+        tombstone.deleted = false;
+        tombstone.value = value;
+        tombstone.hits = 0;
+        adjustLive(key, 1);
+        refreshHash(key);
+        this.numTombstones--;
+        this.numKeys++;
+        publishChange(ChangeEvent.Type.INSERT, key, value);
+        if (this.filter != null)
+          this.filter.add(key);
+        return; // Tombstones lie strictly inside the cached bounds.
+      }
+    }
+    Node<K, V> newNode = createNode(key, value); // Construct a new node.
+    updateHash(newNode);
+
+    // Call insert helper method, or follow the right spine for a largest key.
+    if (append)
+      this.root = appendHelper(newNode, this.root);
+    else
+      this.root = insertHelper(newNode, this.root);
+    this.numKeys++; // Increment number of keys after inserting.
+    // Keep the cached smallest and largest nodes up to date.
+    if (this.minNode == null || key.compareTo(this.minNode.key) < 0)
+      this.minNode = newNode;
+    if (this.maxNode == null || key.compareTo(this.maxNode.key) > 0)
+      this.maxNode = newNode;
+    publishChange(ChangeEvent.Type.INSERT, key, value);
+    if (this.filter != null)
+      this.filter.add(key);
+  }
+
+  /**
+   * Insert helper method.
+   * 
+   * @param newNode new node to be inserted.
+   * @param current root of subtree where newNode will be inserted into.
+   * @return root of the tree after new node has been inserted.
+   */
+  private Node<K, V> insertHelper(Node<K, V> newNode, Node<K, V> current) {
+    if (current == null) { // Check to prevent null pointer exception.
+      return newNode;
+    }
+    int compare = newNode.key.compareTo(current.key); // Compare keys.
+    count(2, 1); // This comparison and the one with the child.
+    if (compare < 0) { // Key added is smaller than current key.
+      // Recursively traverse left to add key.
+      current.left = insertHelper(newNode, current.left);
+      int balance = getBalanceFactor(current); // Get balance of current factor.
+      current.balanceFactor = balance; // Re-assign to current's balance factor.
+      // Compare key added to key of left child of current.
+      int compareLeft = newNode.key.compareTo(current.left.key);
+      // Left left case.
+      if (balance > 1 && compareLeft < 0) {
+        recordRotation(false);
+        return rightRotate(current);
+      }
+      // Left right case.
+      if (balance > 1 && compareLeft > 0) {
+        recordRotation(true);
+        current.left = leftRotate(current.left); // First rotate left.
+        return rightRotate(current); // Then rotate right.
+      }
+    } else if (compare > 0) { // Key added is greater than current key.
+      // Recursively traverse right to add key.
+      current.right = insertHelper(newNode, current.right);
+      int balance = getBalanceFactor(current); // Get balance of current factor.
+      current.balanceFactor = balance; // Re-assign to current's balance factor.
+      // Compare key added to key of right child of current.
+      int compareRight = newNode.key.compareTo(current.right.key);
+      // Right right case.
+      if (balance < -1 && compareRight > 0) {
+        recordRotation(false);
+        return leftRotate(current);
+      }
+      // Right left case.
+      if (balance < -1 && compareRight < 0) {
+        recordRotation(true);
+        current.right = rightRotate(current.right); // First rotate right.
+        return leftRotate(current); // Then rotate left.
+      }
+    }
+
+    // Update height, size and hash of current node.
+    current.height = getHeight(current);
+    current.size = getSize(current);
+    current.live = getLive(current);
+    updateHash(current);
+
+    return current;
+  }
+
+  /**
+   * If key is found, remove the key-value pair from the data structure and
+   * decrease number keys. If key is not found, do not decrease the number of
+   * keys in the data structure. If key is null, throw IllegalNullArgumentException.
+   * If key is not found, throw KeyNotFoundException().
+   * 
+   * @param key A key to remove.
+   * @return true always, indicating node removed successfully.
+   */
+  @Override
+  public boolean remove(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    checkPublisher();
+    TreeOperationEvent event = beginOperation();
+    try {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      Node<K, V> target = findNode(key);
+      if (target == null)
+        throw new KeyNotFoundException();
+      restoreBalance();
+      if (this.maxTombstoneRatio > 0 && target != this.minNode
+          && target != this.maxNode) { // Only mark the node.
+        V value = target.value;
+        target.deleted = true;
+        target.value = null;
+        adjustLive(key, -1);
+        refreshHash(key);
+        this.numKeys--;
+        this.numTombstones++;
+        publishChange(ChangeEvent.Type.REMOVE, key, value);
+        keysRemoved(1);
+        if (this.numTombstones > this.maxTombstoneRatio
+            * (this.numKeys + this.numTombstones))
+          purgeTombstones();
+        return true;
+      }
+
+      // Call remove helper method.
+      this.root = removeHelper(key, this.root);
+      this.numKeys--; // Decrement number of keys after inserting.
+      // The smallest and largest nodes have at most one child, so the removed
+      // node object is the target itself when it was one of them.
+      if (target == this.minNode)
+        this.minNode = findMinNode(this.root);
+      if (target == this.maxNode)
+        this.maxNode = findMaxNode(this.root);
+      purgeBounds();
+      nodeRemoved(target);
+      publishRemoved(target);
+      keysRemoved(1);
+      recycle(target);
+      return true;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.REMOVE);
+    }
+  }
+
+  /**
+   * Remove helper method.
+   * 
+   * @param target  key of node to be removed.
+   * @param current pointer of current node.
+   * @return root of the tree after node successfully removed.
+   */
+  private Node<K, V> removeHelper(K target, Node<K, V> current) {
+    if (current == null)
+      return current;
+
+    int compare = target.compareTo(current.key); // Compare keys.
+    count(1, 1);
+    if (compare < 0) // Recursively traverse to the left sub-tree.
+      current.left = removeHelper(target, current.left);
+    else if (compare > 0) // Recursively traverse to the left sub-tree.
+      current.right = removeHelper(target, current.right);
+    else { // Found node.
+      if (current.left == null) // Case left child is null.
+        current = current.right;
+      else if (current.right == null) // Case right child is null.
+        current = current.left;
+      else { // Current node to be removed has both childs.
+        // Temporarily store current (to be removed) so that we can still have
+        // access to its left and right child.
+        Node<K, V> temp = current;
+        current = findMinNode(current.right); // Find in-order successor.
+        // Remove the in-order successor from the right sub-tree of current,
+        // following left links without comparing keys again.
+        current.right = removeMinHelper(temp.right);
+        current.left = temp.left; // Reconnect the left child.
+      }
+    }
+    if (current == null)
+      return current;
+    return rebalance(current);
+  }
+
+  /**
+   * Attach a node whose key is larger than every key of a sub-tree, following
+   * right links only. Only the right-right case can occur on the way back.
+   * 
+   * @param newNode new node to be attached.
+   * @param current root of the sub-tree.
+   * @return root of the sub-tree after the node has been attached.
+   */
+  private Node<K, V> appendHelper(Node<K, V> newNode, Node<K, V> current) {
+    if (current == null)
+      return newNode;
+    count(0, 1);
+    current.right = appendHelper(newNode, current.right);
+    return rebalance(current);
+  }
+
+  /**
+   * Remove the node with the smallest key of a sub-tree, following left links
+   * only.
+   * 
+   * @param current root of the sub-tree, not null.
+   * @return root of the sub-tree after the node has been removed.
+   */
+  private Node<K, V> removeMinHelper(Node<K, V> current) {
+    return removeMinHelper(current, null);
+  }
+
+  /**
+   * Remove the node with the smallest key of a sub-tree, and find the new
+   * smallest node on the way: the right child of the removed node, which is a
+   * leaf, or else its parent, the first node met on the way back up.
+   * Rotations above never move it from the left end.
+   * 
+   * @param current root of the sub-tree, not null.
+   * @param next    array whose first element receives the new smallest node,
+   *                or null if it is not needed.
+   * @return root of the sub-tree after the node has been removed.
+   */
+  private Node<K, V> removeMinHelper(Node<K, V> current, Node<K, V>[] next) {
+    count(0, 1);
+    if (current.left == null) { // Smallest node, replace it by its right child.
+      if (next != null)
+        next[0] = current.right;
+      return current.right;
+    }
+    current.left = removeMinHelper(current.left, next);
+    if (next != null && next[0] == null) // Parent of the removed node.
+      next[0] = current;
+    return rebalance(current);
+  }
+
+  /**
+   * Remove the node with the largest key of a sub-tree, following right links
+   * only.
+   * 
+   * @param current root of the sub-tree, not null.
+   * @return root of the sub-tree after the node has been removed.
+   */
+  private Node<K, V> removeMaxHelper(Node<K, V> current) {
+    return removeMaxHelper(current, null);
+  }
+
+  /**
+   * Remove the node with the largest key of a sub-tree, and find the new
+   * largest node on the way, like removeMinHelper.
+   * 
+   * @param current root of the sub-tree, not null.
+   * @param next    array whose first element receives the new largest node,
+   *                or null if it is not needed.
+   * @return root of the sub-tree after the node has been removed.
+   */
+  private Node<K, V> removeMaxHelper(Node<K, V> current, Node<K, V>[] next) {
+    count(0, 1);
+    if (current.right == null) { // Largest node, replace it by its left child.
+      if (next != null)
+        next[0] = current.left;
+      return current.left;
+    }
+    current.right = removeMaxHelper(current.right, next);
+    if (next != null && next[0] == null) // Parent of the removed node.
+      next[0] = current;
+    return rebalance(current);
+  }
+
+  /**
+   * Update the height and balance factor of a node whose sub-trees have
+   * changed by a removal, and rotate it if it is out of balance.
+   * 
+   * @param current node to re-balance, not null.
+   * @return root of the sub-tree after re-balancing.
+   */
+  private Node<K, V> rebalance(Node<K, V> current) {
+    // Update height, size and hash of current node.
+    current.height = getHeight(current);
+    current.size = getSize(current);
+    current.live = getLive(current);
+    updateHash(current);
+
+    int balance = getBalanceFactor(current); // Get balance of current factor.
+    current.balanceFactor = balance; // Re-assign to current's balance factor.
+
+    // Left left case.
+    if (balance > 1 && getBalanceFactor(current.left) >= 0) {
+      recordRotation(false);
+      return rightRotate(current); // Rotate right.
+    }
+
+    // Left right case.
+    if (balance > 1 && getBalanceFactor(current.left) < 0) {
+      recordRotation(true);
+      current.left = leftRotate(current.left); // Rotate left.
+      return rightRotate(current); // Then rotate right.
+    }
+
+    // Right right case.
+    if (balance < -1 && getBalanceFactor(current.right) <= 0) {
+      recordRotation(false);
+      return leftRotate(current); // Rotate left.
+    }
+
+    // Right left case.
+    if (balance < -1 && getBalanceFactor(current.right) > 0) {
+      recordRotation(true);
+      current.right = rightRotate(current.right); // Rotate right.
+      return leftRotate(current); // Then rotate left.
+    }
+
+    return current;
+  }
+
+  /**
+   * Private helper method to find the node with the smallest key.
+   * 
+   * @param current root of the tree/sub-tree to find min node.
+   * @return the node with smallest key.
+   */
+  private Node<K, V> findMinNode(Node<K, V> current) {
+    if (current == null || current.left == null)
+      return current; // Return null or current if current's left child is null.
+    return findMinNode(current.left);
+  }
+
+  /**
+   * Private helper method to find the node with the largest key.
+   * 
+   * @param current root of the tree/sub-tree to find max node.
+   * @return the node with largest key.
+   */
+  private Node<K, V> findMaxNode(Node<K, V> current) {
+    if (current == null)
+      return null;
+    while (current.right != null) // Follow right links to the end.
+      current = current.right;
+    return current;
+  }
+
+  /**
+   * Returns the smallest key in O(1) from the cached smallest node.
+   * 
+   * @return the smallest key, or null if the tree is empty.
+   */
+  public K firstKey() {
+    expire();
+    return this.minNode == null ? null : this.minNode.key;
+  }
+
+  /**
+   * Returns the largest key in O(1) from the cached largest node.
+   * 
+   * @return the largest key, or null if the tree is empty.
+   */
+  public K lastKey() {
+    expire();
+    return this.maxNode == null ? null : this.maxNode.key;
+  }
+
+  /**
+   * Returns the value of the smallest key in O(1), so the tree can be used as
+   * a priority queue.
+   * 
+   * @return the value of the smallest key, or null if the tree is empty.
+   */
+  public V peek() {
+    expire();
+    return this.minNode == null ? null : this.minNode.value;
+  }
+
+  /**
+   * Remove the smallest key in a single descent along left links, without
+   * comparing keys.
+   * 
+   * @return the removed key, or null if the tree is empty.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public K pollFirst() {
+    checkPublisher();
+    expire();
+    if (this.minNode == null)
+      return null;
+    restoreBalance();
+    TreeOperationEvent event = beginOperation();
+    try {
+      Node<K, V> target = this.minNode;
+      Node<K, V>[] next = (Node<K, V>[]) new Node[1];
+      this.root = removeMinHelper(this.root, next);
+      this.numKeys--;
+      this.minNode = next[0];
+      if (this.root == null)
+        this.maxNode = null;
+      purgeBounds();
+      nodeRemoved(target);
+      publishRemoved(target);
+      keysRemoved(1);
+      K key = target.key;
+      recycle(target);
+      return key;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.REMOVE);
+    }
+  }
+
+  /**
+   * Remove the largest key in a single descent along right links, without
+   * comparing keys.
+   * 
+   * @return the removed key, or null if the tree is empty.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public K pollLast() {
+    checkPublisher();
+    expire();
+    if (this.maxNode == null)
+      return null;
+    restoreBalance();
+    TreeOperationEvent event = beginOperation();
+    try {
+      Node<K, V> target = this.maxNode;
+      Node<K, V>[] next = (Node<K, V>[]) new Node[1];
+      this.root = removeMaxHelper(this.root, next);
+      this.numKeys--;
+      this.maxNode = next[0];
+      if (this.root == null)
+        this.minNode = null;
+      purgeBounds();
+      nodeRemoved(target);
+      publishRemoved(target);
+      keysRemoved(1);
+      K key = target.key;
+      recycle(target);
+      return key;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.REMOVE);
+    }
+  }
+
+  /**
+   * Split the tree at key in O(log n): this tree keeps the keys smaller than
+   * key and the returned tree gets the keys greater than or equal to key. The
+   * nodes are moved, not copied, by joining the sub-trees met along the path
+   * of key.
+   * 
+   * @param key A key to split at, that does not have to be in the tree.
+   * @return a new tree with the keys greater than or equal to key.
+   * 
+   * @throws IllegalNullArgumentException  if key is null.
+   * @throws UnsupportedOperationException if this tree cannot move its nodes.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public AvlTree<K, V> split(K key) throws IllegalNullArgumentException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    checkPublisher();
+    ensurePlainTree();
+    purgeTombstones();
+    restoreBalance();
+    Node<K, V>[] upper = (Node<K, V>[]) new Node[1];
+    AvlTree<K, V> tree = new AvlTree<K, V>();
+    tree.maxTombstoneRatio = this.maxTombstoneRatio;
+    tree.hashing = this.hashing;
+    this.root = splitHelper(this.root, key, upper);
+    tree.root = upper[0];
+    this.numKeys = getSize(this.root);
+    tree.numKeys = getSize(tree.root);
+    this.refreshBounds();
+    tree.refreshBounds();
+    publishAll(ChangeEvent.Type.REMOVE, tree.root);
+    keysRemoved(tree.numKeys);
+    return tree;
+  }
+
+  /**
+   * Split helper method.
+   * 
+   * @param current root of the sub-tree to split.
+   * @param key     key to split at.
+   * @param upper   receives the root of the keys greater than or equal to key.
+   * @return root of the keys smaller than key.
+   */
+  private Node<K, V> splitHelper(Node<K, V> current, K key,
+      Node<K, V>[] upper) {
+    if (current == null) {
+      upper[0] = null;
+      return null;
+    }
+    Node<K, V> left = current.left; // Children are relinked by join.
+    Node<K, V> right = current.right;
+    if (key.compareTo(current.key) <= 0) { // Current goes to the upper tree.
+      Node<K, V> lower = splitHelper(left, key, upper);
+      upper[0] = join(upper[0], current, right);
+      return lower;
+    }
+    Node<K, V> lower = splitHelper(right, key, upper);
+    return join(left, current, lower); // Current goes to the lower tree.
+  }
+
+  /**
+   * Move every key of right into left in O(log n), leaving right empty. All
+   * keys of left must be smaller than all keys of right. The smallest node of
+   * right is joined between both trees.
+   * 
+   * @param <K>   is the generic type of key.
+   * @param <V>   is the generic type of value.
+   * @param left  tree with the smaller keys, that receives all keys.
+   * @param right tree with the larger keys, emptied.
+   * @return left.
+   * 
+   * @throws IllegalNullArgumentException  if left or right is null.
+   * @throws IllegalArgumentException      if the key ranges overlap.
+   * @throws UnsupportedOperationException if a tree cannot move its nodes.
+   */
+  public static <K extends Comparable<K>, V> AvlTree<K, V> concat(
+      AvlTree<K, V> left, AvlTree<K, V> right)
+      throws IllegalNullArgumentException {
+    if (left == null || right == null)
+      throw new IllegalNullArgumentException();
+    left.checkPublisher();
+    right.checkPublisher();
+    left.ensurePlainTree();
+    right.ensurePlainTree();
+    left.purgeTombstones();
+    right.purgeTombstones();
+    left.restoreBalance();
+    right.restoreBalance();
+    if (left.hashing && !right.hashing)
+      left.hashAll(right.root); // Right has no hashes yet.
+    if (right.isEmpty())
+      return left;
+    if (left == right || (!left.isEmpty()
+        && left.maxNode.key.compareTo(right.minNode.key) >= 0))
+      throw new IllegalArgumentException("key ranges overlap");
+    right.publishAll(ChangeEvent.Type.REMOVE, right.root);
+    left.publishAll(ChangeEvent.Type.INSERT, right.root);
+    if (left.filter != null)
+      left.filter.invalidate();
+    right.keysRemoved(right.numKeys);
+    Node<K, V> middle = right.minNode;
+    Node<K, V> rest = right.removeMinHelper(right.root);
+    left.root = left.join(left.root, middle, rest);
+    left.numKeys += right.numKeys;
+    if (left.minNode == null)
+      left.minNode = middle;
+    left.maxNode = right.maxNode;
+    right.root = null;
+    right.numKeys = 0;
+    right.minNode = null;
+    right.maxNode = null;
+    return left;
+  }
+
+  /**
+   * Move every key of second into first, leaving second empty, in
+   * O(m log(n / m + 1)) for trees of m and n keys: second is split around each
+   * root of first, recursively, and the halves are joined back. Trees with
+   * disjoint key ranges are concatenated in O(log n). Does not publish to the
+   * change streams of the trees.
+   * 
+   * @param <K>    is the generic type of key.
+   * @param <V>    is the generic type of value.
+   * @param first  tree that receives all keys.
+   * @param second tree emptied.
+   * @param merge  value of a key present in both trees, from the value in
+   *               first and the value in second.
+   * @return first.
+   * 
+   * @throws UnsupportedOperationException if a tree cannot move its nodes.
+   */
+  static <K extends Comparable<K>, V> AvlTree<K, V> union(AvlTree<K, V> first,
+      AvlTree<K, V> second, BinaryOperator<V> merge) {
+    first.ensurePlainTree();
+    second.ensurePlainTree();
+    first.purgeTombstones();
+    second.purgeTombstones();
+    first.restoreBalance();
+    second.restoreBalance();
+    if (first.filter != null)
+      first.filter.invalidate();
+    second.keysRemoved(second.numKeys);
+    if (first.hashing && !second.hashing)
+      first.hashAll(second.root);
+    if (second.isEmpty())
+      return first;
+    if (first.isEmpty())
+      first.root = second.root;
+    else if (first.maxNode.key.compareTo(second.minNode.key) < 0
+        || second.maxNode.key.compareTo(first.minNode.key) < 0) {
+      Node<K, V> low = first.root; // Disjoint, join in key order.
+      Node<K, V> high = second.root;
+      if (second.maxNode.key.compareTo(first.minNode.key) < 0) {
+        low = second.root;
+        high = first.root;
+      }
+      Node<K, V> middle = first.findMinNode(high);
+      first.root = first.join(low, middle, first.removeMinHelper(high));
+    } else
+      first.root = first.unionHelper(first.root, second.root, merge);
+    first.numKeys = first.getSize(first.root);
+    first.refreshBounds();
+    second.root = null;
+    second.numKeys = 0;
+    second.minNode = null;
+    second.maxNode = null;
+    return first;
+  }
+
+  /**
+   * Union helper method.
+   * 
+   * @param first  root of the sub-tree whose values come first in merge.
+   * @param second root of the other sub-tree.
+   * @param merge  value of a key present in both sub-trees.
+   * @return root of the union.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Node<K, V> unionHelper(Node<K, V> first, Node<K, V> second,
+      BinaryOperator<V> merge) {
+    if (first == null)
+      return second;
+    if (second == null)
+      return first;
+    Node<K, V>[] upper = (Node<K, V>[]) new Node[1];
+    Node<K, V> lower = splitHelper(second, first.key, upper);
+    Node<K, V> higher = upper[0];
+    if (higher != null) { // Key of first may also be the smallest of higher.
+      Node<K, V> same = findMinNode(higher);
+      if (same.key.compareTo(first.key) == 0) {
+        higher = removeMinHelper(higher);
+        first.value = merge.apply(first.value, same.value);
+      }
     }
-    return keys;
+    Node<K, V> left = unionHelper(first.left, lower, merge);
+    Node<K, V> right = unionHelper(first.right, higher, merge);
+    return join(left, first, right);
   }
 
   /**
-   * Recursive method to traverse tree level-order.
+   * Join two sub-trees and a middle node whose key lies between them. The
+   * lower sub-tree is attached along the spine of the taller one, at the first
+   * node whose height is within one of it, and the path back up is
+   * re-balanced. Costs O(1 + difference of heights).
    * 
-   * @param current the current node.
-   * @param level   level of tree.
-   * @return the list of keys in-order.
+   * @param left   root of the sub-tree with the smaller keys.
+   * @param middle node with a key between both sub-trees.
+   * @param right  root of the sub-tree with the larger keys.
+   * @return root of the joined sub-tree.
    */
-  private List<K> getLevelOrderHelper(Node<K, V> current, int level) {
-    // Create ArrayList to store keys for this level.
-    List<K> keys = new ArrayList<K>();
-    if (current == null) // Base case: empty tree.
-      return keys;
-    if (level == 1) // Add current node's key if level reaches 1.
-      keys.add(current.key);
-    else if (level > 1) { // Recursive case: add children's key of current node.
-      keys.addAll(getLevelOrderHelper(current.left, level - 1));
-      keys.addAll(getLevelOrderHelper(current.right, level - 1));
+  private Node<K, V> join(Node<K, V> left, Node<K, V> middle,
+      Node<K, V> right) {
+    int leftHeight = left == null ? 0 : left.height;
+    int rightHeight = right == null ? 0 : right.height;
+    if (leftHeight > rightHeight + 1) { // Go down the right spine of left.
+      left.right = join(left.right, middle, right);
+      return rebalance(left);
     }
-    return keys;
+    if (rightHeight > leftHeight + 1) { // Go down the left spine of right.
+      right.left = join(left, middle, right.left);
+      return rebalance(right);
+    }
+    middle.left = left;
+    middle.right = right;
+    return rebalance(middle); // Only updates height, size and balance.
   }
 
   /**
-   * Add the key-value pair to the data structure and increase the number of
-   * keys. If key is null, throw IllegalNullArgumentException. If key is already in
-   * data structure, throw DuplicateKeyException. Do not increase the number of
-   * keys in the structure, if key-value pair is not added.
+   * Remove every key greater than or equal to lo and smaller than hi in
+   * O(log n), by splitting the tree around the range and joining what is left,
+   * plus the cost of publishing or pooling the removed nodes if a change
+   * stream or a node pool is attached.
    * 
-   * @param key   A key to insert.
-   * @param value A value to insert.
+   * @param lo smallest key to remove, that does not have to be in the tree.
+   * @param hi key after the range, that does not have to be in the tree.
+   * @return the number of removed keys.
+   * 
+   * @throws IllegalNullArgumentException  if lo or hi is null.
+   * @throws IllegalArgumentException      if lo is greater than hi.
+   * @throws UnsupportedOperationException if this tree cannot move its nodes.
    */
-  @Override
-  public void insert(K key, V value)
-      throws IllegalNullArgumentException, DuplicateKeyException {
+  public int removeRange(K lo, K hi) throws IllegalNullArgumentException {
+    if (lo == null || hi == null)
+      throw new IllegalNullArgumentException();
+    if (lo.compareTo(hi) > 0)
+      throw new IllegalArgumentException("lo > hi");
+    return removeBetween(lo, hi);
+  }
+
+  /**
+   * Remove every key smaller than key in O(log n), see removeRange.
+   * 
+   * @param key key after the removed keys, that does not have to be in the
+   *            tree.
+   * @return the number of removed keys.
+   * 
+   * @throws IllegalNullArgumentException  if key is null.
+   * @throws UnsupportedOperationException if this tree cannot move its nodes.
+   */
+  public int removeHeadUntil(K key) throws IllegalNullArgumentException {
     if (key == null)
       throw new IllegalNullArgumentException();
-    if (contains(key))
-      throw new DuplicateKeyException();
-    Node<K, V> newNode = new Node<K, V>(key, value); // Construct a new node.
+    return removeBetween(null, key);
+  }
 
-    // Call insert helper method.
-    this.root = insertHelper(newNode, this.root);
-    this.numKeys++; // Increment number of keys after inserting.
+  /**
+   * Remove every key greater than or equal to key in O(log n), see
+   * removeRange.
+   * 
+   * @param key smallest key to remove, that does not have to be in the tree.
+   * @return the number of removed keys.
+   * 
+   * @throws IllegalNullArgumentException  if key is null.
+   * @throws UnsupportedOperationException if this tree cannot move its nodes.
+   */
+  public int removeTailFrom(K key) throws IllegalNullArgumentException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    return removeBetween(key, null);
   }
 
   /**
-   * Insert helper method.
+   * Detach the keys of a range as a whole sub-tree, then join the keys below
+   * and above it again.
    * 
-   * @param newNode new node to be inserted.
-   * @param current root of subtree where newNode will be inserted into.
-   * @return root of the tree after new node has been inserted.
+   * @param lo smallest key to remove, null for no lower bound.
+   * @param hi key after the range, null for no upper bound.
+   * @return the number of removed keys.
    */
-  private Node<K, V> insertHelper(Node<K, V> newNode, Node<K, V> current) {
-    if (current == null) { // Check to prevent null pointer exception.
-      return newNode;
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private int removeBetween(K lo, K hi) {
+    checkPublisher();
+    ensurePlainTree();
+    purgeTombstones();
+    restoreBalance();
+    Node<K, V>[] upper = (Node<K, V>[]) new Node[1];
+    Node<K, V> lower = null;
+    Node<K, V> range = this.root;
+    if (lo != null) {
+      lower = splitHelper(range, lo, upper);
+      range = upper[0];
     }
-    int compare = newNode.key.compareTo(current.key); // Compare keys.
-    if (compare < 0) { // Key added is smaller than current key.
-      // Recursively traverse left to add key.
-      current.left = insertHelper(newNode, current.left);
-      int balance = getBalanceFactor(current); // Get balance of current factor.
-      current.balanceFactor = balance; // Re-assign to current's balance factor.
-      // Compare key added to key of left child of current.
-      int compareLeft = newNode.key.compareTo(current.left.key);
-      // Left left case.
-      if (balance > 1 && compareLeft < 0)
-        return rightRotate(current);
-      // Left right case.
-      if (balance > 1 && compareLeft > 0) {
-        current.left = leftRotate(current.left); // First rotate left.
-        return rightRotate(current); // Then rotate right.
-      }
-    } else if (compare > 0) { // Key added is greater than current key.
-      // Recursively traverse right to add key.
-      current.right = insertHelper(newNode, current.right);
-      int balance = getBalanceFactor(current); // Get balance of current factor.
-      current.balanceFactor = balance; // Re-assign to current's balance factor.
-      // Compare key added to key of right child of current.
-      int compareRight = newNode.key.compareTo(current.right.key);
-      // Right right case.
-      if (balance < -1 && compareRight > 0)
-        return leftRotate(current);
-      // Right left case.
-      if (balance < -1 && compareRight < 0) {
-        current.right = rightRotate(current.right); // First rotate right.
-        return leftRotate(current); // Then rotate left.
-      }
+    Node<K, V> higher = null;
+    if (hi != null) {
+      range = splitHelper(range, hi, upper);
+      higher = upper[0];
     }
-
-    // Update height of current node.
-    current.height = getHeight(current);
-
-    return current;
+    if (higher == null)
+      this.root = lower;
+    else { // The smallest node above the range joins both sides.
+      Node<K, V> middle = findMinNode(higher);
+      this.root = join(lower, middle, removeMinHelper(higher));
+    }
+    int removed = getSize(range);
+    this.numKeys -= removed;
+    refreshBounds();
+    publishAll(ChangeEvent.Type.REMOVE, range);
+    keysRemoved(removed);
+    recycleAll(range);
+    return removed;
   }
 
   /**
-   * If key is found, remove the key-value pair from the data structure and
-   * decrease number keys. If key is not found, do not decrease the number of
-   * keys in the data structure. If key is null, throw IllegalNullArgumentException.
-   * If key is not found, throw KeyNotFoundException().
+   * Put the nodes of a detached sub-tree into the pool, until it is full.
    * 
-   * @param key A key to remove.
-   * @return true always, indicating node removed successfully.
+   * @param current root of the detached sub-tree.
    */
-  @Override
-  public boolean remove(K key)
-      throws IllegalNullArgumentException, KeyNotFoundException {
-    if (key == null)
-      throw new IllegalNullArgumentException();
-    if (!contains(key))
-      throw new KeyNotFoundException();
+  private void recycleAll(Node<K, V> current) {
+    List<Node<K, V>> stack = new ArrayList<Node<K, V>>();
+    if (current != null)
+      stack.add(current);
+    while (!stack.isEmpty() && this.numFreeNodes < this.maxFreeNodes) {
+      Node<K, V> node = stack.remove(stack.size() - 1);
+      if (node.left != null)
+        stack.add(node.left);
+      if (node.right != null)
+        stack.add(node.right);
+      recycle(node);
+    }
+  }
 
-    // Call remove helper method.
-    this.root = removeHelper(key, this.root);
-    this.numKeys--; // Decrement number of keys after inserting.
-    return true;
+  /**
+   * Recompute the cached smallest and largest nodes after the shape of the
+   * tree has changed as a whole.
+   */
+  private void refreshBounds() {
+    this.minNode = findMinNode(this.root);
+    this.maxNode = findMaxNode(this.root);
   }
 
   /**
-   * Remove helper method.
+   * Returns the key of a given rank in O(log n), using live counts so that
+   * tombstones are skipped.
    * 
-   * @param target  key of node to be removed.
-   * @param current pointer of current node.
-   * @return root of the tree after node successfully removed.
+   * @param rank number of smaller keys, from 0 to numKeys - 1.
+   * @return the key of that rank.
    */
-  private Node<K, V> removeHelper(K target, Node<K, V> current) {
-    if (current == null)
-      return current;
+  K selectKey(int rank) {
+    return selectNode(rank).key;
+  }
 
-    int compare = target.compareTo(current.key); // Compare keys.
-    if (compare < 0) // Recursively traverse to the left sub-tree.
-      current.left = removeHelper(target, current.left);
-    else if (compare > 0) // Recursively traverse to the left sub-tree.
-      current.right = removeHelper(target, current.right);
-    else { // Found node.
-      if (current.left == null) // Case left child is null.
-        current = current.right;
-      else if (current.right == null) // Case right child is null.
+  /**
+   * Select key helper method.
+   * 
+   * @param rank number of smaller live keys, from 0 to numKeys - 1.
+   * @return the live node of that rank.
+   */
+  private Node<K, V> selectNode(int rank) {
+    Node<K, V> current = this.root;
+    while (true) {
+      int leftLive = getLive(current.left);
+      if (rank < leftLive)
         current = current.left;
-      else { // Current node to be removed has both childs.
-        // Temporarily store current (to be removed) so that we can still have
-        // access to its left and right child.
-        Node<K, V> temp = current;
-        current = findMinNode(current.right); // Find in-order successor.
-        // Remove the in-order successor from the right sub-tree of current.
-        current.right = removeHelper(current.key, temp.right);
-        current.left = temp.left; // Reconnect the left child.
+      else if (rank == leftLive && !current.deleted)
+        return current;
+      else {
+        rank -= leftLive + (current.deleted ? 0 : 1);
+        current = current.right;
       }
     }
-    if (current == null)
-      return current;
-
-    // Update height of current node.
-    current.height = getHeight(current);
+  }
 
-    int balance = getBalanceFactor(current); // Get balance of current factor.
-    current.balanceFactor = balance; // Re-assign to current's balance factor.
+  /**
+   * Returns the cached node with the smallest key, for the navigable views.
+   * 
+   * @return node with the smallest key, or null if the tree is empty.
+   */
+  Node<K, V> firstNode() {
+    return this.minNode;
+  }
 
-    // Left left case.
-    if (balance > 1 && getBalanceFactor(current.left) >= 0)
-      return rightRotate(current); // Rotate right.
+  /**
+   * Returns the cached node with the largest key, for the navigable views.
+   * 
+   * @return node with the largest key, or null if the tree is empty.
+   */
+  Node<K, V> lastNode() {
+    return this.maxNode;
+  }
 
-    // Left right case.
-    if (balance > 1 && getBalanceFactor(current.left) < 0) {
-      current.left = leftRotate(current.left); // Rotate left.
-      return rightRotate(current); // Then rotate right.
+  /**
+   * Find the nearest node to a key in one descent: floor (below, inclusive),
+   * lower (below, exclusive), ceiling (above, inclusive) or higher (above,
+   * exclusive). While there are tombstones, it ranks key and selects the
+   * nearest live node instead, in two descents.
+   * 
+   * @param key       key to compare to, that does not have to be in the tree.
+   * @param below     true for a node with a smaller key, false for larger.
+   * @param inclusive true if the node of key itself qualifies.
+   * @return the nearest qualifying node, or null if there is none.
+   */
+  Node<K, V> findNear(K key, boolean below, boolean inclusive) {
+    if (this.numTombstones > 0) { // The nearest may lie past a tombstone.
+      int rank = rank(key, below == inclusive);
+      if (below)
+        return rank == 0 ? null : selectNode(rank - 1);
+      return rank == this.numKeys ? null : selectNode(rank);
     }
-
-    // Right right case.
-    if (balance < -1 && getBalanceFactor(current.right) <= 0)
-      return leftRotate(current); // Rotate left.
-
-    // Right left case.
-    if (balance < -1 && getBalanceFactor(current.right) > 0) {
-      current.right = rightRotate(current.right); // Rotate right.
-      return leftRotate(current); // Then rotate left.
+    Node<K, V> best = null;
+    Node<K, V> current = this.root;
+    while (current != null) {
+      int compare = key.compareTo(current.key);
+      if (compare == 0 && inclusive)
+        return current;
+      if (below ? compare > 0 : compare < 0) { // Qualifies, look closer.
+        best = current;
+        current = below ? current.right : current.left;
+      } else
+        current = below ? current.left : current.right;
     }
-
-    return current;
+    return best;
   }
 
   /**
-   * Private helper method to find the node with the smallest key.
+   * Returns the number of keys smaller than key, or smaller than or equal to
+   * key, in O(log n) using live counts so that tombstones are skipped.
    * 
-   * @param current root of the tree/sub-tree to find min node.
-   * @return the node with smallest key.
+   * @param key       key to compare to, that does not have to be in the tree.
+   * @param inclusive true to count key itself if present.
+   * @return number of keys before key.
    */
-  private Node<K, V> findMinNode(Node<K, V> current) {
-    if (current == null || current.left == null)
-      return current; // Return null or current if current's left child is null.
-    return findMinNode(current.left);
+  int rank(K key, boolean inclusive) {
+    int rank = 0;
+    Node<K, V> current = this.root;
+    while (current != null) {
+      int compare = key.compareTo(current.key);
+      if (compare < 0 || (compare == 0 && !inclusive))
+        current = current.left;
+      else { // Current and its left sub-tree come before key.
+        rank += getLive(current.left) + (current.deleted ? 0 : 1);
+        current = current.right;
+      }
+    }
+    return rank;
   }
 
   /**
@@ -516,12 +2379,18 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
    */
   @Override
   public V get(K key) throws IllegalNullArgumentException, KeyNotFoundException {
-    if (key == null)
-      throw new IllegalNullArgumentException();
-    if (getNodeHelper(key, this.root) == null)
-      throw new KeyNotFoundException();
-    else // Call get node helper to retrieve the node with that key.
-      return getNodeHelper(key, this.root).value;
+    TreeOperationEvent event = beginOperation();
+    try {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      // Call get node helper to retrieve the node with that key.
+      Node<K, V> node = lookup(key);
+      if (node == null)
+        throw new KeyNotFoundException();
+      return node.value;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.GET);
+    }
   }
 
   /**
@@ -532,17 +2401,19 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
    * @return node that contains key given if found, otherwise null.
    */
   private Node<K, V> getNodeHelper(K key, Node<K, V> current) {
+    int visited = 0; // Nodes visited, counted locally to keep the loop tight.
     while (current != null) { // Only if current is not null.
+      visited++;
       int compare = key.compareTo(current.key);
       if (compare < 0) // Traverse to the left sub-tree.
         current = current.left;
       else if (compare > 0) // Traverse to the right sub-tree.
         current = current.right;
       else // Node found.
-        return current;
+        break;
     }
+    count(visited, visited); // One comparison per visited node.
     return current;
-
   }
 
   /**
@@ -555,12 +2426,178 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
    */
   @Override
   public boolean contains(K key) throws IllegalNullArgumentException {
-    if (key == null)
+    TreeOperationEvent event = beginOperation();
+    try {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      Node<K, V> node = lookup(key);
+      if (node == null) // Node not found.
+        return false;
+      else
+        return true;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.CONTAINS);
+    }
+  }
+
+  /**
+   * Looks up a batch of keys in one coordinated walk of the tree. The probe
+   * keys are ordered first so that keys sharing a path from the root are
+   * resolved together instead of each starting again at the root. The value of
+   * keys[i] is written to values[i], or null if keys[i] is not in the tree.
+   *
+   * @param keys   keys to look up, left unmodified.
+   * @param values output array, at least as long as keys.
+   * @return the number of keys found.
+   *
+   * @throws IllegalNullArgumentException if keys, values or any key is null.
+   */
+  public int getAll(K[] keys, V[] values) throws IllegalNullArgumentException {
+    if (keys == null || values == null)
       throw new IllegalNullArgumentException();
-    if (getNodeHelper(key, this.root) == null) // Node not found.
-      return false;
-    else
-      return true;
+    if (values.length < keys.length)
+      throw new IllegalArgumentException("Output array is too short.");
+    expire();
+    TreeOperationEvent event = beginOperation();
+    try {
+      int[] order = sortProbeKeys(keys); // Probe indexes in key order.
+      return getAllHelper(this.root, keys, order, 0, keys.length, values);
+    } finally {
+      endOperation(event, TreeMetrics.Operation.GET_ALL);
+    }
+  }
+
+  /**
+   * Returns true if every key of the batch is in the data structure. Uses the
+   * same shared descent as getAll.
+   *
+   * @param keys keys to check, left unmodified.
+   * @return true if all keys are found, false otherwise.
+   *
+   * @throws IllegalNullArgumentException if keys or any key is null.
+   */
+  public boolean containsAll(K[] keys) throws IllegalNullArgumentException {
+    if (keys == null)
+      throw new IllegalNullArgumentException();
+    expire();
+    TreeOperationEvent event = beginOperation();
+    try {
+      int[] order = sortProbeKeys(keys); // Probe indexes in key order.
+      return getAllHelper(this.root, keys, order, 0, keys.length,
+          null) == keys.length;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.GET_ALL);
+    }
+  }
+
+  /**
+   * Recursive helper of the batched lookup. The probes order[from..to) all
+   * belong to the sub-tree rooted at current; they are partitioned around the
+   * current key and the two halves continue into the matching child.
+   *
+   * @param current root of sub-tree.
+   * @param keys    probe keys.
+   * @param order   probe indexes sorted by key.
+   * @param from    first position of order to resolve, inclusive.
+   * @param to      last position of order to resolve, exclusive.
+   * @param values  output array, or null to only count matches.
+   * @return the number of probes found in this sub-tree.
+   */
+  private int getAllHelper(Node<K, V> current, K[] keys, int[] order,
+      int from, int to, V[] values) {
+    if (from >= to) // No probes left for this sub-tree.
+      return 0;
+    if (current == null) { // Probes fell off the tree, all of them miss.
+      if (values != null)
+        for (int i = from; i < to; i++)
+          values[order[i]] = null;
+      return 0;
+    }
+    count(0, 1);
+    // First probe not smaller than current key, and first probe greater.
+    int lower = lowerBound(current.key, keys, order, from, to, false);
+    int upper = lowerBound(current.key, keys, order, lower, to, true);
+    for (int i = lower; i < upper; i++) // Probes equal to current key.
+      if (values != null)
+        values[order[i]] = current.value; // Null for a tombstone.
+    return (current.deleted ? 0 : upper - lower)
+        + getAllHelper(current.left, keys, order, from, lower, values)
+        + getAllHelper(current.right, keys, order, upper, to, values);
+  }
+
+  /**
+   * Binary search over the sorted probes for the first probe that is not
+   * smaller than key, or with strict set, the first probe greater than key.
+   *
+   * @param key    key to search for.
+   * @param keys   probe keys.
+   * @param order  probe indexes sorted by key.
+   * @param from   start of the search range, inclusive.
+   * @param to     end of the search range, exclusive.
+   * @param strict true to skip probes equal to key.
+   * @return position in order of the bound.
+   */
+  private int lowerBound(K key, K[] keys, int[] order, int from, int to,
+      boolean strict) {
+    while (from < to) {
+      int mid = (from + to) >>> 1;
+      int compare = keys[order[mid]].compareTo(key);
+      count(1, 0);
+      if (compare < 0 || (strict && compare == 0))
+        from = mid + 1;
+      else
+        to = mid;
+    }
+    return from;
+  }
+
+  /**
+   * Sorts the indexes of the probe keys by key with a merge sort, so that the
+   * caller's array is not reordered and no key is boxed.
+   *
+   * @param keys probe keys.
+   * @return probe indexes in ascending key order.
+   *
+   * @throws IllegalNullArgumentException if any key is null.
+   */
+  private int[] sortProbeKeys(K[] keys) throws IllegalNullArgumentException {
+    int[] order = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] == null)
+        throw new IllegalNullArgumentException();
+      order[i] = i;
+    }
+    if (keys.length > 1)
+      mergeSort(keys, order, new int[keys.length], 0, keys.length);
+    return order;
+  }
+
+  /**
+   * Recursive merge sort of order[from..to) by the keys they refer to.
+   *
+   * @param keys  probe keys.
+   * @param order indexes to sort.
+   * @param temp  scratch space as long as order.
+   * @param from  start of the range, inclusive.
+   * @param to    end of the range, exclusive.
+   */
+  private void mergeSort(K[] keys, int[] order, int[] temp, int from, int to) {
+    if (to - from < 2)
+      return;
+    int mid = (from + to) >>> 1;
+    mergeSort(keys, order, temp, from, mid);
+    mergeSort(keys, order, temp, mid, to);
+    if (keys[order[mid - 1]].compareTo(keys[order[mid]]) <= 0)
+      return; // Halves are already in order.
+    System.arraycopy(order, from, temp, from, to - from);
+    int i = from, j = mid, k = from;
+    while (i < mid && j < to)
+      order[k++] = keys[temp[j]].compareTo(keys[temp[i]]) < 0 ? temp[j++]
+          : temp[i++];
+    while (i < mid)
+      order[k++] = temp[i++];
+    while (j < to)
+      order[k++] = temp[j++];
   }
 
   /**
@@ -573,6 +2610,73 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
     return this.numKeys;
   }
 
+  /**
+   * Returns a sequential stream of the keys in sorted order.
+   *
+   * @return stream of the keys.
+   */
+  public Stream<K> stream() {
+    return keyStream(false);
+  }
+
+  /**
+   * Returns a parallel stream of the keys in sorted order.
+   *
+   * @return stream of the keys.
+   */
+  public Stream<K> parallelStream() {
+    return keyStream(true);
+  }
+
+  /**
+   * Returns a stream of the keys in sorted order. It is backed by a
+   * spliterator that splits at sub-tree boundaries, reporting SORTED,
+   * DISTINCT, ORDERED, NONNULL, SIZED and SUBSIZED. The tree must not be
+   * modified while the stream runs.
+   *
+   * @param parallel true for a parallel stream.
+   * @return stream of the keys.
+   */
+  public Stream<K> keyStream(boolean parallel) {
+    expire();
+    return StreamSupport.stream(new TreeSpliterator<K, V, K>(this.root,
+        this.numKeys, node -> node.key, null, Spliterator.SORTED
+            | Spliterator.DISTINCT | Spliterator.ORDERED | Spliterator.NONNULL),
+        parallel);
+  }
+
+  /**
+   * Returns a stream of the values in the order of their keys. The tree must
+   * not be modified while the stream runs.
+   *
+   * @param parallel true for a parallel stream.
+   * @return stream of the values.
+   */
+  public Stream<V> valueStream(boolean parallel) {
+    expire();
+    return StreamSupport.stream(new TreeSpliterator<K, V, V>(this.root,
+        this.numKeys, node -> node.value, null, Spliterator.ORDERED), parallel);
+  }
+
+  /**
+   * Returns a stream of immutable key-value entries in sorted key order, with
+   * the same characteristics as keyStream. The tree must not be modified while
+   * the stream runs.
+   *
+   * @param parallel true for a parallel stream.
+   * @return stream of the entries.
+   */
+  public Stream<Map.Entry<K, V>> entryStream(boolean parallel) {
+    expire();
+    return StreamSupport.stream(new TreeSpliterator<K, V, Map.Entry<K, V>>(
+        this.root, this.numKeys,
+        node -> new AbstractMap.SimpleImmutableEntry<K, V>(node.key,
+            node.value),
+        Map.Entry.comparingByKey(), Spliterator.SORTED | Spliterator.DISTINCT
+            | Spliterator.ORDERED | Spliterator.NONNULL),
+        parallel);
+  }
+
   /**
    * Print the tree.
    *
@@ -605,6 +2709,7 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
    */
   @Override
   public void print() {
+    purgeTombstones();
     System.out.println("##################################################"
         + "###################################");
     System.out.println("Tree structure:");
@@ -640,6 +2745,23 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
         + "-----------------------------------");
   }
 
+  /**
+   * Write the tree to out in the given format, visiting at most maxNodes nodes
+   * down to maxDepth levels. Unlike print, this runs in time linear in the
+   * number of nodes written and does not touch System.out, so it is safe to
+   * use on large trees.
+   * 
+   * @param out      destination of the output.
+   * @param format   output format.
+   * @param maxDepth maximum number of levels to write.
+   * @param maxNodes maximum number of nodes to write.
+   * @throws IOException if out fails.
+   */
+  public void render(Appendable out, TreeRenderer.Format format, int maxDepth,
+      int maxNodes) throws IOException {
+    new TreeRenderer(format, maxDepth, maxNodes).render(this, out);
+  }
+
   /**
    * Print spaces (tabs) needed to format the tree to look nice.
    * 
@@ -691,10 +2813,16 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
     // Set right child of new root as left child of current root.
     root.left = newRootRight;
 
-    // Update height of current root.
+    // Update height, size and hash of current root.
     root.height = getHeight(root);
-    // Update height of new root.
+    root.size = getSize(root);
+    root.live = getLive(root);
+    updateHash(root);
+    // Update height, size and hash of new root.
     newRoot.height = getHeight(newRoot);
+    newRoot.size = getSize(newRoot);
+    newRoot.live = getLive(newRoot);
+    updateHash(newRoot);
 
     // Update balance factors.
     root.balanceFactor = getBalanceFactor(root);
@@ -719,10 +2847,16 @@ public class AvlTree<K extends Comparable<K>, V> implements AvlTreeADT<K, V> {
     // Set left child of new root as right child of current root.
     root.right = newRootLeft;
 
-    // Update height of current root.
+    // Update height, size and hash of current root.
     root.height = getHeight(root);
-    // Update height of new root.
+    root.size = getSize(root);
+    root.live = getLive(root);
+    updateHash(root);
+    // Update height, size and hash of new root.
     newRoot.height = getHeight(newRoot);
+    newRoot.size = getSize(newRoot);
+    newRoot.live = getLive(newRoot);
+    updateHash(newRoot);
 
     // Update balance factors.
     root.balanceFactor = getBalanceFactor(root);
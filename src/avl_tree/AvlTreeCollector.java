@@ -0,0 +1,178 @@
+package avl_tree;
+
+import exception.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Collector that builds an AvlTree from a stream in any order, sequential or
+ * parallel. Each thread only appends the pairs it receives to a buffer. A
+ * buffer is then sorted and built into a perfectly balanced tree in one pass,
+ * without rotations, and the trees of two threads are combined with a union
+ * that moves their nodes: O(log n) when their key ranges do not overlap, as
+ * for an ordered source split in chunks.
+ *
+ * Keys found more than once are resolved by a DuplicatePolicy, in encounter
+ * order, instead of throwing DuplicateKeyException.
+ *
+ * @param <T> is the type of the stream elements.
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class AvlTreeCollector<T, K extends Comparable<K>, V>
+    implements Collector<T, AvlTreeCollector.Partial<K, V>, AvlTree<K, V>> {
+  /**
+   * What to do with a key found more than once.
+   */
+  public enum DuplicatePolicy {
+    REJECT, // Throw IllegalStateException.
+    KEEP_FIRST, // Keep the value first met in encounter order.
+    KEEP_LAST // Keep the value last met in encounter order.
+  }
+
+  /**
+   * Result of one thread: pairs not sorted yet, or the tree built from them.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  static class Partial<K extends Comparable<K>, V> {
+    List<K> keys = new ArrayList<K>(); // Keys in encounter order.
+    List<V> values = new ArrayList<V>(); // Values of keys.
+    AvlTree<K, V> tree; // Tree of the pairs, null until built.
+  }
+
+  private final Function<? super T, ? extends K> keyMapper; // Key of element.
+  private final Function<? super T, ? extends V> valueMapper; // Its value.
+  private final DuplicatePolicy policy; // Resolves repeated keys.
+
+  /**
+   * Constructor of a collector.
+   *
+   * @param keyMapper   computes the key of an element, never null.
+   * @param valueMapper computes the value of an element.
+   * @param policy      resolves keys found more than once.
+   */
+  private AvlTreeCollector(Function<? super T, ? extends K> keyMapper,
+      Function<? super T, ? extends V> valueMapper, DuplicatePolicy policy) {
+    this.keyMapper = keyMapper;
+    this.valueMapper = valueMapper;
+    this.policy = policy;
+  }
+
+  /**
+   * Returns a collector into an AvlTree.
+   *
+   * @param <T>         is the type of the stream elements.
+   * @param <K>         is the generic type of key.
+   * @param <V>         is the generic type of value.
+   * @param keyMapper   computes the key of an element, never null.
+   * @param valueMapper computes the value of an element.
+   * @param policy      resolves keys found more than once.
+   * @return the collector.
+   */
+  public static <T, K extends Comparable<K>, V> AvlTreeCollector<T, K, V>
+      toAvlTree(Function<? super T, ? extends K> keyMapper,
+          Function<? super T, ? extends V> valueMapper,
+          DuplicatePolicy policy) {
+    if (keyMapper == null || valueMapper == null || policy == null)
+      throw new NullPointerException();
+    return new AvlTreeCollector<T, K, V>(keyMapper, valueMapper, policy);
+  }
+
+  @Override
+  public Supplier<Partial<K, V>> supplier() {
+    return Partial::new;
+  }
+
+  @Override
+  public BiConsumer<Partial<K, V>, T> accumulator() {
+    return (partial, element) -> {
+      K key = this.keyMapper.apply(element);
+      if (key == null)
+        throw new NullPointerException("null key");
+      partial.keys.add(key);
+      partial.values.add(this.valueMapper.apply(element));
+    };
+  }
+
+  @Override
+  public BinaryOperator<Partial<K, V>> combiner() {
+    return (first, second) -> {
+      AvlTree.union(build(first), build(second), this::resolve);
+      return first;
+    };
+  }
+
+  @Override
+  public Function<Partial<K, V>, AvlTree<K, V>> finisher() {
+    return this::build;
+  }
+
+  @Override
+  public Set<Characteristics> characteristics() {
+    return Collections.emptySet(); // Encounter order resolves duplicates.
+  }
+
+  /**
+   * Value of a key met twice.
+   *
+   * @param first  value met first.
+   * @param second value met last.
+   * @return the value kept.
+   *
+   * @throws IllegalStateException if the policy rejects duplicates.
+   */
+  private V resolve(V first, V second) {
+    if (this.policy == DuplicatePolicy.REJECT)
+      throw new IllegalStateException("duplicate key",
+          new DuplicateKeyException());
+    return this.policy == DuplicatePolicy.KEEP_FIRST ? first : second;
+  }
+
+  /**
+   * Build the tree of a partial result, once: sort the pairs by key, keeping
+   * encounter order among equal keys, resolve duplicates and build.
+   *
+   * @param partial partial result.
+   * @return its tree.
+   */
+  private AvlTree<K, V> build(Partial<K, V> partial) {
+    if (partial.tree != null)
+      return partial.tree;
+    List<K> keys = partial.keys;
+    Integer[] order = new Integer[keys.size()];
+    for (int i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b)));
+    List<K> sortedKeys = new ArrayList<K>(order.length);
+    List<V> sortedValues = new ArrayList<V>(order.length);
+    for (int i = 0; i < order.length; i++) {
+      K key = keys.get(order[i]);
+      V value = partial.values.get(order[i]);
+      int last = sortedKeys.size() - 1;
+      if (last >= 0 && sortedKeys.get(last).compareTo(key) == 0)
+        sortedValues.set(last, resolve(sortedValues.get(last), value));
+      else {
+        sortedKeys.add(key);
+        sortedValues.add(value);
+      }
+    }
+    partial.tree = new AvlTree<K, V>();
+    partial.tree.buildSorted(sortedKeys, sortedValues, 0, sortedKeys.size());
+    partial.keys = null; // Release the buffers.
+    partial.values = null;
+    return partial.tree;
+  }
+}
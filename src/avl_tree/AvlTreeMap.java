@@ -0,0 +1,829 @@
+package avl_tree;
+
+import exception.*;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * NavigableMap backed by an AvlTree, as a drop-in replacement for TreeMap with
+ * natural ordering. Lookups, updates and navigation (floor, ceiling, lower,
+ * higher, first and last) take one descent of the tree, and so does size of a
+ * sub-map thanks to sub-tree sizes. Null keys are rejected with
+ * NullPointerException, as by TreeMap.
+ *
+ * Sub-map, head-map, tail-map and descending views are instances of this class
+ * sharing the tree of the map they come from, restricted to a range of keys
+ * and possibly reversed. Iterators are fail-fast.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class AvlTreeMap<K extends Comparable<K>, V> extends AbstractMap<K, V>
+    implements NavigableMap<K, V> {
+  /**
+   * Tree shared by a map and all its views.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  private static class Backing<K extends Comparable<K>, V> {
+    AvlTree<K, V> tree; // Keys of the map, replaced by clear.
+    int modCount; // Number of structural modifications, for iterators.
+
+    Backing() {
+      this.tree = new AvlTree<K, V>();
+      this.modCount = 0;
+    }
+  }
+
+  private final Backing<K, V> backing; // Tree of the map and its views.
+  private final boolean fromStart; // True if there is no lower bound.
+  private final K lo; // Lower bound, in natural order.
+  private final boolean loInclusive; // True if lo itself is in range.
+  private final boolean toEnd; // True if there is no upper bound.
+  private final K hi; // Upper bound, in natural order.
+  private final boolean hiInclusive; // True if hi itself is in range.
+  private final boolean descending; // True if the view is reversed.
+
+  /**
+   * Constructor of an empty map.
+   */
+  public AvlTreeMap() {
+    this(new Backing<K, V>(), true, null, true, true, null, true, false);
+  }
+
+  /**
+   * Constructor of a map with the same mappings as another map.
+   *
+   * @param map mappings to copy.
+   */
+  public AvlTreeMap(Map<? extends K, ? extends V> map) {
+    this();
+    putAll(map);
+  }
+
+  /**
+   * Constructor of a view of a backing tree, with bounds in natural order.
+   *
+   * @param backing     tree of the map.
+   * @param fromStart   true if there is no lower bound.
+   * @param lo          lower bound.
+   * @param loInclusive true if lo itself is in range.
+   * @param toEnd       true if there is no upper bound.
+   * @param hi          upper bound.
+   * @param hiInclusive true if hi itself is in range.
+   * @param descending  true if the view is reversed.
+   */
+  private AvlTreeMap(Backing<K, V> backing, boolean fromStart, K lo,
+      boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive,
+      boolean descending) {
+    this.backing = backing;
+    this.fromStart = fromStart;
+    this.lo = lo;
+    this.loInclusive = loInclusive;
+    this.toEnd = toEnd;
+    this.hi = hi;
+    this.hiInclusive = hiInclusive;
+    this.descending = descending;
+  }
+
+  /**
+   * @param key key to check.
+   * @return true if key is below the range of this view.
+   */
+  private boolean tooLow(K key) {
+    if (this.fromStart)
+      return false;
+    int compare = key.compareTo(this.lo);
+    return compare < 0 || (compare == 0 && !this.loInclusive);
+  }
+
+  /**
+   * @param key key to check.
+   * @return true if key is above the range of this view.
+   */
+  private boolean tooHigh(K key) {
+    if (this.toEnd)
+      return false;
+    int compare = key.compareTo(this.hi);
+    return compare > 0 || (compare == 0 && !this.hiInclusive);
+  }
+
+  /**
+   * @param key key to check.
+   * @return true if key is in the range of this view.
+   */
+  private boolean inRange(K key) {
+    return !tooLow(key) && !tooHigh(key);
+  }
+
+  /**
+   * @param key       bound of a new view.
+   * @param inclusive true if the bound is inclusive.
+   * @return true if the bound is allowed inside the range of this view.
+   */
+  private boolean inRange(K key, boolean inclusive) {
+    if (inclusive)
+      return inRange(key);
+    return (this.fromStart || key.compareTo(this.lo) >= 0)
+        && (this.toEnd || key.compareTo(this.hi) <= 0);
+  }
+
+  /**
+   * @param key key given by a caller.
+   * @return key, cast to the type of keys.
+   *
+   * @throws NullPointerException if key is null.
+   * @throws ClassCastException   if key cannot be compared to keys.
+   */
+  @SuppressWarnings("unchecked")
+  private K toKey(Object key) {
+    return (K) Objects.requireNonNull(key);
+  }
+
+  /**
+   * @return node with the smallest key in range, or null.
+   */
+  private AvlTree.Node<K, V> absLowest() {
+    AvlTree<K, V> tree = this.backing.tree;
+    AvlTree.Node<K, V> node = this.fromStart ? tree.firstNode()
+        : tree.findNear(this.lo, false, this.loInclusive);
+    return node == null || tooHigh(node.key) ? null : node;
+  }
+
+  /**
+   * @return node with the largest key in range, or null.
+   */
+  private AvlTree.Node<K, V> absHighest() {
+    AvlTree<K, V> tree = this.backing.tree;
+    AvlTree.Node<K, V> node = this.toEnd ? tree.lastNode()
+        : tree.findNear(this.hi, true, this.hiInclusive);
+    return node == null || tooLow(node.key) ? null : node;
+  }
+
+  /**
+   * @param key       key to compare to.
+   * @param inclusive true for ceiling, false for higher.
+   * @return nearest node above key in range, or null.
+   */
+  private AvlTree.Node<K, V> absAbove(K key, boolean inclusive) {
+    if (tooLow(key))
+      return absLowest();
+    AvlTree.Node<K, V> node = this.backing.tree.findNear(key, false, inclusive);
+    return node == null || tooHigh(node.key) ? null : node;
+  }
+
+  /**
+   * @param key       key to compare to.
+   * @param inclusive true for floor, false for lower.
+   * @return nearest node below key in range, or null.
+   */
+  private AvlTree.Node<K, V> absBelow(K key, boolean inclusive) {
+    if (tooHigh(key))
+      return absHighest();
+    AvlTree.Node<K, V> node = this.backing.tree.findNear(key, true, inclusive);
+    return node == null || tooLow(node.key) ? null : node;
+  }
+
+  /**
+   * @param node node, or null.
+   * @return immutable snapshot of the node, or null.
+   */
+  private static <K, V> Map.Entry<K, V> snapshot(AvlTree.Node<K, V> node) {
+    return node == null ? null
+        : new AbstractMap.SimpleImmutableEntry<K, V>(node.key, node.value);
+  }
+
+  /**
+   * @param node node, or null.
+   * @return key of the node.
+   *
+   * @throws NoSuchElementException if node is null.
+   */
+  private static <K> K keyOrThrow(AvlTree.Node<K, ?> node) {
+    if (node == null)
+      throw new NoSuchElementException();
+    return node.key;
+  }
+
+  @Override
+  public int size() {
+    AvlTree<K, V> tree = this.backing.tree;
+    if (this.fromStart && this.toEnd)
+      return tree.numKeys();
+    int below = this.toEnd ? tree.numKeys() : tree.rank(this.hi,
+        this.hiInclusive);
+    int before = this.fromStart ? 0 : tree.rank(this.lo, !this.loInclusive);
+    return Math.max(0, below - before);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return absLowest() == null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    K k = toKey(key);
+    return inRange(k) && this.backing.tree.findNode(k) != null;
+  }
+
+  @Override
+  public V get(Object key) {
+    K k = toKey(key);
+    if (!inRange(k))
+      return null;
+    AvlTree.Node<K, V> node = this.backing.tree.findNode(k);
+    return node == null ? null : node.value;
+  }
+
+  @Override
+  public V put(K key, V value) {
+    Objects.requireNonNull(key);
+    if (!inRange(key))
+      throw new IllegalArgumentException("key out of range");
+    AvlTree<K, V> tree = this.backing.tree;
+    int numKeys = tree.numKeys();
+    try {
+      V previous = tree.put(key, value);
+      if (tree.numKeys() != numKeys)
+        this.backing.modCount++;
+      return previous;
+    } catch (IllegalNullArgumentException e) {
+      throw new NullPointerException();
+    }
+  }
+
+  @Override
+  public V remove(Object key) {
+    K k = toKey(key);
+    if (!inRange(k))
+      return null;
+    AvlTree.Node<K, V> node = this.backing.tree.findNode(k);
+    if (node == null)
+      return null;
+    V value = node.value;
+    removeKey(k);
+    return value;
+  }
+
+  /**
+   * Remove a key known to be in the tree.
+   *
+   * @param key key to remove.
+   */
+  private void removeKey(K key) {
+    try {
+      this.backing.tree.remove(key);
+      this.backing.modCount++;
+    } catch (IllegalNullArgumentException | KeyNotFoundException e) {
+      throw new ConcurrentModificationException();
+    }
+  }
+
+  @Override
+  public void clear() {
+    if (this.fromStart && this.toEnd) { // Drop the whole tree at once.
+      this.backing.tree = new AvlTree<K, V>();
+      this.backing.modCount++;
+    } else { // Remove the keys of the range one by one.
+      Iterator<Map.Entry<K, V>> it = entrySet().iterator();
+      while (it.hasNext()) {
+        it.next();
+        it.remove();
+      }
+    }
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new EntrySet();
+  }
+
+  @Override
+  public Set<K> keySet() {
+    return navigableKeySet();
+  }
+
+  @Override
+  public Comparator<? super K> comparator() {
+    return this.descending ? Collections.reverseOrder() : null;
+  }
+
+  @Override
+  public K firstKey() {
+    return keyOrThrow(this.descending ? absHighest() : absLowest());
+  }
+
+  @Override
+  public K lastKey() {
+    return keyOrThrow(this.descending ? absLowest() : absHighest());
+  }
+
+  @Override
+  public Map.Entry<K, V> firstEntry() {
+    return snapshot(this.descending ? absHighest() : absLowest());
+  }
+
+  @Override
+  public Map.Entry<K, V> lastEntry() {
+    return snapshot(this.descending ? absLowest() : absHighest());
+  }
+
+  @Override
+  public Map.Entry<K, V> pollFirstEntry() {
+    Map.Entry<K, V> entry = firstEntry();
+    if (entry != null)
+      removeKey(entry.getKey());
+    return entry;
+  }
+
+  @Override
+  public Map.Entry<K, V> pollLastEntry() {
+    Map.Entry<K, V> entry = lastEntry();
+    if (entry != null)
+      removeKey(entry.getKey());
+    return entry;
+  }
+
+  @Override
+  public Map.Entry<K, V> lowerEntry(K key) {
+    K k = toKey(key);
+    return snapshot(this.descending ? absAbove(k, false) : absBelow(k, false));
+  }
+
+  @Override
+  public K lowerKey(K key) {
+    Map.Entry<K, V> entry = lowerEntry(key);
+    return entry == null ? null : entry.getKey();
+  }
+
+  @Override
+  public Map.Entry<K, V> floorEntry(K key) {
+    K k = toKey(key);
+    return snapshot(this.descending ? absAbove(k, true) : absBelow(k, true));
+  }
+
+  @Override
+  public K floorKey(K key) {
+    Map.Entry<K, V> entry = floorEntry(key);
+    return entry == null ? null : entry.getKey();
+  }
+
+  @Override
+  public Map.Entry<K, V> ceilingEntry(K key) {
+    K k = toKey(key);
+    return snapshot(this.descending ? absBelow(k, true) : absAbove(k, true));
+  }
+
+  @Override
+  public K ceilingKey(K key) {
+    Map.Entry<K, V> entry = ceilingEntry(key);
+    return entry == null ? null : entry.getKey();
+  }
+
+  @Override
+  public Map.Entry<K, V> higherEntry(K key) {
+    K k = toKey(key);
+    return snapshot(this.descending ? absBelow(k, false) : absAbove(k, false));
+  }
+
+  @Override
+  public K higherKey(K key) {
+    Map.Entry<K, V> entry = higherEntry(key);
+    return entry == null ? null : entry.getKey();
+  }
+
+  @Override
+  public NavigableMap<K, V> descendingMap() {
+    return new AvlTreeMap<K, V>(this.backing, this.fromStart, this.lo,
+        this.loInclusive, this.toEnd, this.hi, this.hiInclusive,
+        !this.descending);
+  }
+
+  @Override
+  public NavigableSet<K> navigableKeySet() {
+    return new KeySet<K>(this);
+  }
+
+  @Override
+  public NavigableSet<K> descendingKeySet() {
+    return new KeySet<K>(descendingMap());
+  }
+
+  @Override
+  public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey,
+      boolean toInclusive) {
+    Objects.requireNonNull(fromKey);
+    Objects.requireNonNull(toKey);
+    if (this.descending) // Bounds are given in reverse order.
+      return view(false, toKey, toInclusive, false, fromKey, fromInclusive);
+    return view(false, fromKey, fromInclusive, false, toKey, toInclusive);
+  }
+
+  @Override
+  public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+    Objects.requireNonNull(toKey);
+    if (this.descending) // Keys after toKey in reverse order are above it.
+      return view(false, toKey, inclusive, this.toEnd, this.hi,
+          this.hiInclusive);
+    return view(this.fromStart, this.lo, this.loInclusive, false, toKey,
+        inclusive);
+  }
+
+  @Override
+  public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+    Objects.requireNonNull(fromKey);
+    if (this.descending)
+      return view(this.fromStart, this.lo, this.loInclusive, false, fromKey,
+          inclusive);
+    return view(false, fromKey, inclusive, this.toEnd, this.hi,
+        this.hiInclusive);
+  }
+
+  @Override
+  public SortedMap<K, V> subMap(K fromKey, K toKey) {
+    return subMap(fromKey, true, toKey, false);
+  }
+
+  @Override
+  public SortedMap<K, V> headMap(K toKey) {
+    return headMap(toKey, false);
+  }
+
+  @Override
+  public SortedMap<K, V> tailMap(K fromKey) {
+    return tailMap(fromKey, true);
+  }
+
+  /**
+   * Construct a view with bounds in natural order, checking they lie inside
+   * the range of this view.
+   *
+   * @return the new view, in the same direction as this one.
+   *
+   * @throws IllegalArgumentException if a bound is out of range, or if the
+   *                                  lower bound is above the upper bound.
+   */
+  private NavigableMap<K, V> view(boolean fromStart, K lo, boolean loInclusive,
+      boolean toEnd, K hi, boolean hiInclusive) {
+    if (!fromStart && !inRange(lo, loInclusive))
+      throw new IllegalArgumentException("fromKey out of range");
+    if (!toEnd && !inRange(hi, hiInclusive))
+      throw new IllegalArgumentException("toKey out of range");
+    if (!fromStart && !toEnd && lo.compareTo(hi) > 0)
+      throw new IllegalArgumentException("fromKey > toKey");
+    return new AvlTreeMap<K, V>(this.backing, fromStart, lo, loInclusive,
+        toEnd, hi, hiInclusive, this.descending);
+  }
+
+  /**
+   * Iterator over the nodes of the range in the order of the view. It keeps
+   * the path to the next node on a stack, so each step is amortized O(1), and
+   * seeks again after removing a node, since re-balancing moves nodes.
+   *
+   * @param <T> is the type of element taken from each node.
+   */
+  private abstract class NodeIterator<T> implements Iterator<T> {
+    private final Deque<AvlTree.Node<K, V>> stack; // Path to the next node.
+    private AvlTree.Node<K, V> last; // Node last returned, null if removed.
+    private int expectedModCount; // Modifications seen by this iterator.
+
+    NodeIterator() {
+      this.stack = new ArrayDeque<AvlTree.Node<K, V>>();
+      this.last = null;
+      this.expectedModCount = AvlTreeMap.this.backing.modCount;
+      if (AvlTreeMap.this.descending)
+        seek(AvlTreeMap.this.toEnd, AvlTreeMap.this.hi,
+            AvlTreeMap.this.hiInclusive);
+      else
+        seek(AvlTreeMap.this.fromStart, AvlTreeMap.this.lo,
+            AvlTreeMap.this.loInclusive);
+    }
+
+    /**
+     * Rebuild the stack so that its top is the first node after bound in the
+     * order of the view.
+     */
+    private void seek(boolean unbounded, K bound, boolean inclusive) {
+      boolean down = AvlTreeMap.this.descending;
+      this.stack.clear();
+      AvlTree.Node<K, V> current = AvlTreeMap.this.backing.tree.getRoot();
+      while (current != null) {
+        int compare = unbounded ? 1 : current.key.compareTo(bound);
+        if (down && !unbounded)
+          compare = -compare;
+        if (compare > 0 || (compare == 0 && inclusive)) { // Comes after.
+          this.stack.push(current);
+          current = down ? current.right : current.left;
+        } else
+          current = down ? current.left : current.right;
+      }
+    }
+
+    /**
+     * @param node node to convert.
+     * @return element of the node.
+     */
+    abstract T element(AvlTree.Node<K, V> node);
+
+    @Override
+    public boolean hasNext() {
+      if (this.stack.isEmpty())
+        return false;
+      K key = this.stack.peek().key;
+      return AvlTreeMap.this.descending ? !tooLow(key) : !tooHigh(key);
+    }
+
+    @Override
+    public T next() {
+      if (this.expectedModCount != AvlTreeMap.this.backing.modCount)
+        throw new ConcurrentModificationException();
+      if (!hasNext())
+        throw new NoSuchElementException();
+      AvlTree.Node<K, V> node = this.stack.pop();
+      boolean down = AvlTreeMap.this.descending;
+      // Push the spine leading to the following node.
+      for (AvlTree.Node<K, V> current = down ? node.left
+          : node.right; current != null; current = down ? current.right
+              : current.left)
+        this.stack.push(current);
+      this.last = node;
+      return element(node);
+    }
+
+    @Override
+    public void remove() {
+      if (this.last == null)
+        throw new IllegalStateException();
+      if (this.expectedModCount != AvlTreeMap.this.backing.modCount)
+        throw new ConcurrentModificationException();
+      K key = this.last.key;
+      removeKey(key);
+      this.expectedModCount = AvlTreeMap.this.backing.modCount;
+      seek(false, key, false); // Nodes may have moved.
+      this.last = null;
+    }
+  }
+
+  /**
+   * Entry of a node, whose setValue writes through to the map.
+   */
+  private class NodeEntry implements Map.Entry<K, V> {
+    private final AvlTree.Node<K, V> node; // Node of the entry.
+
+    NodeEntry(AvlTree.Node<K, V> node) {
+      this.node = node;
+    }
+
+    @Override
+    public K getKey() {
+      return this.node.key;
+    }
+
+    @Override
+    public V getValue() {
+      return this.node.value;
+    }
+
+    @Override
+    public V setValue(V value) {
+      V previous = this.node.value;
+      this.node.value = value;
+      return previous;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry))
+        return false;
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+      return this.node.key.equals(entry.getKey())
+          && Objects.equals(this.node.value, entry.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return this.node.key.hashCode() ^ Objects.hashCode(this.node.value);
+    }
+
+    @Override
+    public String toString() {
+      return this.node.key + "=" + this.node.value;
+    }
+  }
+
+  /**
+   * Entries of the range, in the order of the view.
+   */
+  private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      return new NodeIterator<Map.Entry<K, V>>() {
+        @Override
+        Map.Entry<K, V> element(AvlTree.Node<K, V> node) {
+          return new NodeEntry(node);
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return AvlTreeMap.this.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof Map.Entry))
+        return false;
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+      Object key = entry.getKey();
+      return key != null && containsKey(key)
+          && Objects.equals(get(key), entry.getValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      if (!contains(o))
+        return false;
+      AvlTreeMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+      return true;
+    }
+
+    @Override
+    public void clear() {
+      AvlTreeMap.this.clear();
+    }
+  }
+
+  /**
+   * Navigable set of the keys of a navigable map, backed by the map.
+   *
+   * @param <K> is the generic type of key.
+   */
+  @SuppressWarnings("hiding")
+  private static class KeySet<K> extends AbstractSet<K>
+      implements NavigableSet<K> {
+    private final NavigableMap<K, ?> map; // Map of the keys.
+
+    KeySet(NavigableMap<K, ?> map) {
+      this.map = map;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+      Iterator<? extends Map.Entry<K, ?>> entries =
+          this.map.entrySet().iterator();
+      return new Iterator<K>() {
+        @Override
+        public boolean hasNext() {
+          return entries.hasNext();
+        }
+
+        @Override
+        public K next() {
+          return entries.next().getKey();
+        }
+
+        @Override
+        public void remove() {
+          entries.remove();
+        }
+      };
+    }
+
+    @Override
+    public Iterator<K> descendingIterator() {
+      return descendingSet().iterator();
+    }
+
+    @Override
+    public int size() {
+      return this.map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return this.map.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return this.map.containsKey(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      if (!this.map.containsKey(o))
+        return false;
+      this.map.remove(o);
+      return true;
+    }
+
+    @Override
+    public void clear() {
+      this.map.clear();
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+      return this.map.comparator();
+    }
+
+    @Override
+    public K first() {
+      return this.map.firstKey();
+    }
+
+    @Override
+    public K last() {
+      return this.map.lastKey();
+    }
+
+    @Override
+    public K lower(K key) {
+      return this.map.lowerKey(key);
+    }
+
+    @Override
+    public K floor(K key) {
+      return this.map.floorKey(key);
+    }
+
+    @Override
+    public K ceiling(K key) {
+      return this.map.ceilingKey(key);
+    }
+
+    @Override
+    public K higher(K key) {
+      return this.map.higherKey(key);
+    }
+
+    @Override
+    public K pollFirst() {
+      Map.Entry<K, ?> entry = this.map.pollFirstEntry();
+      return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public K pollLast() {
+      Map.Entry<K, ?> entry = this.map.pollLastEntry();
+      return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public NavigableSet<K> descendingSet() {
+      return new KeySet<K>(this.map.descendingMap());
+    }
+
+    @Override
+    public NavigableSet<K> subSet(K fromElement, boolean fromInclusive,
+        K toElement, boolean toInclusive) {
+      return new KeySet<K>(
+          this.map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+    }
+
+    @Override
+    public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+      return new KeySet<K>(this.map.headMap(toElement, inclusive));
+    }
+
+    @Override
+    public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+      return new KeySet<K>(this.map.tailMap(fromElement, inclusive));
+    }
+
+    @Override
+    public SortedSet<K> subSet(K fromElement, K toElement) {
+      return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<K> headSet(K toElement) {
+      return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<K> tailSet(K fromElement) {
+      return tailSet(fromElement, true);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package avl_tree;
+
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+class AvlTreeMapTest {
+  /**
+   * Check that a map and its views answer like the same TreeMap views.
+   *
+   * @param expected TreeMap or one of its views.
+   * @param actual   AvlTreeMap or the matching view.
+   * @param probe    key to navigate from.
+   */
+  private void assertSameMap(NavigableMap<Integer, String> expected,
+      NavigableMap<Integer, String> actual, int probe) {
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(expected.size(), actual.size());
+    Assert.assertEquals(expected.hashCode(), actual.hashCode());
+    Assert.assertEquals(expected.toString(), actual.toString());
+    Assert.assertEquals(new ArrayList<Integer>(expected.keySet()),
+        new ArrayList<Integer>(actual.keySet()));
+    Assert.assertEquals(new ArrayList<String>(expected.values()),
+        new ArrayList<String>(actual.values()));
+    Assert.assertEquals(expected.firstEntry(), actual.firstEntry());
+    Assert.assertEquals(expected.lastEntry(), actual.lastEntry());
+    Assert.assertEquals(expected.floorKey(probe), actual.floorKey(probe));
+    Assert.assertEquals(expected.ceilingKey(probe), actual.ceilingKey(probe));
+    Assert.assertEquals(expected.lowerEntry(probe), actual.lowerEntry(probe));
+    Assert.assertEquals(expected.higherEntry(probe), actual.higherEntry(probe));
+    Assert.assertEquals(expected.containsKey(probe), actual.containsKey(probe));
+    Assert.assertEquals(expected.get(probe), actual.get(probe));
+  }
+
+  /**
+   * Run random updates against a TreeMap, comparing the maps and their
+   * sub-map, head-map, tail-map and descending views.
+   */
+  @Test
+  void testMAP_001_matches_tree_map() {
+    try {
+      Random random = new Random(7);
+      NavigableMap<Integer, String> expected = new TreeMap<Integer, String>();
+      NavigableMap<Integer, String> actual = new AvlTreeMap<Integer, String>();
+      for (int i = 0; i < 3000; i++) {
+        int key = random.nextInt(200);
+        switch (random.nextInt(4)) {
+        case 0:
+        case 1:
+          Assert.assertEquals(expected.put(key, "v" + i),
+              actual.put(key, "v" + i));
+          break;
+        case 2:
+          Assert.assertEquals(expected.remove(key), actual.remove(key));
+          break;
+        default:
+          Assert.assertEquals(expected.pollFirstEntry(),
+              actual.pollFirstEntry());
+        }
+        if (i % 100 != 0)
+          continue;
+        int low = random.nextInt(100);
+        int high = low + random.nextInt(100);
+        boolean lowIn = random.nextBoolean();
+        boolean highIn = random.nextBoolean();
+        assertSameMap(expected, actual, key);
+        assertSameMap(expected.descendingMap(), actual.descendingMap(), key);
+        assertSameMap(expected.subMap(low, lowIn, high, highIn),
+            actual.subMap(low, lowIn, high, highIn), key);
+        assertSameMap(expected.headMap(high, highIn).descendingMap(),
+            actual.headMap(high, highIn).descendingMap(), key);
+        assertSameMap(expected.descendingMap().headMap(high, highIn),
+            actual.descendingMap().headMap(high, highIn), key);
+        assertSameMap(expected.tailMap(low, lowIn).subMap(low + 10, true,
+            high + 10, false).descendingMap(), actual.tailMap(low, lowIn)
+                .subMap(low + 10, true, high + 10, false).descendingMap(), key);
+        Assert.assertEquals(expected.descendingKeySet().headSet(low),
+            actual.descendingKeySet().headSet(low));
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception MAP 001: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Update through views and iterators, and check the collection contract
+   * exceptions.
+   */
+  @Test
+  void testMAP_002_views_write_through() {
+    try {
+      AvlTreeMap<Integer, String> map = new AvlTreeMap<Integer, String>();
+      for (int i = 0; i < 20; i++)
+        map.put(i, "v" + i);
+      NavigableMap<Integer, String> view = map.subMap(5, true, 15, false);
+      Assert.assertEquals(10, view.size());
+      view.put(7, "x");
+      Assert.assertEquals("x", map.get(7));
+      try {
+        view.put(15, "y");
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (IllegalArgumentException e) {
+      }
+      try {
+        view.subMap(0, 10);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (IllegalArgumentException e) {
+      }
+
+      Iterator<Map.Entry<Integer, String>> it = view.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<Integer, String> entry = it.next();
+        if (entry.getKey() % 2 == 0)
+          it.remove();
+        else
+          entry.setValue("odd");
+      }
+      Assert.assertEquals(15, map.size());
+      Assert.assertEquals("odd", map.get(9));
+      Assert.assertEquals(false, map.containsKey(8));
+
+      map.descendingKeySet().headSet(15).clear(); // Keys above 15.
+      Assert.assertEquals(Integer.valueOf(15), map.lastKey());
+
+      Iterator<Integer> keys = map.keySet().iterator();
+      keys.next();
+      map.put(100, "z");
+      try {
+        keys.next();
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (ConcurrentModificationException e) {
+      }
+      try {
+        map.put(null, "z");
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (NullPointerException e) {
+      }
+      map.clear();
+      Assert.assertEquals(true, map.isEmpty());
+      Assert.assertEquals(0, view.size());
+      Assert.assertEquals(null, map.firstEntry());
+      List<Integer> none = new ArrayList<Integer>(map.descendingKeySet());
+      Assert.assertEquals(0, none.size());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception MAP 002: " + e.getMessage());
+    }
+  }
+}
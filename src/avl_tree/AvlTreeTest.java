@@ -1,7 +1,12 @@
 package avl_tree;
 
 import static org.junit.Assert.fail;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -810,4 +815,869 @@ class AvlTreeTest {
     }
   }
 
+  /**
+   * Look up a batch of keys, including misses and repeated keys, with getAll
+   * and containsAll.
+   */
+  @Test
+  void testBALST_014_get_all_and_contains_all_batch() {
+    try {
+      for (int i = 10; i < 100; i += 10)
+        tree2.insert(i, "v" + i);
+
+      Integer[] keys = {70, 15, 10, 90, 70, 100};
+      String[] values = new String[keys.length];
+      Assert.assertEquals(4, tree2.getAll(keys, values));
+      Assert.assertArrayEquals(
+          new String[] {"v70", null, "v10", "v90", "v70", null}, values);
+      // Probe keys are left in the caller's order.
+      Assert.assertArrayEquals(new Integer[] {70, 15, 10, 90, 70, 100}, keys);
+
+      Assert.assertEquals(true, tree2.containsAll(new Integer[] {90, 10, 50}));
+      Assert.assertEquals(false, tree2.containsAll(new Integer[] {90, 11}));
+      Assert.assertEquals(true, tree2.containsAll(new Integer[0]));
+      Assert.assertEquals(0, tree1.getAll(new String[] {"aa"}, new String[1]));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 014: " + e.getMessage());
+    }
+    try {
+      tree2.getAll(new Integer[] {10, null}, new String[2]);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+  }
+
+  /**
+   * Attach metrics, then check operation, rotation and traversal counters.
+   * Detaching them must stop the recording.
+   */
+  @Test
+  void testBALST_015_metrics_count_operations_and_rotations() {
+    try {
+      TreeMetrics metrics = new TreeMetrics();
+      tree2.setMetrics(metrics);
+      tree2.insert(10, "10");
+      tree2.insert(20, "20");
+      tree2.insert(30, "30"); // Right right case.
+      tree2.insert(25, "25");
+      tree2.insert(27, "27"); // Right left case.
+      tree2.get(25);
+      tree2.contains(99);
+      tree2.remove(10); // Right right case.
+      tree2.getInOrderTraversal();
+
+      TreeMetrics.Snapshot snapshot = metrics.snapshot();
+      Assert.assertEquals(5,
+          snapshot.getOperations(TreeMetrics.Operation.INSERT));
+      Assert.assertEquals(1, snapshot.getOperations(TreeMetrics.Operation.GET));
+      Assert.assertEquals(1,
+          snapshot.getOperations(TreeMetrics.Operation.CONTAINS));
+      Assert.assertEquals(1,
+          snapshot.getOperations(TreeMetrics.Operation.REMOVE));
+      Assert.assertEquals(8, snapshot.getTotalOperations());
+      Assert.assertEquals(2, snapshot.getSingleRotations());
+      Assert.assertEquals(1, snapshot.getDoubleRotations());
+      Assert.assertEquals(1, snapshot.getTraversals());
+      Assert.assertEquals(4, snapshot.getTraversedKeys());
+      Assert.assertEquals(true, snapshot.getComparisons() > 0);
+      Assert.assertEquals(true, snapshot.getPathLength() > 0);
+
+      tree2.setMetrics(null);
+      tree2.get(30);
+      Assert.assertEquals(8, metrics.snapshot().getTotalOperations());
+      metrics.reset();
+      Assert.assertEquals(0, metrics.snapshot().getTotalOperations());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 015: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Render a small tree in each format, then check that the limits cut the
+   * output.
+   */
+  @Test
+  void testBALST_016_render_text_dot_json_with_limits() {
+    try {
+      tree2.insert(20, "20");
+      tree2.insert(10, "10");
+      tree2.insert(30, "30");
+      tree2.insert(40, "40");
+
+      StringBuilder text = new StringBuilder();
+      tree2.render(text, TreeRenderer.Format.TEXT, 10, 100);
+      Assert.assertEquals("20 (h=3, bf=-1)\n" + "  L: 10 (h=1, bf=0)\n"
+          + "  R: 30 (h=2, bf=-1)\n" + "    R: 40 (h=1, bf=0)\n",
+          text.toString());
+
+      StringBuilder dot = new StringBuilder();
+      tree2.render(dot, TreeRenderer.Format.DOT, 10, 100);
+      String graph = dot.toString();
+      Assert.assertEquals(true, graph.startsWith("digraph AvlTree {"));
+      Assert.assertEquals(true, graph.contains("n0 -> n1 [label=\"L\"]"));
+      Assert.assertEquals(true, graph.contains("n2 -> n3 [label=\"R\"]"));
+
+      StringBuilder json = new StringBuilder();
+      tree2.render(json, TreeRenderer.Format.JSON, 2, 100);
+      Assert.assertEquals("{\"numKeys\":4,\"height\":3,\"root\":{"
+          + "\"key\":\"20\",\"height\":3,\"balanceFactor\":-1,"
+          + "\"left\":{\"key\":\"10\",\"height\":1,\"balanceFactor\":0,"
+          + "\"left\":null,\"right\":null},"
+          + "\"right\":{\"key\":\"30\",\"height\":2,\"balanceFactor\":-1,"
+          + "\"left\":null,\"right\":{\"truncated\":true}}}}\n",
+          json.toString());
+
+      StringBuilder cut = new StringBuilder();
+      tree2.render(cut, TreeRenderer.Format.TEXT, 10, 2);
+      Assert.assertEquals("20 (h=3, bf=-1)\n" + "  L: 10 (h=1, bf=0)\n"
+          + "  R: ...\n", cut.toString());
+
+      StringBuilder empty = new StringBuilder();
+      tree1.render(empty, TreeRenderer.Format.JSON, 10, 100);
+      Assert.assertEquals("{\"numKeys\":0,\"height\":0,\"root\":null}\n",
+          empty.toString());
+
+      tree1.insert("a\"b\\c\td&e", "escaped");
+      StringBuilder escapedDot = new StringBuilder();
+      tree1.render(escapedDot, TreeRenderer.Format.DOT, 10, 100);
+      Assert.assertEquals(true, escapedDot.toString()
+          .contains("n0 [label=\"a\\\"b\\\\c&#9;d&amp;e\"];"));
+      StringBuilder escapedJson = new StringBuilder();
+      tree1.render(escapedJson, TreeRenderer.Format.JSON, 10, 100);
+      Assert.assertEquals(true, escapedJson.toString()
+          .contains("\"key\":\"a\\\"b\\\\c\\u0009d&e\""));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 016: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Use the tree as a priority queue: firstKey, lastKey and peek follow
+   * inserts and removes, and pollFirst and pollLast drain it in order.
+   */
+  @Test
+  void testBALST_017_priority_queue_first_last_poll() {
+    try {
+      Assert.assertEquals(null, tree2.firstKey());
+      Assert.assertEquals(null, tree2.lastKey());
+      Assert.assertEquals(null, tree2.peek());
+      Assert.assertEquals(null, tree2.pollFirst());
+      Assert.assertEquals(null, tree2.pollLast());
+
+      for (int key : new int[] {50, 20, 80, 10, 30, 70, 90, 60})
+        tree2.insert(key, "v" + key);
+      Assert.assertEquals(Integer.valueOf(10), tree2.firstKey());
+      Assert.assertEquals(Integer.valueOf(90), tree2.lastKey());
+      Assert.assertEquals("v10", tree2.peek());
+
+      tree2.remove(10);
+      tree2.remove(90);
+      Assert.assertEquals(Integer.valueOf(20), tree2.firstKey());
+      Assert.assertEquals(Integer.valueOf(80), tree2.lastKey());
+
+      Assert.assertEquals(Integer.valueOf(20), tree2.pollFirst());
+      Assert.assertEquals(Integer.valueOf(80), tree2.pollLast());
+      Assert.assertEquals(4, tree2.numKeys());
+      Assert.assertEquals(List.of(30, 50, 60, 70),
+          tree2.getInOrderTraversal());
+
+      tree2.insert(5, "v5");
+      Assert.assertEquals("v5", tree2.peek());
+      Assert.assertEquals(Integer.valueOf(5), tree2.pollFirst());
+      Assert.assertEquals(Integer.valueOf(30), tree2.pollFirst());
+      Assert.assertEquals(Integer.valueOf(70), tree2.pollLast());
+      Assert.assertEquals(Integer.valueOf(50), tree2.pollFirst());
+      Assert.assertEquals(Integer.valueOf(60), tree2.lastKey());
+      Assert.assertEquals(Integer.valueOf(60), tree2.pollLast());
+      Assert.assertEquals(null, tree2.firstKey());
+      Assert.assertEquals(null, tree2.lastKey());
+      Assert.assertEquals(0, tree2.numKeys());
+      Assert.assertEquals(null, tree2.getKeyAtRoot());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 017: " + e.getMessage());
+    }
+  }
+
+  /**
+   * put inserts absent keys and replaces the value of present keys.
+   */
+  @Test
+  void testBALST_018_put_inserts_or_replaces() {
+    try {
+      Assert.assertEquals(null, tree1.put("aa", "1"));
+      Assert.assertEquals(null, tree1.put("bb", "2"));
+      Assert.assertEquals("1", tree1.put("aa", "3"));
+      Assert.assertEquals(2, tree1.numKeys());
+      Assert.assertEquals("3", tree1.get("aa"));
+      Assert.assertEquals(List.of("aa", "bb"), tree1.getInOrderTraversal());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 018: " + e.getMessage());
+    }
+    try {
+      tree1.put(null, "value");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+  }
+
+
+  /**
+   * Stream keys, values and entries sequentially and in parallel, and check
+   * that the spliterator splits into halves that cover every key in order.
+   */
+  @Test
+  void testBALST_019_streams() {
+    try {
+      for (int i = 0; i < 1000; i++)
+        tree2.insert(i, "v" + i);
+      List<Integer> keys = tree2.getInOrderTraversal();
+      Assert.assertEquals(keys, tree2.stream().collect(Collectors.toList()));
+      Assert.assertEquals(keys,
+          tree2.parallelStream().collect(Collectors.toList()));
+      Assert.assertEquals(499500L,
+          tree2.keyStream(true).mapToLong(Integer::longValue).sum());
+      Assert.assertEquals("v0v1v2", tree2.valueStream(true).limit(3)
+          .collect(Collectors.joining()));
+      Assert.assertEquals(Integer.valueOf(999), tree2.entryStream(true)
+          .reduce((a, b) -> b).get().getKey());
+
+      Spliterator<Integer> all = tree2.keyStream(false).spliterator();
+      Assert.assertEquals(1000, all.getExactSizeIfKnown());
+      Assert.assertTrue(all.hasCharacteristics(Spliterator.SORTED));
+      Spliterator<Integer> prefix = all.trySplit();
+      Assert.assertNotNull(prefix);
+      List<Integer> merged = new ArrayList<Integer>();
+      prefix.forEachRemaining(merged::add);
+      Assert.assertTrue(merged.size() > 400 && merged.size() < 600);
+      all.forEachRemaining(merged::add);
+      Assert.assertEquals(keys, merged);
+
+      Assert.assertEquals(0, tree1.stream().count());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 019: " + e.getMessage());
+    }
+  }
+
+
+  /**
+   * Split a tree at present and absent keys, check both halves are valid AVL
+   * trees with the right keys, and concatenate them back.
+   */
+  @Test
+  void testBALST_020_split_and_concat() {
+    try {
+      AvlTree<Integer, String> tree = new AvlTree<Integer, String>();
+      for (int i = 0; i < 200; i += 2)
+        tree.insert(i, "v" + i);
+      AvlTree<Integer, String> upper = tree.split(51);
+      Assert.assertEquals(26, tree.numKeys());
+      Assert.assertEquals(74, upper.numKeys());
+      Assert.assertEquals(Integer.valueOf(50), tree.lastKey());
+      Assert.assertEquals(Integer.valueOf(52), upper.firstKey());
+      Assert.assertEquals(Integer.valueOf(198), upper.lastKey());
+      checkAvl(tree.getRoot());
+      checkAvl(upper.getRoot());
+      Assert.assertEquals(74, upper.keyStream(false).count());
+
+      AvlTree<Integer, String> top = upper.split(100);
+      Assert.assertEquals(Integer.valueOf(100), top.firstKey());
+      Assert.assertEquals(Integer.valueOf(98), upper.lastKey());
+      Assert.assertEquals(50, top.split(0).numKeys());
+      Assert.assertEquals(0, top.numKeys());
+
+      try {
+        AvlTree.concat(upper, tree);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (IllegalArgumentException e) {
+      }
+      Assert.assertSame(tree, AvlTree.concat(tree, upper));
+      Assert.assertEquals(0, upper.numKeys());
+      Assert.assertEquals(Integer.valueOf(98), tree.lastKey());
+      Assert.assertEquals(50, tree.numKeys());
+      checkAvl(tree.getRoot());
+      for (int i = 0; i < 100; i += 2)
+        Assert.assertEquals("v" + i, tree.get(i));
+      Assert.assertEquals(Integer.valueOf(40), tree.selectKey(20));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 020: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Check the height, size and balance factor of every node of a sub-tree.
+   *
+   * @param node root of the sub-tree.
+   * @return height of the sub-tree.
+   */
+  private int checkAvl(AvlTree.Node<Integer, ?> node) {
+    if (node == null)
+      return 0;
+    int left = checkAvl(node.left);
+    int right = checkAvl(node.right);
+    Assert.assertTrue(Math.abs(left - right) <= 1);
+    Assert.assertEquals(1 + Math.max(left, right), node.height);
+    Assert.assertEquals(left - right, node.balanceFactor);
+    Assert.assertEquals(1 + (node.left == null ? 0 : node.left.size)
+        + (node.right == null ? 0 : node.right.size), node.size);
+    return node.height;
+  }
+
+
+  /**
+   * Remove keys lazily: tombstones are skipped by reads, revived by insert,
+   * and unlinked once they pass the ratio or before a structural query.
+   */
+  @Test
+  void testBALST_021_lazy_deletion() {
+    try {
+      AvlTree<Integer, String> tree = new AvlTree<Integer, String>();
+      tree.setLazyDeletion(0.5);
+      for (int i = 0; i < 10; i++)
+        tree.insert(i, "v" + i);
+      tree.remove(4);
+      tree.remove(5);
+      Assert.assertEquals(2, tree.getNumTombstones());
+      Assert.assertEquals(8, tree.numKeys());
+      Assert.assertEquals(false, tree.contains(4));
+      try {
+        tree.get(5);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+      String[] values = new String[2];
+      Assert.assertEquals(1, tree.getAll(new Integer[] {5, 6}, values));
+      Assert.assertEquals(null, values[0]);
+
+      tree.insert(5, "new"); // Revives the tombstone.
+      Assert.assertEquals(1, tree.getNumTombstones());
+      Assert.assertEquals("new", tree.get(5));
+
+      tree.remove(0); // The smallest key is removed at once.
+      Assert.assertEquals(Integer.valueOf(1), tree.firstKey());
+      Assert.assertEquals(1, tree.getNumTombstones());
+
+      Assert.assertEquals(List.of(1, 2, 3, 5, 6, 7, 8, 9),
+          tree.getInOrderTraversal());
+      Assert.assertEquals(List.of(1, 2, 3, 5, 6, 7, 8, 9),
+          tree.keyStream(true).collect(Collectors.toList()));
+      Assert.assertEquals(3, tree.rank(4, true)); // Reads skip tombstone 4.
+      Assert.assertEquals(Integer.valueOf(5), tree.selectKey(3));
+      Assert.assertEquals(Integer.valueOf(3), tree.findNear(4, true, true).key);
+      Assert.assertEquals(1, tree.getNumTombstones());
+      tree.getKeyAtRoot(); // Shape queries compact.
+      Assert.assertEquals(0, tree.getNumTombstones());
+
+      for (int i = 2; i < 8; i++) // Past half of the nodes, then compacted.
+        if (i != 4)
+          tree.remove(i);
+      Assert.assertEquals(0, tree.getNumTombstones());
+      Assert.assertEquals(3, tree.numKeys());
+      Assert.assertEquals(2, tree.getHeight());
+
+      tree.remove(8);
+      tree.remove(1); // The smallest key, then the tombstone of 8 after it.
+      Assert.assertEquals(Integer.valueOf(9), tree.firstKey());
+      Assert.assertEquals(0, tree.getNumTombstones());
+      tree.setLazyDeletion(0);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 021: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Mirror a tree through a change stream whose ring is smaller than the
+   * number of changes, with a slow consumer, and check the sequences and the
+   * mirrored contents.
+   */
+  @Test
+  void testBALST_022_change_stream() {
+    try {
+      TreeMap<Integer, String> mirror = new TreeMap<Integer, String>();
+      List<Long> sequences = new ArrayList<Long>();
+      int[] largestBatch = new int[1];
+      ChangeStream<Integer, String> changes =
+          new ChangeStream<Integer, String>(4, 3, batch -> {
+            largestBatch[0] = Math.max(largestBatch[0], batch.size());
+            for (ChangeEvent<Integer, String> event : batch) {
+              sequences.add(event.getSequence());
+              if (event.getType() == ChangeEvent.Type.REMOVE)
+                mirror.remove(event.getKey());
+              else
+                mirror.put(event.getKey(), event.getValue());
+            }
+            try {
+              Thread.sleep(1); // Mutators wait on the full ring.
+            } catch (InterruptedException e) {
+            }
+          });
+      AvlTree<Integer, String> tree = new AvlTree<Integer, String>();
+      tree.setChangeStream(changes);
+      for (int i = 0; i < 20; i++)
+        tree.insert(i, "v" + i);
+      tree.put(3, "x");
+      tree.put(30, "y");
+      tree.remove(5);
+      tree.pollFirst();
+      tree.pollLast();
+      changes.flush();
+      Assert.assertEquals(tree.getInOrderTraversal(),
+          new ArrayList<Integer>(mirror.keySet()));
+      Assert.assertEquals("x", mirror.get(3));
+      Assert.assertEquals(true, largestBatch[0] <= 3);
+
+      AvlTree<Integer, String> upper = tree.split(10); // Keys 10 to 19 leave.
+      changes.flush();
+      Assert.assertEquals(Integer.valueOf(9), mirror.floorKey(100));
+      upper.put(50, "z"); // Not attached.
+      AvlTree.concat(tree, upper); // Keys 10 to 19 and 50 come back.
+      tree.setChangeStream(null);
+      tree.remove(50);
+      changes.close();
+      Assert.assertEquals(Integer.valueOf(50), mirror.lastKey());
+      Assert.assertEquals(changes.getLastSequence(), sequences.size());
+      for (int i = 0; i < sequences.size(); i++)
+        Assert.assertEquals(i + 1, sequences.get(i).longValue());
+
+      // Changes after close are applied and dropped, and detach the stream.
+      tree.setNodePool(4);
+      tree.setFilter(8);
+      tree.setChangeStream(changes);
+      tree.insert(100, "late");
+      Assert.assertEquals(null, tree.getChangeStream());
+      tree.setChangeStream(changes);
+      int keys = tree.numKeys();
+      Assert.assertEquals(true, tree.remove(100));
+      Assert.assertEquals(keys - 1, tree.numKeys());
+      Assert.assertEquals(false, tree.contains(100));
+      Assert.assertEquals(1, tree.getNumPooledNodes());
+      Assert.assertEquals(null, tree.getChangeStream());
+      tree.setLazyDeletion(0.5);
+      tree.setChangeStream(changes);
+      Assert.assertEquals(true, tree.remove(8));
+      Assert.assertEquals(false, tree.contains(8));
+      Assert.assertEquals(null, tree.getChangeStream());
+      Assert.assertEquals(changes.getLastSequence(), sequences.size());
+
+      // The consumer cannot write back to a tree of its stream, even with a
+      // full ring, and its attempt leaves the tree unchanged.
+      AvlTree<Integer, String> echo = new AvlTree<Integer, String>();
+      List<Exception> refused = new ArrayList<Exception>();
+      ChangeStream<Integer, String> loop =
+          new ChangeStream<Integer, String>(1, 1, batch -> {
+            for (ChangeEvent<Integer, String> event : batch)
+              try {
+                echo.insert(event.getKey() + 1000, "echo");
+              } catch (Exception e) {
+                refused.add(e);
+              }
+          });
+      echo.setChangeStream(loop);
+      for (int i = 0; i < 5; i++)
+        echo.insert(i, "v" + i);
+      loop.close();
+      Assert.assertEquals(5, refused.size());
+      Assert.assertEquals(true,
+          refused.get(0) instanceof IllegalStateException);
+      Assert.assertEquals(5, echo.numKeys());
+      Assert.assertEquals(false, echo.contains(1000));
+
+      // A multimap publishes one event per occurrence.
+      MultiAvlTree<Integer, String> multi = new MultiAvlTree<Integer, String>();
+      MultiAvlTree<Integer, String> copy = new MultiAvlTree<Integer, String>();
+      ChangeStream<Integer, String> occurrences =
+          new ChangeStream<Integer, String>(8, 4, batch -> {
+            try {
+              for (ChangeEvent<Integer, String> event : batch)
+                if (event.getType() == ChangeEvent.Type.INSERT)
+                  copy.insert(event.getKey(), event.getValue());
+                else if (event.getType() == ChangeEvent.Type.REMOVE)
+                  copy.removeOne(event.getKey());
+                else
+                  copy.put(event.getKey(), event.getValue());
+            } catch (Exception e) {
+              throw new IllegalStateException(e);
+            }
+          });
+      multi.setChangeStream(occurrences);
+      for (int i = 0; i < 12; i++)
+        multi.insert(1 + i % 4, "v" + i); // Three occurrences of 1 to 4.
+      multi.removeOne(1);
+      multi.put(2, "x");
+      multi.remove(3);
+      multi.pollLast();
+      multi.insert(5, "y");
+      occurrences.close();
+      Assert.assertEquals(multi.numOccurrences(), copy.numOccurrences());
+      for (int key = 1; key <= 5; key++)
+        Assert.assertEquals(multi.getAll(key), copy.getAll(key));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 022: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Reuse removed nodes from a bounded pool.
+   */
+  @Test
+  void testBALST_023_node_pool() {
+    try {
+      AvlTree<Integer, String> tree = new AvlTree<Integer, String>();
+      tree.setNodePool(3);
+      for (int i = 0; i < 10; i++)
+        tree.insert(i, "v" + i);
+      tree.remove(4);
+      tree.remove(0);
+      Assert.assertEquals(Integer.valueOf(1), tree.pollFirst());
+      tree.remove(9);
+      Assert.assertEquals(3, tree.getNumPooledNodes()); // The pool is full.
+      tree.insert(20, "v20");
+      tree.insert(4, "new");
+      Assert.assertEquals(1, tree.getNumPooledNodes());
+      Assert.assertEquals(List.of(2, 3, 4, 5, 6, 7, 8, 20),
+          tree.getInOrderTraversal());
+      Assert.assertEquals("new", tree.get(4));
+      Assert.assertEquals(Integer.valueOf(20), tree.lastKey());
+      Assert.assertEquals(4, tree.getHeight());
+      tree.setNodePool(0);
+      Assert.assertEquals(0, tree.getNumPooledNodes());
+      try {
+        tree.setNodePool(-1);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (IllegalArgumentException e) {
+      }
+      try {
+        new MultiAvlTree<Integer, String>().setNodePool(1);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (UnsupportedOperationException e) {
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 023: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Remove ranges of keys against a TreeMap, and check that the tree stays
+   * balanced.
+   */
+  @Test
+  void testBALST_024_remove_range() {
+    try {
+      AvlTree<Integer, String> tree = new AvlTree<Integer, String>();
+      TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+      for (int i = 0; i < 1000; i += 2) {
+        tree.insert(i, "v" + i);
+        expected.put(i, "v" + i);
+      }
+      Assert.assertEquals(50, tree.removeRange(101, 201)); // 102 to 200.
+      expected.subMap(101, 201).clear();
+      Assert.assertEquals(0, tree.removeRange(150, 150));
+      Assert.assertEquals(25, tree.removeHeadUntil(50));
+      expected.headMap(50).clear();
+      Assert.assertEquals(100, tree.removeTailFrom(800));
+      expected.tailMap(800).clear();
+      Assert.assertEquals(0, tree.removeTailFrom(2000));
+      Assert.assertEquals(new ArrayList<Integer>(expected.keySet()),
+          tree.getInOrderTraversal());
+      Assert.assertEquals(expected.size(), tree.numKeys());
+      Assert.assertEquals(Integer.valueOf(50), tree.firstKey());
+      Assert.assertEquals(Integer.valueOf(798), tree.lastKey());
+      checkAvl(tree.getRoot());
+
+      Assert.assertEquals(expected.size(), tree.removeRange(0, 1000));
+      Assert.assertEquals(0, tree.numKeys());
+      Assert.assertEquals(null, tree.firstKey());
+      try {
+        tree.removeRange(5, 4);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (IllegalArgumentException e) {
+      }
+      try {
+        tree.removeHeadUntil(null);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 024: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Collect sequential and parallel streams into trees, with each duplicate
+   * policy.
+   */
+  @Test
+  void testBALST_025_collector() {
+    try {
+      List<Integer> numbers = new ArrayList<Integer>();
+      for (int i = 0; i < 20000; i++)
+        numbers.add((i * 7919) % 5000); // Every key 4 times.
+      AvlTree<Integer, Integer> first = numbers.parallelStream()
+          .collect(AvlTreeCollector.toAvlTree(n -> n, n -> n * 2,
+              AvlTreeCollector.DuplicatePolicy.KEEP_FIRST));
+      AvlTree<Integer, Integer> last = numbers.stream()
+          .map(n -> -n).collect(AvlTreeCollector.toAvlTree(n -> -n, n -> n,
+              AvlTreeCollector.DuplicatePolicy.KEEP_LAST));
+      Assert.assertEquals(5000, first.numKeys());
+      Assert.assertEquals(5000, last.numKeys());
+      Assert.assertEquals(Integer.valueOf(8), first.get(4));
+      Assert.assertEquals(Integer.valueOf(-4), last.get(4));
+      checkAvl(first.getRoot());
+      checkAvl(last.getRoot());
+      Assert.assertEquals(first.getInOrderTraversal(),
+          last.getInOrderTraversal());
+
+      // Chunks of an ordered source have disjoint ranges.
+      AvlTree<Integer, String> ordered = numbers.parallelStream().sorted()
+          .distinct().collect(AvlTreeCollector.toAvlTree(n -> n, n -> "v" + n,
+              AvlTreeCollector.DuplicatePolicy.REJECT));
+      Assert.assertEquals(first.getInOrderTraversal(),
+          ordered.getInOrderTraversal());
+      checkAvl(ordered.getRoot());
+      try {
+        numbers.parallelStream().collect(AvlTreeCollector.toAvlTree(n -> n,
+            n -> n, AvlTreeCollector.DuplicatePolicy.REJECT));
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (IllegalStateException e) {
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 025: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Compare replicas built in different orders through their digests, and
+   * find the keys they disagree on.
+   */
+  @Test
+  void testBALST_026_digest_and_diff() {
+    try {
+      AvlTree<Integer, String> replica1 = new AvlTree<Integer, String>();
+      AvlTree<Integer, String> replica2 = new AvlTree<Integer, String>();
+      replica1.setHashing(true);
+      for (int i = 0; i < 1000; i++) {
+        replica1.insert(i, "v" + i);
+        replica2.insert(999 - i, "v" + (999 - i));
+      }
+      replica2.setHashing(true); // Computed at once.
+      Assert.assertEquals(replica1.digest(), replica2.digest());
+      Assert.assertEquals(0, replica1.diff(replica2).size());
+
+      replica1.put(10, "changed");
+      replica1.remove(500);
+      replica2.insert(1500, "extra");
+      replica2.remove(998);
+      replica2.setLazyDeletion(0.5);
+      replica2.remove(700); // A tombstone.
+      Assert.assertEquals(List.of(10, 500, 700, 998, 1500),
+          replica1.diff(replica2));
+      Assert.assertEquals(replica2.diff(replica1), replica1.diff(replica2));
+      Assert.assertEquals(replica1.rangeDigest(11, 500),
+          replica2.rangeDigest(11, 500));
+      Assert.assertEquals(false, replica1.rangeDigest(0, 11)
+          == replica2.rangeDigest(0, 11));
+      Assert.assertEquals(0, replica1.rangeDigest(5, 5));
+
+      AvlTree<Integer, String> upper = replica1.split(600);
+      Assert.assertEquals(true, upper.isHashing());
+      AvlTree.concat(replica1, upper);
+      Assert.assertEquals(List.of(10, 500, 700, 998, 1500),
+          replica1.diff(replica2));
+      replica1.setHashing(false);
+      try {
+        replica1.digest();
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (IllegalStateException e) {
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 026: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Look up a few hot keys much more often than the others in adaptive mode,
+   * and check that they move near the root while updates still keep the tree
+   * an AVL tree.
+   */
+  @Test
+  void testBALST_027_adaptive() {
+    try {
+      AvlTree<Integer, String> tree = new AvlTree<Integer, String>();
+      for (int i = 0; i < 1023; i++)
+        tree.insert(i, "v" + i);
+      TreeMetrics metrics = new TreeMetrics();
+      tree.setMetrics(metrics);
+      tree.setAdaptive(true);
+      for (int round = 0; round < 5; round++)
+        for (int i = 0; i < 1023; i++)
+          tree.contains(i % 3 == 0 ? 1000 + i % 2 : i); // Two hot keys.
+      Assert.assertEquals(true, tree.isAdaptive());
+      metrics.reset();
+      tree.contains(1000);
+      tree.get(1001);
+      Assert.assertEquals(true,
+          metrics.snapshot().getComparisonsPerOperation() <= 2.5);
+      Assert.assertEquals(true, tree.getHeight() <= 15); // 1.5 * 10.
+      Assert.assertEquals(tree.numKeys(), tree.getInOrderTraversal().size());
+      Assert.assertEquals(Integer.valueOf(0), tree.firstKey());
+
+      tree.insert(2000, "new"); // Back to an AVL tree first.
+      checkAvl(tree.getRoot());
+      Assert.assertEquals(11, tree.getHeight());
+      tree.remove(1000);
+      checkAvl(tree.getRoot());
+      tree.setAdaptive(false);
+      Assert.assertEquals(false, tree.isAdaptive());
+
+      // Reused nodes and revived tombstones start cold.
+      AvlTree<Integer, String> pooled = new AvlTree<Integer, String>();
+      pooled.setNodePool(10);
+      pooled.setLazyDeletion(0.5);
+      pooled.setAdaptive(true);
+      for (int i = 0; i < 100; i++)
+        pooled.insert(i, "v" + i);
+      for (int i = 0; i < 50; i++) {
+        pooled.get(7);
+        pooled.get(99);
+      }
+      pooled.remove(7); // Tombstone.
+      pooled.insert(7, "again");
+      pooled.remove(99); // Largest key, unlinked into the pool.
+      pooled.insert(1000, "new");
+      AvlTree.Node<Integer, String> node = pooled.getRoot();
+      while (node.key != 7)
+        node = node.key < 7 ? node.right : node.left;
+      Assert.assertEquals(0, node.hits);
+      node = pooled.getRoot();
+      while (node.right != null)
+        node = node.right;
+      Assert.assertEquals(Integer.valueOf(1000), node.key);
+      Assert.assertEquals(0, node.hits);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 027: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Answer lookups of missing keys from a Bloom filter, and rebuild it after
+   * removals.
+   */
+  @Test
+  void testBALST_028_bloom_filter() {
+    try {
+      AvlTree<Integer, String> tree = new AvlTree<Integer, String>();
+      for (int i = 0; i < 1000; i++)
+        tree.insert(2 * i, "v" + i); // Even keys only.
+      tree.setFilter(10);
+      BlockedBloomFilter filter = tree.getFilter();
+      for (int i = 1000; i < 2000; i++)
+        tree.insert(2 * i, "v" + i);
+      for (int i = 0; i < 2000; i++) {
+        Assert.assertEquals(true, tree.contains(2 * i));
+        Assert.assertEquals(false, tree.contains(2 * i + 1));
+      }
+      Assert.assertEquals(2000, filter.getNegatives()
+          + filter.getFalsePositives());
+      Assert.assertEquals(true, filter.getFalsePositiveRate() < 0.05);
+      Assert.assertEquals(1, filter.getRebuilds());
+
+      for (int i = 0; i < 1500; i++)
+        tree.remove(2 * i);
+      try {
+        tree.get(0);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+      Assert.assertEquals(2, filter.getRebuilds());
+      Assert.assertEquals("v1999", tree.get(3998));
+      AvlTree.concat(tree, tree.split(3000)); // Rebuilt at the next lookup.
+      Assert.assertEquals(true, tree.contains(3000));
+      Assert.assertEquals(3, filter.getRebuilds());
+      filter.resetStatistics();
+      Assert.assertEquals(0.0, filter.getFalsePositiveRate(), 0);
+      tree.setFilter(0);
+      Assert.assertEquals(null, tree.getFilter());
+
+      // Keys that compare equal must hash equal, BigDecimal needs normalizing.
+      AvlTree<BigDecimal, String> decimals = new AvlTree<BigDecimal, String>();
+      decimals.insert(new BigDecimal("1.0"), "one");
+      Assert.assertEquals(true, decimals.contains(new BigDecimal("1.00")));
+      decimals.setFilter(10);
+      Assert.assertEquals(false, decimals.contains(new BigDecimal("1.00")));
+      decimals = new AvlTree<BigDecimal, String>();
+      decimals.setFilter(10);
+      decimals.insert(new BigDecimal("1.0").stripTrailingZeros(), "one");
+      Assert.assertEquals(true,
+          decimals.contains(new BigDecimal("1.00").stripTrailingZeros()));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 028: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Append increasing keys, explicitly and through insert and put, and check
+   * that they cost one comparison each and keep the tree balanced.
+   */
+  @Test
+  void testBALST_029_append() {
+    try {
+      AvlTree<Integer, String> tree = new AvlTree<Integer, String>();
+      AvlTree<Integer, String> expected = new AvlTree<Integer, String>();
+      tree.setHashing(true);
+      expected.setHashing(true);
+      TreeMetrics metrics = new TreeMetrics();
+      tree.setMetrics(metrics);
+      for (int i = 0; i < 1000; i++) {
+        if (i % 3 == 0)
+          tree.append(i, "v" + i);
+        else if (i % 3 == 1)
+          tree.insert(i, "v" + i);
+        else
+          Assert.assertEquals(null, tree.put(i, "v" + i));
+        expected.insert((i * 7) % 1000, "v" + (i * 7) % 1000);
+      }
+      Assert.assertEquals(999, metrics.snapshot().getComparisons());
+      tree.setMetrics(null);
+      checkAvl(tree.getRoot());
+      Assert.assertEquals(1000, tree.numKeys());
+      Assert.assertEquals(true, tree.getHeight() <= 11);
+      Assert.assertEquals(Integer.valueOf(0), tree.firstKey());
+      Assert.assertEquals(Integer.valueOf(999), tree.lastKey());
+      Assert.assertEquals(expected.getInOrderTraversal(),
+          tree.getInOrderTraversal());
+      Assert.assertEquals(expected.digest(), tree.digest());
+      try {
+        tree.append(999, "x");
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+      try {
+        tree.append(500, "x");
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (IllegalArgumentException e) {
+      }
+      tree.pollLast();
+      tree.append(999, "again");
+      Assert.assertEquals("again", tree.get(999));
+      checkAvl(tree.getRoot());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception AVL 029: " + e.getMessage());
+    }
+  }
+
 }
@@ -0,0 +1,227 @@
+package avl_tree;
+
+/**
+ * Blocked Bloom filter of the keys of an AvlTree, attached with
+ * AvlTree.setFilter. All the bits of a key fall in one 512-bit block, one
+ * cache line, so a query reads a single line of memory instead of one per
+ * bit. A filter never answers no for a key of the tree; it answers yes for a
+ * small fraction of the other keys, its false positives.
+ *
+ * Keys cannot be removed from a Bloom filter. The tree counts its removals and
+ * rebuilds the filter from its keys at the next lookup once they are too many,
+ * or once the filter is full, so lookups pay for the rebuilds amortized.
+ *
+ * The filter also counts how lookups of missing keys were answered, to give
+ * the observed false positive rate.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class BlockedBloomFilter {
+  private static final int BLOCK_WORDS = 8; // 512 bits per block.
+  private static final int HASHES = 6; // Bits set per key.
+
+  private final int bitsPerKey; // Bits per key of capacity.
+  private long[] words; // Blocks of bits.
+  private int numBlocks; // Number of blocks.
+  private int capacity; // Keys the filter was sized for.
+  private int added; // Keys added since the last rebuild.
+  private int removed; // Keys removed since the last rebuild.
+  private boolean stale; // True if keys were added without the filter.
+  private long negatives; // Missing keys answered by the filter alone.
+  private long falsePositives; // Missing keys that passed the filter.
+  private long rebuilds; // Number of rebuilds.
+
+  /**
+   * Constructor of an empty filter.
+   *
+   * @param bitsPerKey bits of filter per key, 10 gives about 1% of false
+   *                   positives.
+   *
+   * @throws IllegalArgumentException if bitsPerKey is not positive.
+   */
+  BlockedBloomFilter(int bitsPerKey) {
+    if (bitsPerKey <= 0)
+      throw new IllegalArgumentException("bitsPerKey <= 0");
+    this.bitsPerKey = bitsPerKey;
+    clear(0);
+  }
+
+  /**
+   * Empty the filter and size it for twice a number of keys.
+   *
+   * @param numKeys number of keys about to be added.
+   */
+  void clear(int numKeys) {
+    this.capacity = Math.max(64, 2 * numKeys);
+    long bits = (long) this.capacity * this.bitsPerKey;
+    this.numBlocks = (int) Math.min(Integer.MAX_VALUE / BLOCK_WORDS,
+        (bits + 511) / 512);
+    this.words = new long[this.numBlocks * BLOCK_WORDS];
+    this.added = 0;
+    this.removed = 0;
+    this.stale = false;
+  }
+
+  /**
+   * @param key a key, not null.
+   * @return 64-bit hash of the key.
+   */
+  private static long hash(Object key) {
+    long hash = key.hashCode() * 0x9E3779B97F4A7C15L;
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    return hash ^ (hash >>> 33);
+  }
+
+  /**
+   * Add a key.
+   *
+   * @param key a key, not null.
+   */
+  void add(Object key) {
+    long hash = hash(key);
+    int base = block(hash);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (h1 + i * h2) & 511;
+      this.words[base + (bit >>> 6)] |= 1L << bit;
+    }
+    this.added++;
+  }
+
+  /**
+   * Returns false if the key was never added.
+   *
+   * @param key a key, not null.
+   * @return false if key is certainly absent, true if it may be present.
+   */
+  boolean mightContain(Object key) {
+    long hash = hash(key);
+    int base = block(hash);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (h1 + i * h2) & 511;
+      if ((this.words[base + (bit >>> 6)] & (1L << bit)) == 0)
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * @param hash hash of a key.
+   * @return index of the first word of the block of the key.
+   */
+  private int block(long hash) {
+    // Multiply-shift maps the high bits to [0, numBlocks) without a division.
+    return (int) (((hash >>> 32) * this.numBlocks) >>> 32) * BLOCK_WORDS;
+  }
+
+  /**
+   * Record removed keys, which stay in the filter until the next rebuild.
+   *
+   * @param count number of removed keys.
+   */
+  void removed(int count) {
+    this.removed += count;
+  }
+
+  /**
+   * Record that keys were added to the tree without the filter.
+   */
+  void invalidate() {
+    this.stale = true;
+  }
+
+  /**
+   * Returns true if the filter should be rebuilt before the next query: keys
+   * are missing from it, it holds more removed keys than half of the tree,
+   * or it is full.
+   *
+   * @param numKeys number of keys of the tree.
+   * @return true if the filter should be rebuilt.
+   */
+  boolean needsRebuild(int numKeys) {
+    return this.stale || this.removed > Math.max(32, numKeys / 2)
+        || this.added > this.capacity;
+  }
+
+  /**
+   * Record the answer of the tree for a key that passed the filter, or that
+   * the filter rejected.
+   *
+   * @param passed true if the key passed the filter.
+   * @param found  true if the key was in the tree.
+   */
+  void recordQuery(boolean passed, boolean found) {
+    if (!passed)
+      this.negatives++;
+    else if (!found)
+      this.falsePositives++;
+  }
+
+  /**
+   * Record a rebuild.
+   */
+  void recordRebuild() {
+    this.rebuilds++;
+  }
+
+  /**
+   * Returns the number of bits of the filter.
+   *
+   * @return the size of the filter in bits.
+   */
+  public long getNumBits() {
+    return (long) this.words.length * 64;
+  }
+
+  /**
+   * Returns the number of lookups of missing keys answered by the filter
+   * alone, without a descent in the tree.
+   *
+   * @return the number of filtered lookups.
+   */
+  public long getNegatives() {
+    return this.negatives;
+  }
+
+  /**
+   * Returns the number of lookups of missing keys that passed the filter and
+   * descended in the tree.
+   *
+   * @return the number of false positives.
+   */
+  public long getFalsePositives() {
+    return this.falsePositives;
+  }
+
+  /**
+   * Returns the observed false positive rate: the fraction of the lookups of
+   * missing keys that the filter let through.
+   *
+   * @return the false positive rate, 0 before any lookup of a missing key.
+   */
+  public double getFalsePositiveRate() {
+    long misses = this.negatives + this.falsePositives;
+    return misses == 0 ? 0 : (double) this.falsePositives / misses;
+  }
+
+  /**
+   * Returns the number of times the filter was rebuilt from the keys of the
+   * tree.
+   *
+   * @return the number of rebuilds.
+   */
+  public long getRebuilds() {
+    return this.rebuilds;
+  }
+
+  /**
+   * Reset the lookup counters to zero.
+   */
+  public void resetStatistics() {
+    this.negatives = 0;
+    this.falsePositives = 0;
+  }
+}
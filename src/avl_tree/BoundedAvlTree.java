@@ -0,0 +1,524 @@
+package avl_tree;
+
+import exception.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Ordered cache built on AvlTree: the total weight of its entries is bounded,
+ * and inserting past the bound evicts entries by the eviction policy. Each
+ * node carries intrusive links into the eviction order, so keeping the order
+ * and choosing a victim are O(1) on top of the tree operation.
+ *
+ * LRU evicts the least recently used entry. LFU evicts the least frequently
+ * used entry, the eldest one among equal frequencies. TTL evicts the eldest
+ * written entry, and also expires entries once their time to live has passed:
+ * lazily when they are accessed or removed, in small batches on every insert,
+ * and all at once before the reads of many or of ordered keys, such as
+ * traversals, streams, getAll and firstKey. numKeys counts expired entries
+ * until they are removed.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class BoundedAvlTree<K extends Comparable<K>, V> extends AvlTree<K, V> {
+  /**
+   * Order in which entries are evicted.
+   */
+  public enum EvictionPolicy {
+    LRU, LFU, TTL
+  }
+
+  private static final int SWEEP_BATCH = 16; // Expired entries per insert.
+
+  /**
+   * Node with the links of the eviction order. Entries are kept in buckets of
+   * equal frequency, eldest first; LRU and TTL use a single bucket.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  static class CacheNode<K, V> extends Node<K, V> {
+    CacheNode<K, V> prev; // Previous entry of its bucket, null if eldest.
+    CacheNode<K, V> next; // Next entry of its bucket, null if youngest.
+    Bucket<K, V> bucket; // Bucket the entry belongs to.
+    long weight; // Weight of the entry.
+    long expiresAt; // Time after which the entry expires, for TTL only.
+
+    CacheNode(K key, V value) {
+      super(key, value);
+    }
+  }
+
+  /**
+   * List of the entries of one frequency. Buckets are linked in increasing
+   * frequency.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  static class Bucket<K, V> {
+    final long frequency; // Number of accesses of the entries, for LFU.
+    CacheNode<K, V> head; // Eldest entry.
+    CacheNode<K, V> tail; // Youngest entry.
+    Bucket<K, V> prev; // Bucket of the next lower frequency.
+    Bucket<K, V> next; // Bucket of the next higher frequency.
+
+    Bucket(long frequency) {
+      this.frequency = frequency;
+    }
+  }
+
+  private final EvictionPolicy policy; // Eviction policy.
+  private final long maxWeight; // Bound of the total weight.
+  private final ToLongBiFunction<? super K, ? super V> weigher; // Entry weight.
+  private final long timeToLive; // Time to live in nanoseconds, for TTL.
+  LongSupplier ticker = System::nanoTime; // Clock, replaced by tests.
+  private Bucket<K, V> first; // Bucket of the lowest frequency.
+  private long weight; // Total weight of the entries.
+  private long hitCount; // Successful gets.
+  private long missCount; // Failed gets.
+  private long evictionCount; // Entries evicted for the bound.
+  private long expirationCount; // Entries removed because they expired.
+
+  /**
+   * Constructor of an LRU or LFU cache of at most maxEntries entries.
+   *
+   * @param policy     LRU or LFU.
+   * @param maxEntries maximum number of entries.
+   */
+  public BoundedAvlTree(EvictionPolicy policy, long maxEntries) {
+    this(policy, maxEntries, (key, value) -> 1, 0, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Constructor of a cache bounded by the total weight of its entries.
+   *
+   * @param policy     eviction policy.
+   * @param maxWeight  maximum total weight.
+   * @param weigher    weight of an entry, at least 0.
+   * @param timeToLive time an entry lives after it was written, for TTL.
+   * @param unit       unit of timeToLive.
+   */
+  public BoundedAvlTree(EvictionPolicy policy, long maxWeight,
+      ToLongBiFunction<? super K, ? super V> weigher, long timeToLive,
+      TimeUnit unit) {
+    super();
+    if (policy == null || weigher == null || unit == null)
+      throw new IllegalArgumentException("Null argument.");
+    if (maxWeight < 1)
+      throw new IllegalArgumentException("Maximum weight must be positive.");
+    if (policy == EvictionPolicy.TTL && timeToLive <= 0)
+      throw new IllegalArgumentException("TTL needs a positive time to live.");
+    this.policy = policy;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+    this.timeToLive = unit.toNanos(timeToLive);
+  }
+
+  /**
+   * Add the key-value pair, then evict entries until the total weight is
+   * within the bound. An expired entry of the same key is replaced.
+   *
+   * @param key   A key to insert.
+   * @param value A value to insert.
+   */
+  @Override
+  public void insert(K key, V value)
+      throws IllegalNullArgumentException, DuplicateKeyException {
+    checkPublisher();
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    sweep(SWEEP_BATCH);
+    getLiveNode(key);
+    super.insert(key, value);
+    evict();
+  }
+
+  /**
+   * Associate value with key, counting as an access of an existing entry and
+   * restarting its time to live, then evict entries until the total weight is
+   * within the bound.
+   *
+   * @param key   A key to insert or update.
+   * @param value A value to associate with key.
+   * @return the previous value of key, or null if key was not present.
+   */
+  @Override
+  public V put(K key, V value) throws IllegalNullArgumentException {
+    checkPublisher();
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    sweep(SWEEP_BATCH);
+    CacheNode<K, V> node = getLiveNode(key);
+    if (node == null) {
+      super.put(key, value);
+      evict();
+      return null;
+    }
+    V previous = node.value;
+    TreeOperationEvent event = beginOperation(); // Inserts record in super.
+    try {
+      long entryWeight = weigh(key, value);
+      node.value = value;
+      refreshHash(key);
+      publishChange(ChangeEvent.Type.UPDATE, key, value);
+      this.weight += entryWeight - node.weight;
+      node.weight = entryWeight;
+      if (this.policy == EvictionPolicy.TTL) { // New write, move to the end.
+        node.expiresAt = this.ticker.getAsLong() + this.timeToLive;
+        moveToEnd(node);
+      } else {
+        touch(node);
+      }
+    } finally {
+      endOperation(event, TreeMetrics.Operation.PUT);
+    }
+    evict();
+    return previous;
+  }
+
+  /**
+   * Returns the value of a live entry, counting as a hit and as an access of
+   * the entry, or counts a miss.
+   *
+   * @param key A key to get the value associated with it.
+   * @return the value associated with the give key if found.
+   */
+  @Override
+  public V get(K key) throws IllegalNullArgumentException, KeyNotFoundException {
+    TreeOperationEvent event = beginOperation();
+    try {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      CacheNode<K, V> node = liveNode(lookup(key));
+      if (node == null) {
+        this.missCount++;
+        throw new KeyNotFoundException();
+      }
+      this.hitCount++;
+      touch(node);
+      return node.value;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.GET);
+    }
+  }
+
+  /**
+   * Returns true if the key has a live entry. Does not count as an access.
+   *
+   * @param key A key to check if it exists in data structure.
+   * @return true if key is found, false otherwise.
+   */
+  @Override
+  public boolean contains(K key) throws IllegalNullArgumentException {
+    TreeOperationEvent event = beginOperation();
+    try {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      return liveNode(lookup(key)) != null;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.CONTAINS);
+    }
+  }
+
+  /**
+   * Remove the entry of a live key. An expired entry is removed as well, but
+   * reported as missing.
+   *
+   * @param key A key to remove.
+   * @return true always, indicating the entry was removed.
+   *
+   * @throws KeyNotFoundException if key has no live entry.
+   */
+  @Override
+  public boolean remove(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    checkPublisher();
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    if (getLiveNode(key) == null)
+      throw new KeyNotFoundException();
+    return super.remove(key);
+  }
+
+  /**
+   * Remove every expired entry. Only TTL caches have expired entries.
+   */
+  public void cleanUp() {
+    checkPublisher();
+    sweep(Integer.MAX_VALUE);
+  }
+
+  /**
+   * @return total weight of the entries.
+   */
+  public long getWeight() {
+    return this.weight;
+  }
+
+  /**
+   * @return number of gets that found a live entry.
+   */
+  public long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * @return number of gets that found no live entry.
+   */
+  public long getMissCount() {
+    return this.missCount;
+  }
+
+  /**
+   * @return number of entries evicted to respect the bound.
+   */
+  public long getEvictionCount() {
+    return this.evictionCount;
+  }
+
+  /**
+   * @return number of entries removed because their time to live passed.
+   */
+  public long getExpirationCount() {
+    return this.expirationCount;
+  }
+
+  /**
+   * Construct a node linked at the end of the lowest bucket.
+   *
+   * @param key   key of node.
+   * @param value value of node.
+   * @return the new node.
+   */
+  @Override
+  Node<K, V> createNode(K key, V value) {
+    CacheNode<K, V> node = new CacheNode<K, V>(key, value);
+    node.weight = weigh(key, value);
+    this.weight += node.weight;
+    if (this.policy == EvictionPolicy.TTL)
+      node.expiresAt = this.ticker.getAsLong() + this.timeToLive;
+    if (this.first == null || this.first.frequency != 1) { // New lowest.
+      Bucket<K, V> bucket = new Bucket<K, V>(1);
+      bucket.next = this.first;
+      if (this.first != null)
+        this.first.prev = bucket;
+      this.first = bucket;
+    }
+    append(this.first, node);
+    return node;
+  }
+
+  /**
+   * Unlink a removed node from the eviction order.
+   *
+   * @param node the removed node.
+   */
+  @Override
+  void nodeRemoved(Node<K, V> node) {
+    super.nodeRemoved(node);
+    CacheNode<K, V> entry = (CacheNode<K, V>) node;
+    this.weight -= entry.weight;
+    unlink(entry);
+  }
+
+  /**
+   * Remove every expired entry before a read of many or of ordered keys. The
+   * expired entries are at the front of the write order, so this costs one
+   * check when none has expired.
+   */
+  @Override
+  void expire() {
+    sweep(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Nodes cannot move to another tree without leaving the eviction order.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  void ensurePlainTree() {
+    throw new UnsupportedOperationException("split and concat of a cache");
+  }
+
+  /**
+   * Find the node of a key, removing it first if it has expired.
+   *
+   * @param key key to be looked for, not null.
+   * @return live node of key, or null.
+   */
+  private CacheNode<K, V> getLiveNode(K key) {
+    return liveNode(findNode(key));
+  }
+
+  /**
+   * Check a node found for a key, removing it if it has expired.
+   *
+   * @param found node found for a key, or null.
+   * @return found if it is live, or null.
+   */
+  private CacheNode<K, V> liveNode(Node<K, V> found) {
+    CacheNode<K, V> node = (CacheNode<K, V>) found;
+    if (node != null && isExpired(node, this.ticker.getAsLong())) {
+      removeEntry(node);
+      this.expirationCount++;
+      return null;
+    }
+    return node;
+  }
+
+  /**
+   * Check if an entry has expired.
+   *
+   * @param node entry to check.
+   * @param now  current time.
+   * @return true if the policy is TTL and the time to live has passed.
+   */
+  private boolean isExpired(CacheNode<K, V> node, long now) {
+    return this.policy == EvictionPolicy.TTL && now - node.expiresAt >= 0;
+  }
+
+  /**
+   * Remove up to limit expired entries. Entries of a TTL cache are in write
+   * order, so the expired ones are at the front.
+   *
+   * @param limit maximum number of entries to remove.
+   */
+  private void sweep(int limit) {
+    if (this.policy != EvictionPolicy.TTL)
+      return;
+    long now = this.ticker.getAsLong();
+    for (int i = 0; i < limit && this.first != null
+        && isExpired(this.first.head, now); i++) {
+      removeEntry(this.first.head);
+      this.expirationCount++;
+    }
+  }
+
+  /**
+   * Evict the first entry of the eviction order until the total weight is
+   * within the bound.
+   */
+  private void evict() {
+    while (this.weight > this.maxWeight && this.first != null) {
+      removeEntry(this.first.head);
+      this.evictionCount++;
+    }
+  }
+
+  /**
+   * Remove an entry from the tree; nodeRemoved unlinks it.
+   *
+   * @param node entry to remove.
+   */
+  private void removeEntry(CacheNode<K, V> node) {
+    try {
+      super.remove(node.key);
+    } catch (IllegalNullArgumentException | KeyNotFoundException e) {
+      throw new IllegalStateException(e); // Linked entries are in the tree.
+    }
+  }
+
+  /**
+   * Record an access of an entry: LRU moves it to the end of the order, LFU
+   * moves it to the bucket of the next frequency, TTL keeps write order.
+   *
+   * @param node entry accessed.
+   */
+  private void touch(CacheNode<K, V> node) {
+    if (this.policy == EvictionPolicy.LRU) {
+      moveToEnd(node);
+    } else if (this.policy == EvictionPolicy.LFU) {
+      Bucket<K, V> bucket = node.bucket;
+      Bucket<K, V> next = bucket.next;
+      if (next == null || next.frequency != bucket.frequency + 1) {
+        next = new Bucket<K, V>(bucket.frequency + 1); // Link after bucket.
+        next.prev = bucket;
+        next.next = bucket.next;
+        if (bucket.next != null)
+          bucket.next.prev = next;
+        bucket.next = next;
+      }
+      unlink(node); // May drop bucket, next stays linked.
+      append(next, node);
+    }
+  }
+
+  /**
+   * Move a node to the end of its bucket.
+   *
+   * @param node node to move.
+   */
+  private void moveToEnd(CacheNode<K, V> node) {
+    Bucket<K, V> bucket = node.bucket;
+    if (node != bucket.tail) { // Bucket keeps other nodes, so is not dropped.
+      unlink(node);
+      append(bucket, node);
+    }
+  }
+
+  /**
+   * Link a node at the end of a bucket.
+   *
+   * @param bucket bucket to link into.
+   * @param node   node to link.
+   */
+  private void append(Bucket<K, V> bucket, CacheNode<K, V> node) {
+    node.bucket = bucket;
+    node.prev = bucket.tail;
+    node.next = null;
+    if (bucket.tail == null)
+      bucket.head = node;
+    else
+      bucket.tail.next = node;
+    bucket.tail = node;
+  }
+
+  /**
+   * Unlink a node from its bucket, dropping the bucket if it becomes empty.
+   *
+   * @param node node to unlink.
+   */
+  private void unlink(CacheNode<K, V> node) {
+    Bucket<K, V> bucket = node.bucket;
+    if (node.prev == null)
+      bucket.head = node.next;
+    else
+      node.prev.next = node.next;
+    if (node.next == null)
+      bucket.tail = node.prev;
+    else
+      node.next.prev = node.prev;
+    node.prev = node.next = null;
+    node.bucket = null;
+    if (bucket.head == null) { // Drop the empty bucket.
+      if (bucket.prev == null)
+        this.first = bucket.next;
+      else
+        bucket.prev.next = bucket.next;
+      if (bucket.next != null)
+        bucket.next.prev = bucket.prev;
+    }
+  }
+
+  /**
+   * Returns the weight of an entry.
+   *
+   * @param key   key of the entry.
+   * @param value value of the entry.
+   * @return weight of the entry.
+   */
+  private long weigh(K key, V value) {
+    long entryWeight = this.weigher.applyAsLong(key, value);
+    if (entryWeight < 0)
+      throw new IllegalArgumentException("Negative weight.");
+    return entryWeight;
+  }
+}
@@ -0,0 +1,240 @@
+package avl_tree;
+
+import static org.junit.Assert.fail;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+class BoundedAvlTreeTest {
+  /**
+   * Fill an LRU cache past its bound: the least recently used key is evicted
+   * and the tree stays ordered.
+   */
+  @Test
+  void testBOUND_001_lru_evicts_least_recently_used() {
+    try {
+      BoundedAvlTree<Integer, String> cache =
+          new BoundedAvlTree<Integer, String>(
+              BoundedAvlTree.EvictionPolicy.LRU, 3);
+      cache.insert(10, "10");
+      cache.insert(20, "20");
+      cache.insert(30, "30");
+      Assert.assertEquals("10", cache.get(10)); // 20 is now the eldest.
+      cache.insert(40, "40");
+      Assert.assertEquals(false, cache.contains(20));
+      Assert.assertEquals(List.of(10, 30, 40), cache.getInOrderTraversal());
+      cache.put(30, "thirty"); // 10 is now the eldest.
+      cache.put(50, "50");
+      Assert.assertEquals(List.of(30, 40, 50), cache.getInOrderTraversal());
+      Assert.assertEquals(3, cache.numKeys());
+      Assert.assertEquals(2, cache.getEvictionCount());
+      Assert.assertEquals(1, cache.getHitCount());
+      try {
+        cache.get(20);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+      Assert.assertEquals(1, cache.getMissCount());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception BOUND 001: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Fill an LFU cache past its bound: the least frequently used key is
+   * evicted, the eldest one among equal frequencies.
+   */
+  @Test
+  void testBOUND_002_lfu_evicts_least_frequently_used() {
+    try {
+      BoundedAvlTree<Integer, String> cache =
+          new BoundedAvlTree<Integer, String>(
+              BoundedAvlTree.EvictionPolicy.LFU, 3);
+      cache.insert(10, "10");
+      cache.insert(20, "20");
+      cache.insert(30, "30");
+      cache.get(10);
+      cache.get(10);
+      cache.get(30);
+      cache.insert(40, "40"); // 20 was never used.
+      Assert.assertEquals(List.of(10, 30, 40), cache.getInOrderTraversal());
+      cache.insert(50, "50"); // 40 is as unused as 50, but older.
+      Assert.assertEquals(List.of(10, 30, 50), cache.getInOrderTraversal());
+      cache.remove(10);
+      cache.insert(60, "60");
+      cache.insert(70, "70"); // 50 and 60 are unused, 50 is older.
+      Assert.assertEquals(List.of(30, 60, 70), cache.getInOrderTraversal());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception BOUND 002: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Expire entries of a TTL cache lazily on access and in batches on insert,
+   * and bound the total weight.
+   */
+  @Test
+  void testBOUND_003_ttl_expires_and_weight_bound() {
+    try {
+      long[] now = {0};
+      BoundedAvlTree<String, String> cache = new BoundedAvlTree<String, String>(
+          BoundedAvlTree.EvictionPolicy.TTL, 10,
+          (key, value) -> value.length(), 100, TimeUnit.NANOSECONDS);
+      cache.ticker = () -> now[0];
+      cache.insert("aa", "1234");
+      now[0] = 50;
+      cache.insert("bb", "1234");
+      Assert.assertEquals(8, cache.getWeight());
+      cache.insert("cc", "1234"); // Over the bound, aa is the eldest.
+      Assert.assertEquals(List.of("bb", "cc"), cache.getInOrderTraversal());
+      Assert.assertEquals(1, cache.getEvictionCount());
+
+      now[0] = 160; // bb expired.
+      Assert.assertEquals(false, cache.contains("bb"));
+      Assert.assertEquals(1, cache.getExpirationCount());
+      cache.insert("bb", "12"); // Expired key can be inserted again.
+      cache.put("bb", "123"); // Only entry of its bucket.
+      now[0] = 250; // cc expired.
+      cache.insert("dd", "1");
+      Assert.assertEquals(List.of("bb", "dd"), cache.getInOrderTraversal());
+      Assert.assertEquals(2, cache.getExpirationCount());
+      Assert.assertEquals(4, cache.getWeight());
+
+      now[0] = 1000;
+      cache.cleanUp();
+      Assert.assertEquals(0, cache.numKeys());
+      Assert.assertEquals(0, cache.getWeight());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception BOUND 003: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Lookups of a cache go through its filter and are recorded in its
+   * metrics.
+   */
+  @Test
+  void testBOUND_004_filtered_lookups() {
+    try {
+      BoundedAvlTree<Integer, String> cache =
+          new BoundedAvlTree<Integer, String>(
+              BoundedAvlTree.EvictionPolicy.LRU, 100);
+      for (int i = 0; i < 100; i++)
+        cache.insert(2 * i, "v" + i);
+      cache.setFilter(10);
+      TreeMetrics metrics = new TreeMetrics();
+      cache.setMetrics(metrics);
+      for (int i = 0; i < 100; i++) {
+        Assert.assertEquals("v" + i, cache.get(2 * i));
+        Assert.assertEquals(false, cache.contains(2 * i + 1));
+      }
+      BlockedBloomFilter filter = cache.getFilter();
+      Assert.assertEquals(100, filter.getNegatives()
+          + filter.getFalsePositives());
+      Assert.assertEquals(100, cache.getHitCount());
+      TreeMetrics.Snapshot snapshot = metrics.snapshot();
+      Assert.assertEquals(100,
+          snapshot.getOperations(TreeMetrics.Operation.GET));
+      Assert.assertEquals(100,
+          snapshot.getOperations(TreeMetrics.Operation.CONTAINS));
+      cache.put(0, "updated");
+      cache.put(1, "new");
+      snapshot = metrics.snapshot();
+      Assert.assertEquals(2,
+          snapshot.getOperations(TreeMetrics.Operation.PUT));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception BOUND 004: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Build a TTL cache whose smallest and largest keys, 10 and 50, have
+   * expired at time 150, while 20, 30 and 40 are live.
+   */
+  private BoundedAvlTree<Integer, String> expiringCache(long[] now)
+      throws Exception {
+    BoundedAvlTree<Integer, String> cache = new BoundedAvlTree<Integer, String>(
+        BoundedAvlTree.EvictionPolicy.TTL, 100, (key, value) -> 1, 120,
+        TimeUnit.NANOSECONDS);
+    cache.ticker = () -> now[0];
+    now[0] = 0;
+    cache.insert(10, "10");
+    cache.insert(50, "50");
+    now[0] = 100;
+    for (int key = 20; key <= 40; key += 10)
+      cache.insert(key, "" + key);
+    now[0] = 150;
+    return cache;
+  }
+
+  /**
+   * Expired entries of a TTL cache are not returned by remove, batched
+   * lookups, the smallest and largest keys, traversals and streams.
+   */
+  @Test
+  void testBOUND_005_ttl_reads_skip_expired_entries() {
+    try {
+      long[] now = new long[1];
+      List<Integer> live = List.of(20, 30, 40);
+
+      BoundedAvlTree<Integer, String> cache = expiringCache(now);
+      try {
+        cache.remove(10);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (exception.KeyNotFoundException e) {
+      }
+      Assert.assertEquals(false, cache.contains(10));
+      Assert.assertEquals(true, cache.remove(30));
+      Assert.assertEquals(List.of(20, 40), cache.getInOrderTraversal());
+
+      cache = expiringCache(now);
+      String[] values = new String[3];
+      Assert.assertEquals(1,
+          cache.getAll(new Integer[] {10, 30, 50}, values));
+      Assert.assertEquals(null, values[0]);
+      Assert.assertEquals("30", values[1]);
+      Assert.assertEquals(false, cache.containsAll(new Integer[] {10, 30}));
+      Assert.assertEquals(true, cache.containsAll(new Integer[] {20, 40}));
+
+      cache = expiringCache(now);
+      Assert.assertEquals(Integer.valueOf(20), cache.firstKey());
+      Assert.assertEquals(Integer.valueOf(40), cache.lastKey());
+      Assert.assertEquals("20", cache.peek());
+      cache = expiringCache(now);
+      Assert.assertEquals(Integer.valueOf(20), cache.pollFirst());
+      cache = expiringCache(now);
+      Assert.assertEquals(Integer.valueOf(40), cache.pollLast());
+
+      cache = expiringCache(now);
+      Assert.assertEquals(live, cache.getInOrderTraversal());
+      cache = expiringCache(now);
+      Assert.assertEquals(3, cache.getPreOrderTraversal().size());
+      cache = expiringCache(now);
+      Assert.assertEquals(3, cache.getPostOrderTraversal().size());
+      cache = expiringCache(now);
+      Assert.assertEquals(3, cache.getLevelOrderTraversal().size());
+      cache = expiringCache(now);
+      Assert.assertEquals(live, cache.stream().collect(Collectors.toList()));
+      cache = expiringCache(now);
+      Assert.assertEquals(List.of("20", "30", "40"),
+          cache.valueStream(false).collect(Collectors.toList()));
+      Assert.assertEquals(3, cache.numKeys());
+      Assert.assertEquals(2, cache.getExpirationCount());
+
+      try {
+        cache.removeRange(10, 30);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (UnsupportedOperationException e) {
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception BOUND 005: " + e.getMessage());
+    }
+  }
+}
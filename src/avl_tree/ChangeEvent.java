@@ -0,0 +1,75 @@
+package avl_tree;
+
+/**
+ * Change of one key of an AvlTree, delivered by a ChangeStream. Sequence
+ * numbers start at 1 and increase by one with each change published to the
+ * stream, so a consumer can tell whether it has missed or replayed a change.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public final class ChangeEvent<K, V> {
+  /**
+   * Types of change.
+   */
+  public enum Type {
+    INSERT, // Key added with value.
+    UPDATE, // Value of an existing key replaced by value.
+    REMOVE // Key removed, value is the value it had.
+  }
+
+  private final long sequence; // Position of the change in its stream.
+  private final Type type; // Type of change.
+  private final K key; // Changed key.
+  private final V value; // New value, or removed value for REMOVE.
+
+  /**
+   * Constructor of an event.
+   *
+   * @param sequence position of the change in its stream.
+   * @param type     type of change.
+   * @param key      changed key.
+   * @param value    new value, or removed value for REMOVE.
+   */
+  ChangeEvent(long sequence, Type type, K key, V value) {
+    this.sequence = sequence;
+    this.type = type;
+    this.key = key;
+    this.value = value;
+  }
+
+  /**
+   * @return position of the change in its stream, from 1.
+   */
+  public long getSequence() {
+    return this.sequence;
+  }
+
+  /**
+   * @return type of change.
+   */
+  public Type getType() {
+    return this.type;
+  }
+
+  /**
+   * @return changed key.
+   */
+  public K getKey() {
+    return this.key;
+  }
+
+  /**
+   * @return new value of key, or the value it had for REMOVE.
+   */
+  public V getValue() {
+    return this.value;
+  }
+
+  @Override
+  public String toString() {
+    return this.sequence + " " + this.type + " " + this.key + "=" + this.value;
+  }
+}
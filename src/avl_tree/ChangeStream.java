@@ -0,0 +1,234 @@
+package avl_tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous stream of the changes made to one or more AvlTrees, attached
+ * with AvlTree.setChangeStream. A mutator only copies the change into a ring
+ * buffer, without allocating, and a dispatcher thread hands the changes to the
+ * consumer in batches of consecutive events: every change buffered since the
+ * last batch, up to maxBatch of them. The consumer therefore runs off the
+ * critical path of the mutators, and a slow consumer gets larger batches.
+ *
+ * The ring is bounded: when it is full, mutators wait for the dispatcher to
+ * free room, so a consumer that cannot keep up slows the mutators down instead
+ * of letting the buffer grow without limit. Only the dispatcher frees room,
+ * so the consumer must not change a tree attached to this stream: such a
+ * change throws IllegalStateException before the tree is changed.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class ChangeStream<K, V> implements AutoCloseable {
+  private static final ChangeEvent.Type[] TYPES = ChangeEvent.Type.values();
+
+  private final Object[] keys; // Ring of keys, indexed by sequence % length.
+  private final Object[] values; // Ring of values.
+  private final byte[] types; // Ring of type ordinals.
+  private final int maxBatch; // Most events handed to the consumer at once.
+  private final Consumer<List<ChangeEvent<K, V>>> consumer; // Receives batches.
+  private final ReentrantLock lock; // Guards the ring and the sequences.
+  private final Condition notEmpty; // Signaled when an event is published.
+  private final Condition notFull; // Signaled when a batch is taken.
+  private final Condition delivered; // Signaled when a batch is consumed.
+  private final Thread dispatcher; // Thread that runs the consumer.
+  private long published; // Sequence of the last published event.
+  private long taken; // Sequence of the last event taken from the ring.
+  private long consumed; // Sequence of the last event consumed.
+  private boolean closed; // True once close was called.
+  private RuntimeException failure; // First exception of the consumer.
+
+  /**
+   * Constructor that starts the dispatcher thread.
+   *
+   * @param capacity number of events the ring holds before mutators wait.
+   * @param maxBatch largest number of events handed to the consumer at once.
+   * @param consumer receives the batches, in sequence order, on the
+   *                 dispatcher thread.
+   *
+   * @throws IllegalArgumentException if capacity or maxBatch is not positive.
+   */
+  public ChangeStream(int capacity, int maxBatch,
+      Consumer<List<ChangeEvent<K, V>>> consumer) {
+    if (capacity <= 0 || maxBatch <= 0)
+      throw new IllegalArgumentException("capacity and batch must be > 0");
+    if (consumer == null)
+      throw new NullPointerException();
+    this.keys = new Object[capacity];
+    this.values = new Object[capacity];
+    this.types = new byte[capacity];
+    this.maxBatch = maxBatch;
+    this.consumer = consumer;
+    this.lock = new ReentrantLock();
+    this.notEmpty = this.lock.newCondition();
+    this.notFull = this.lock.newCondition();
+    this.delivered = this.lock.newCondition();
+    this.dispatcher = new Thread(this::dispatch, "ChangeStream-dispatcher");
+    this.dispatcher.setDaemon(true);
+    this.dispatcher.start();
+  }
+
+  /**
+   * Publish one change, waiting while the ring is full. The change has
+   * already been applied, so a closed stream drops it instead of failing.
+   *
+   * @param type  type of change.
+   * @param key   changed key.
+   * @param value new value, or removed value for REMOVE.
+   * @return sequence of the change, or 0 if the stream is closed and the
+   *         change was dropped.
+   */
+  long publish(ChangeEvent.Type type, K key, V value) {
+    checkPublisher();
+    this.lock.lock();
+    try {
+      while (!this.closed && this.published - this.taken == this.keys.length)
+        this.notFull.awaitUninterruptibly(); // Backpressure.
+      if (this.closed)
+        return 0; // Dropped.
+      int slot = (int) (this.published % this.keys.length);
+      this.keys[slot] = key;
+      this.values[slot] = value;
+      this.types[slot] = (byte) type.ordinal();
+      this.published++;
+      this.notEmpty.signal();
+      return this.published;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Refuse a change made by the consumer. Only the dispatcher thread frees
+   * room in the ring, so it would wait forever on a full ring.
+   *
+   * @throws IllegalStateException if called on the dispatcher thread.
+   */
+  void checkPublisher() {
+    if (Thread.currentThread() == this.dispatcher)
+      throw new IllegalStateException("consumer cannot change its tree");
+  }
+
+  /**
+   * Loop of the dispatcher thread: take the buffered events, up to maxBatch,
+   * and hand them to the consumer outside of the lock.
+   */
+  @SuppressWarnings("unchecked")
+  private void dispatch() {
+    while (true) {
+      List<ChangeEvent<K, V>> batch;
+      this.lock.lock();
+      try {
+        while (!this.closed && this.taken == this.published)
+          this.notEmpty.awaitUninterruptibly();
+        if (this.taken == this.published)
+          return; // Closed and drained.
+        int count = (int) Math.min(this.maxBatch, this.published - this.taken);
+        batch = new ArrayList<ChangeEvent<K, V>>(count);
+        for (int i = 0; i < count; i++) {
+          int slot = (int) (this.taken % this.keys.length);
+          this.taken++;
+          batch.add(new ChangeEvent<K, V>(this.taken, TYPES[this.types[slot]],
+              (K) this.keys[slot], (V) this.values[slot]));
+          this.keys[slot] = null; // Do not retain removed keys and values.
+          this.values[slot] = null;
+        }
+        this.notFull.signalAll();
+      } finally {
+        this.lock.unlock();
+      }
+      RuntimeException failure = null;
+      try {
+        this.consumer.accept(batch);
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+      this.lock.lock();
+      try {
+        if (this.failure == null)
+          this.failure = failure;
+        this.consumed = batch.get(batch.size() - 1).getSequence();
+        this.delivered.signalAll();
+      } finally {
+        this.lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns the sequence of the last published change.
+   *
+   * @return the last sequence, 0 if nothing was published.
+   */
+  public long getLastSequence() {
+    this.lock.lock();
+    try {
+      return this.published;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Wait until the consumer has received every change published so far.
+   *
+   * @throws InterruptedException  if interrupted while waiting.
+   * @throws IllegalStateException if the consumer has thrown an exception,
+   *                               which is its cause.
+   */
+  public void flush() throws InterruptedException {
+    this.lock.lock();
+    try {
+      long target = this.published;
+      while (this.consumed < target && this.dispatcher.isAlive())
+        this.delivered.await();
+      if (this.failure != null)
+        throw new IllegalStateException("consumer failed", this.failure);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Refuse new changes, deliver the buffered ones and stop the dispatcher.
+   * Trees still attached to a closed stream detach it on their next change,
+   * which is applied but not published.
+   *
+   * @throws IllegalStateException if the consumer has thrown an exception.
+   */
+  @Override
+  public void close() {
+    this.lock.lock();
+    try {
+      this.closed = true;
+      this.notEmpty.signal();
+      this.notFull.signalAll();
+    } finally {
+      this.lock.unlock();
+    }
+    if (this.dispatcher == Thread.currentThread())
+      return; // Called by the consumer, the loop ends once drained.
+    boolean interrupted = false;
+    while (this.dispatcher.isAlive())
+      try {
+        this.dispatcher.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+    this.lock.lock();
+    try {
+      if (this.failure != null)
+        throw new IllegalStateException("consumer failed", this.failure);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+}
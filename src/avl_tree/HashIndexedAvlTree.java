@@ -0,0 +1,163 @@
+package avl_tree;
+
+/**
+ * AVL tree paired with an open-addressing hash index from key to node. get,
+ * contains, remove and the duplicate check of insert find their node through
+ * the index in O(1) expected time, while the tree keeps the ordering for
+ * traversals, first and last keys and re-balancing. Rotations move nodes but
+ * never replace them, so the index stays valid without being told about them.
+ *
+ * The index costs one reference per slot, with between two and eight slots per
+ * key. Keys must have an equals and hashCode consistent with compareTo.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class HashIndexedAvlTree<K extends Comparable<K>, V>
+    extends AvlTree<K, V> {
+  private static final int MIN_CAPACITY = 16; // Initial number of slots.
+
+  private Node<K, V>[] table; // Linear probing table, null for a free slot.
+  private int indexed; // Number of nodes in the table.
+
+  /**
+   * Constructor of an empty tree with an empty index.
+   */
+  public HashIndexedAvlTree() {
+    super();
+    this.table = newTable(MIN_CAPACITY);
+    this.indexed = 0;
+  }
+
+  /**
+   * Returns the number of slots of the index, to weigh its memory against the
+   * lookup speedup.
+   *
+   * @return number of slots of the index.
+   */
+  public int getIndexCapacity() {
+    return this.table.length;
+  }
+
+  /**
+   * Construct the node of a new key and add it to the index.
+   *
+   * @param key   key of node.
+   * @param value value of node.
+   * @return the new node.
+   */
+  @Override
+  Node<K, V> createNode(K key, V value) {
+    Node<K, V> node = super.createNode(key, value);
+    if (2 * (this.indexed + 1) > this.table.length) // Keep load under 1/2.
+      resize(2 * this.table.length);
+    this.table[slotOf(node.key, this.table.length)] = node;
+    this.indexed++;
+    return node;
+  }
+
+  /**
+   * Find the node of a key through the index.
+   *
+   * @param key key to be looked for, not null.
+   * @return node that contains key if found, otherwise null.
+   */
+  @Override
+  Node<K, V> findNode(K key) {
+    int mask = this.table.length - 1;
+    for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+      Node<K, V> node = this.table[i];
+      if (node == null || node.key.equals(key))
+        return node;
+    }
+  }
+
+  /**
+   * Drop a removed node from the index, shifting back the nodes of its probe
+   * run so that no tombstone is needed.
+   *
+   * @param node the removed node.
+   */
+  @Override
+  void nodeRemoved(Node<K, V> node) {
+    super.nodeRemoved(node);
+    int mask = this.table.length - 1;
+    int hole = hash(node.key) & mask;
+    while (this.table[hole] != node)
+      hole = (hole + 1) & mask;
+    for (int i = (hole + 1) & mask; this.table[i] != null; i = (i + 1) & mask) {
+      int home = hash(this.table[i].key) & mask;
+      // Move the node into the hole unless its home lies in (hole, i].
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        this.table[hole] = this.table[i];
+        hole = i;
+      }
+    }
+    this.table[hole] = null;
+    this.indexed--;
+    if (this.table.length > MIN_CAPACITY
+        && 8 * this.indexed < this.table.length)
+      resize(this.table.length / 2); // Shrink under 1/8 load.
+  }
+
+  /**
+   * Nodes cannot move to another tree without leaving the index.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  void ensurePlainTree() {
+    throw new UnsupportedOperationException("split and concat of an index");
+  }
+
+  /**
+   * Returns the first free slot of the probe run of a key.
+   *
+   * @param key      key to place.
+   * @param capacity number of slots, a power of two.
+   * @return index of a free slot.
+   */
+  private int slotOf(K key, int capacity) {
+    int mask = capacity - 1;
+    int i = hash(key) & mask;
+    while (this.table[i] != null)
+      i = (i + 1) & mask;
+    return i;
+  }
+
+  /**
+   * Move every node to a table of a new capacity.
+   *
+   * @param capacity new number of slots, a power of two.
+   */
+  private void resize(int capacity) {
+    Node<K, V>[] old = this.table;
+    this.table = newTable(capacity);
+    for (Node<K, V> node : old)
+      if (node != null)
+        this.table[slotOf(node.key, capacity)] = node;
+  }
+
+  /**
+   * Spread the hash code of a key so that the low bits used by the table
+   * depend on all its bits.
+   *
+   * @param key key to hash.
+   * @return spread hash code.
+   */
+  private static int hash(Object key) {
+    int h = key.hashCode() * 0x9E3779B9; // Fibonacci hashing.
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * @param capacity number of slots.
+   * @return an empty table.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Node<K, V>[] newTable(int capacity) {
+    return (Node<K, V>[]) new Node[capacity];
+  }
+}
@@ -0,0 +1,56 @@
+package avl_tree;
+
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs every AvlTree scenario against HashIndexedAvlTree, plus checks of the
+ * index itself.
+ */
+class HashIndexedAvlTreeTest extends AvlTreeTest {
+  @Override
+  protected AvlTree<String, String> createInstance() {
+    return new HashIndexedAvlTree<String, String>();
+  }
+
+  @Override
+  protected AvlTree<Integer, String> createInstance2() {
+    return new HashIndexedAvlTree<Integer, String>();
+  }
+
+  /**
+   * Grow the index past several resizes, remove keys in random order so that
+   * probe runs are shifted back, and check every lookup along the way.
+   */
+  @Test
+  void testHASH_001_index_follows_inserts_and_removes() {
+    try {
+      HashIndexedAvlTree<Integer, String> tree =
+          new HashIndexedAvlTree<Integer, String>();
+      List<Integer> keys = new ArrayList<Integer>();
+      for (int i = 0; i < 2000; i++) {
+        keys.add(i * 64); // Same low bits, to exercise the hash spreading.
+        tree.insert(i * 64, "v" + i * 64);
+      }
+      Assert.assertEquals(true, tree.getIndexCapacity() >= 4000);
+      Collections.shuffle(keys, new Random(7));
+      for (int i = 0; i < keys.size(); i++) {
+        tree.remove(keys.get(i));
+        Assert.assertEquals(false, tree.contains(keys.get(i)));
+        if (i % 100 == 0)
+          for (int j = i + 1; j < keys.size(); j++)
+            Assert.assertEquals("v" + keys.get(j), tree.get(keys.get(j)));
+      }
+      Assert.assertEquals(0, tree.numKeys());
+      Assert.assertEquals(16, tree.getIndexCapacity());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception HASH 001: " + e.getMessage());
+    }
+  }
+}
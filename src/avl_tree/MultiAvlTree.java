@@ -0,0 +1,276 @@
+package avl_tree;
+
+import exception.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * AVL tree in multimap mode: inserting a key that is already present adds one
+ * more occurrence instead of throwing DuplicateKeyException. Occurrences are
+ * stored inline in the node of their key, the first value in the node itself
+ * and the others in a compact array that grows with them, so there is no
+ * wrapper object per key. With null values the tree is a multiset.
+ *
+ * numKeys counts distinct keys and numOccurrences counts every occurrence.
+ * An attached change stream receives one event per occurrence: INSERT adds an
+ * occurrence, REMOVE removes the most recent occurrence and UPDATE replaces
+ * the value of a key left with a single occurrence.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class MultiAvlTree<K extends Comparable<K>, V> extends AvlTree<K, V> {
+  /**
+   * Node of a key with all its occurrences.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  static class MultiNode<K, V> extends Node<K, V> {
+    Object[] others; // Values of occurrences 2 to count, null if none.
+    int count; // Number of occurrences of the key.
+
+    MultiNode(K key, V value) {
+      super(key, value);
+      this.count = 1;
+    }
+
+    /**
+     * @param index occurrence, 0 for the first one.
+     * @return value of the occurrence.
+     */
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+      return index == 0 ? this.value : (V) this.others[index - 1];
+    }
+  }
+
+  private int numOccurrences; // Number of occurrences of all keys.
+
+  /**
+   * Constructor of an empty multimap.
+   */
+  public MultiAvlTree() {
+    super();
+    this.numOccurrences = 0;
+  }
+
+  /**
+   * Add one occurrence of the key-value pair. Never throws
+   * DuplicateKeyException.
+   *
+   * @param key   A key to insert.
+   * @param value A value to insert.
+   */
+  @Override
+  public void insert(K key, V value)
+      throws IllegalNullArgumentException, DuplicateKeyException {
+    checkPublisher();
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    MultiNode<K, V> node = (MultiNode<K, V>) findNode(key);
+    if (node == null) {
+      super.insert(key, value);
+      return;
+    }
+    TreeOperationEvent event = beginOperation(); // New keys record in super.
+    try {
+      if (node.others == null)
+        node.others = new Object[2];
+      else if (node.count - 1 == node.others.length) // Grow by half.
+        node.others = Arrays.copyOf(node.others,
+            node.others.length + (node.others.length >> 1) + 1);
+      node.others[node.count - 1] = value;
+      node.count++;
+      this.numOccurrences++;
+      refreshHash(key);
+      publishChange(ChangeEvent.Type.INSERT, key, value);
+    } finally {
+      endOperation(event, TreeMetrics.Operation.INSERT);
+    }
+  }
+
+  /**
+   * Replace every occurrence of key by a single occurrence of value.
+   *
+   * @param key   A key to insert or update.
+   * @param value A value to associate with key.
+   * @return the value of the first occurrence, or null if key was not present.
+   */
+  @Override
+  public V put(K key, V value) throws IllegalNullArgumentException {
+    checkPublisher();
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    MultiNode<K, V> node = (MultiNode<K, V>) findNode(key);
+    if (node != null) {
+      for (int i = node.count - 1; i > 0; i--) // Most recent first.
+        publishChange(ChangeEvent.Type.REMOVE, key, node.valueAt(i));
+      this.numOccurrences -= node.count - 1;
+      node.count = 1;
+      node.others = null;
+    }
+    return super.put(key, value);
+  }
+
+  /**
+   * Returns the number of occurrences of key.
+   *
+   * @param key A key to count.
+   * @return the number of occurrences, 0 if key is not present.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   */
+  public int count(K key) throws IllegalNullArgumentException {
+    TreeOperationEvent event = beginOperation();
+    try {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      MultiNode<K, V> node = (MultiNode<K, V>) lookup(key);
+      return node == null ? 0 : node.count;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.CONTAINS);
+    }
+  }
+
+  /**
+   * Returns the values of every occurrence of key, in insertion order.
+   *
+   * @param key A key to look up.
+   * @return the values of key, empty if key is not present.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   */
+  public List<V> getAll(K key) throws IllegalNullArgumentException {
+    TreeOperationEvent event = beginOperation();
+    try {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      MultiNode<K, V> node = (MultiNode<K, V>) lookup(key);
+      if (node == null)
+        return new ArrayList<V>(0);
+      List<V> values = new ArrayList<V>(node.count);
+      for (int i = 0; i < node.count; i++)
+        values.add(node.valueAt(i));
+      return values;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.GET);
+    }
+  }
+
+  /**
+   * Remove the most recently inserted occurrence of key. The key itself is
+   * removed with its last occurrence.
+   *
+   * @param key A key to remove one occurrence of.
+   * @return the value of the removed occurrence.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not present.
+   */
+  public V removeOne(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    checkPublisher();
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    MultiNode<K, V> node = (MultiNode<K, V>) findNode(key);
+    if (node == null)
+      throw new KeyNotFoundException();
+    if (node.count == 1) {
+      V value = node.value;
+      super.remove(key);
+      return value;
+    }
+    TreeOperationEvent event = beginOperation(); // Last ones record in super.
+    try {
+      V value = node.valueAt(node.count - 1);
+      node.others[node.count - 2] = null; // Drop the reference.
+      node.count--;
+      if (node.count == 1)
+        node.others = null;
+      this.numOccurrences--;
+      refreshHash(key);
+      publishChange(ChangeEvent.Type.REMOVE, key, value);
+      return value;
+    } finally {
+      endOperation(event, TreeMetrics.Operation.REMOVE);
+    }
+  }
+
+  /**
+   * Returns the number of occurrences of all keys.
+   *
+   * @return the number of occurrences in the data structure.
+   */
+  public int numOccurrences() {
+    return this.numOccurrences;
+  }
+
+  /**
+   * Construct the node of a new key with its first occurrence.
+   *
+   * @param key   key of node.
+   * @param value value of node.
+   * @return the new node.
+   */
+  @Override
+  Node<K, V> createNode(K key, V value) {
+    this.numOccurrences++;
+    return new MultiNode<K, V>(key, value);
+  }
+
+  /**
+   * Drop the occurrences of a removed key.
+   *
+   * @param node the removed node.
+   */
+  @Override
+  void nodeRemoved(Node<K, V> node) {
+    super.nodeRemoved(node);
+    this.numOccurrences -= ((MultiNode<K, V>) node).count;
+  }
+
+  /**
+   * Hash code of every occurrence of a key in order, like the hash code of
+   * the list of its values, so digests see the occurrences.
+   *
+   * @param node node of the entry.
+   * @return hash code of the values.
+   */
+  @Override
+  int valueHash(Node<K, V> node) {
+    MultiNode<K, V> multi = (MultiNode<K, V>) node;
+    int hash = Objects.hashCode(node.value);
+    for (int i = 1; i < multi.count; i++)
+      hash = 31 * hash + Objects.hashCode(multi.valueAt(i));
+    return hash;
+  }
+
+  /**
+   * Publish the removal of every occurrence of a removed key, most recent
+   * first.
+   *
+   * @param node the removed node.
+   */
+  @Override
+  void publishRemoved(Node<K, V> node) {
+    MultiNode<K, V> multi = (MultiNode<K, V>) node;
+    for (int i = multi.count - 1; i >= 0; i--)
+      publishChange(ChangeEvent.Type.REMOVE, node.key, multi.valueAt(i));
+  }
+
+  /**
+   * Nodes cannot move to another tree without their occurrence counts.
+   *
+   * @throws UnsupportedOperationException always.
+   */
+  @Override
+  void ensurePlainTree() {
+    throw new UnsupportedOperationException("split and concat of a multimap");
+  }
+}
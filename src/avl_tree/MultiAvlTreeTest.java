@@ -0,0 +1,121 @@
+package avl_tree;
+
+import static org.junit.Assert.fail;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+class MultiAvlTreeTest {
+  /**
+   * Insert repeated keys, then count, list and remove their occurrences.
+   */
+  @Test
+  void testMULTI_001_duplicate_keys_are_counted() {
+    try {
+      MultiAvlTree<Integer, String> tree = new MultiAvlTree<Integer, String>();
+      tree.insert(20, "a");
+      tree.insert(10, "b");
+      tree.insert(20, "c");
+      tree.insert(20, "d");
+      tree.insert(20, "e");
+      Assert.assertEquals(2, tree.numKeys());
+      Assert.assertEquals(5, tree.numOccurrences());
+      Assert.assertEquals(4, tree.count(20));
+      Assert.assertEquals(0, tree.count(30));
+      Assert.assertEquals(List.of("a", "c", "d", "e"), tree.getAll(20));
+      Assert.assertEquals(List.of(), tree.getAll(30));
+      Assert.assertEquals("a", tree.get(20));
+      Assert.assertEquals(List.of(10, 20), tree.getInOrderTraversal());
+
+      Assert.assertEquals("e", tree.removeOne(20));
+      Assert.assertEquals(List.of("a", "c", "d"), tree.getAll(20));
+      Assert.assertEquals("b", tree.removeOne(10));
+      Assert.assertEquals(false, tree.contains(10));
+      Assert.assertEquals(1, tree.numKeys());
+      Assert.assertEquals(3, tree.numOccurrences());
+
+      Assert.assertEquals("a", tree.put(20, "f"));
+      Assert.assertEquals(List.of("f"), tree.getAll(20));
+      tree.insert(20, "g");
+      Assert.assertEquals(true, tree.remove(20)); // All occurrences.
+      Assert.assertEquals(0, tree.numKeys());
+      Assert.assertEquals(0, tree.numOccurrences());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception MULTI 001: " + e.getMessage());
+    }
+    try {
+      new MultiAvlTree<Integer, String>().removeOne(10);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+  }
+
+  /**
+   * Digests and diff see every occurrence of a key, not only the first.
+   */
+  @Test
+  void testMULTI_002_digests_count_occurrences() {
+    try {
+      MultiAvlTree<Integer, String> tree = new MultiAvlTree<Integer, String>();
+      MultiAvlTree<Integer, String> other = new MultiAvlTree<Integer, String>();
+      tree.setHashing(true);
+      other.setHashing(true);
+      for (int i = 0; i < 10; i++) {
+        tree.insert(i, "a");
+        other.insert(i, "a");
+      }
+      tree.insert(1, "b");
+      Assert.assertEquals(true, tree.digest() != other.digest());
+      Assert.assertEquals(List.of(1), tree.diff(other));
+      other.insert(1, "b");
+      Assert.assertEquals(tree.digest(), other.digest());
+      Assert.assertEquals(List.of(), tree.diff(other));
+      tree.removeOne(1);
+      Assert.assertEquals(List.of(1), tree.diff(other));
+      other.put(1, "a"); // Drops the second occurrence.
+      Assert.assertEquals(tree.digest(), other.digest());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception MULTI 002: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Occurrence inserts and removes are recorded in the metrics, and count and
+   * getAll go through the filter.
+   */
+  @Test
+  void testMULTI_003_occurrences_are_instrumented() {
+    try {
+      MultiAvlTree<Integer, String> tree = new MultiAvlTree<Integer, String>();
+      TreeMetrics metrics = new TreeMetrics();
+      tree.setMetrics(metrics);
+      for (int i = 0; i < 30; i++)
+        tree.insert(2 * (i % 10), "v" + i); // Three occurrences of 10 keys.
+      Assert.assertEquals("v29", tree.removeOne(18));
+      tree.setFilter(10);
+      for (int key = 0; key < 20; key += 2) {
+        Assert.assertEquals(key == 18 ? 2 : 3, tree.count(key));
+        Assert.assertEquals(0, tree.count(key + 1));
+        Assert.assertEquals(List.of(), tree.getAll(key + 1));
+      }
+      Assert.assertEquals(List.of("v0", "v10", "v20"), tree.getAll(0));
+      TreeMetrics.Snapshot snapshot = metrics.snapshot();
+      Assert.assertEquals(30,
+          snapshot.getOperations(TreeMetrics.Operation.INSERT));
+      Assert.assertEquals(1,
+          snapshot.getOperations(TreeMetrics.Operation.REMOVE));
+      Assert.assertEquals(20,
+          snapshot.getOperations(TreeMetrics.Operation.CONTAINS));
+      Assert.assertEquals(11,
+          snapshot.getOperations(TreeMetrics.Operation.GET));
+      BlockedBloomFilter filter = tree.getFilter();
+      Assert.assertEquals(20, filter.getNegatives()
+          + filter.getFalsePositives());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception MULTI 003: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package avl_tree;
+
+import exception.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Static two-dimensional range tree for orthogonal range counting and
+ * reporting over points (x, y) with a value. The primary structure is the
+ * perfectly balanced search tree on x that AvlTree.buildSorted makes, kept
+ * implicitly: a node covers a run of points in x order and its children cover
+ * the two halves of that run. Each node holds its points sorted by y.
+ *
+ * The secondary structures are laid out by level, as one array per level,
+ * and are linked by fractional cascading: for each position of a node in y
+ * order, the number of its points before that position that belong to its
+ * left child. The y bounds of a query are searched once, at the root, and are
+ * carried down to each child in O(1). Counting takes O(log n), reporting
+ * O(log n + k) for k points, and building O(n log n) time and space.
+ *
+ * The tree is built once from a point set. Updates would invalidate the
+ * secondary structures of every node above a point, so a changed point set is
+ * rebuilt.
+ *
+ * @param <X> is the generic type of the first coordinate.
+ * @param <Y> is the generic type of the second coordinate.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class RangeTree2D<X extends Comparable<X>, Y extends Comparable<Y>, V> {
+  private final X[] xs; // First coordinates, sorted.
+  private final Y[] ys; // Second coordinates, in x order.
+  private final V[] values; // Values, in x order.
+  private final int[][] order; // Points of each node sorted by y, by level.
+  private final int[][] lefts; // Points going left before each position.
+
+  /**
+   * Build the range tree of a point set. Points may share coordinates.
+   *
+   * @param xs     first coordinate of each point.
+   * @param ys     second coordinate of each point.
+   * @param values value of each point.
+   *
+   * @throws IllegalNullArgumentException if a list or a coordinate is null.
+   * @throws IllegalArgumentException     if the lists have different sizes.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public RangeTree2D(List<X> xs, List<Y> ys, List<V> values)
+      throws IllegalNullArgumentException {
+    if (xs == null || ys == null || values == null)
+      throw new IllegalNullArgumentException();
+    int n = xs.size();
+    if (ys.size() != n || values.size() != n)
+      throw new IllegalArgumentException("lists of different sizes");
+    Integer[] byX = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      if (xs.get(i) == null || ys.get(i) == null)
+        throw new IllegalNullArgumentException();
+      byX[i] = i;
+    }
+    Arrays.sort(byX, (a, b) -> xs.get(a).compareTo(xs.get(b)));
+    this.xs = (X[]) new Comparable[n];
+    this.ys = (Y[]) new Comparable[n];
+    this.values = (V[]) new Object[n];
+    for (int i = 0; i < n; i++) {
+      this.xs[i] = xs.get(byX[i]);
+      this.ys[i] = ys.get(byX[i]);
+      this.values[i] = values.get(byX[i]);
+    }
+
+    int levels = 1;
+    while ((1 << (levels - 1)) < n) // Runs halve down to single points.
+      levels++;
+    this.order = new int[levels][];
+    this.lefts = new int[levels][];
+    Integer[] byY = new Integer[n];
+    for (int i = 0; i < n; i++)
+      byY[i] = i;
+    Arrays.sort(byY, (a, b) -> this.ys[a].compareTo(this.ys[b]));
+    this.order[0] = new int[n];
+    for (int i = 0; i < n; i++)
+      this.order[0][i] = byY[i];
+    for (int level = 0; level < levels; level++) {
+      this.lefts[level] = new int[n];
+      if (level + 1 < levels)
+        this.order[level + 1] = new int[n];
+    }
+    build(0, 0, n);
+  }
+
+  /**
+   * Split the y order of a node, which is known, into the y orders of its
+   * children, keeping them sorted, and record the cascading counts.
+   *
+   * @param level level of the node.
+   * @param lo    first point of the node, in x order.
+   * @param hi    point after the node, in x order.
+   */
+  private void build(int level, int lo, int hi) {
+    if (hi - lo < 2)
+      return;
+    int middle = (lo + hi) >>> 1;
+    int[] parent = this.order[level];
+    int[] children = this.order[level + 1];
+    int[] lefts = this.lefts[level];
+    int left = lo;
+    int right = middle;
+    for (int i = lo; i < hi; i++) {
+      lefts[i] = left - lo;
+      if (parent[i] < middle)
+        children[left++] = parent[i];
+      else
+        children[right++] = parent[i];
+    }
+    build(level + 1, lo, middle);
+    build(level + 1, middle, hi);
+  }
+
+  /**
+   * Returns the number of points of the tree.
+   *
+   * @return the number of points.
+   */
+  public int numPoints() {
+    return this.xs.length;
+  }
+
+  /**
+   * Returns the number of points with xLo <= x <= xHi and yLo <= y <= yHi, in
+   * O(log n).
+   *
+   * @param xLo smallest first coordinate.
+   * @param xHi largest first coordinate.
+   * @param yLo smallest second coordinate.
+   * @param yHi largest second coordinate.
+   * @return the number of points in the rectangle.
+   *
+   * @throws IllegalNullArgumentException if a bound is null.
+   */
+  public int count(X xLo, X xHi, Y yLo, Y yHi)
+      throws IllegalNullArgumentException {
+    return query(xLo, xHi, yLo, yHi, null);
+  }
+
+  /**
+   * Returns the values of the points with xLo <= x <= xHi and yLo <= y <= yHi,
+   * in O(log n + k). Points of one node of the primary tree come in y order.
+   *
+   * @param xLo smallest first coordinate.
+   * @param xHi largest first coordinate.
+   * @param yLo smallest second coordinate.
+   * @param yHi largest second coordinate.
+   * @return the values of the points in the rectangle.
+   *
+   * @throws IllegalNullArgumentException if a bound is null.
+   */
+  public List<V> report(X xLo, X xHi, Y yLo, Y yHi)
+      throws IllegalNullArgumentException {
+    List<V> found = new ArrayList<V>();
+    query(xLo, xHi, yLo, yHi, found);
+    return found;
+  }
+
+  /**
+   * Find the rectangle: its x bounds as a run of points, its y bounds as
+   * positions in the y order of the root.
+   *
+   * @return the number of points in the rectangle.
+   */
+  private int query(X xLo, X xHi, Y yLo, Y yHi, List<V> found)
+      throws IllegalNullArgumentException {
+    if (xLo == null || xHi == null || yLo == null || yHi == null)
+      throw new IllegalNullArgumentException();
+    int from = firstRightOf(xLo, false);
+    int to = firstRightOf(xHi, true);
+    if (from >= to)
+      return 0;
+    return queryHelper(0, 0, this.xs.length, firstAbove(yLo, false),
+        firstAbove(yHi, true), from, to, found);
+  }
+
+  /**
+   * @param x         a first coordinate.
+   * @param inclusive true to skip the points with a first coordinate equal to
+   *                  x.
+   * @return the first point, in x order, to the right of x.
+   */
+  private int firstRightOf(X x, boolean inclusive) {
+    int lo = 0;
+    int hi = this.xs.length;
+    while (lo < hi) {
+      int middle = (lo + hi) >>> 1;
+      int compare = this.xs[middle].compareTo(x);
+      if (compare < 0 || (inclusive && compare == 0))
+        lo = middle + 1;
+      else
+        hi = middle;
+    }
+    return lo;
+  }
+
+  /**
+   * @param y         a second coordinate.
+   * @param inclusive true to skip the points with a second coordinate equal
+   *                  to y.
+   * @return position in the y order of the root of the first point above y.
+   */
+  private int firstAbove(Y y, boolean inclusive) {
+    int[] root = this.order[0];
+    int lo = 0;
+    int hi = root.length;
+    while (lo < hi) {
+      int middle = (lo + hi) >>> 1;
+      int compare = this.ys[root[middle]].compareTo(y);
+      if (compare < 0 || (inclusive && compare == 0))
+        lo = middle + 1;
+      else
+        hi = middle;
+    }
+    return lo;
+  }
+
+  /**
+   * Query helper method, for a node whose points in the y range are at
+   * positions [a, b) of its y order.
+   *
+   * @param level level of the node.
+   * @param lo    first point of the node, in x order.
+   * @param hi    point after the node, in x order.
+   * @param a     first position in the y range.
+   * @param b     position after the y range.
+   * @param from  first point in the x range.
+   * @param to    point after the x range.
+   * @param found list of values to append to, or null to only count.
+   * @return the number of points of the node in the rectangle.
+   */
+  private int queryHelper(int level, int lo, int hi, int a, int b, int from,
+      int to, List<V> found) {
+    if (a >= b || hi <= from || to <= lo)
+      return 0;
+    if (from <= lo && hi <= to) { // Canonical node, inside the x range.
+      if (found != null)
+        for (int i = a; i < b; i++)
+          found.add(this.values[this.order[level][i]]);
+      return b - a;
+    }
+    int middle = (lo + hi) >>> 1;
+    int[] lefts = this.lefts[level];
+    int leftA = a < hi ? lefts[a] : middle - lo; // Cascade the positions.
+    int leftB = b < hi ? lefts[b] : middle - lo;
+    return queryHelper(level + 1, lo, middle, lo + leftA, lo + leftB, from, to,
+        found)
+        + queryHelper(level + 1, middle, hi, middle + a - lo - leftA,
+            middle + b - lo - leftB, from, to, found);
+  }
+}
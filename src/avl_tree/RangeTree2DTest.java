@@ -0,0 +1,88 @@
+package avl_tree;
+
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+class RangeTree2DTest {
+  /**
+   * Compare counts and reports with a scan of all points, on points with many
+   * equal coordinates.
+   */
+  @Test
+  void testRANGE_001_matches_scan() {
+    try {
+      Random random = new Random(5);
+      List<Integer> xs = new ArrayList<Integer>();
+      List<Integer> ys = new ArrayList<Integer>();
+      List<Integer> ids = new ArrayList<Integer>();
+      for (int i = 0; i < 3000; i++) {
+        xs.add(random.nextInt(500));
+        ys.add(random.nextInt(500));
+        ids.add(i);
+      }
+      RangeTree2D<Integer, Integer, Integer> tree =
+          new RangeTree2D<Integer, Integer, Integer>(xs, ys, ids);
+      Assert.assertEquals(3000, tree.numPoints());
+      for (int q = 0; q < 300; q++) {
+        int xLo = random.nextInt(520) - 10;
+        int xHi = xLo + random.nextInt(200) - 10;
+        int yLo = random.nextInt(520) - 10;
+        int yHi = yLo + random.nextInt(200) - 10;
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < xs.size(); i++)
+          if (xLo <= xs.get(i) && xs.get(i) <= xHi && yLo <= ys.get(i)
+              && ys.get(i) <= yHi)
+            expected.add(i);
+        List<Integer> actual = tree.report(xLo, xHi, yLo, yHi);
+        Collections.sort(actual);
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(expected.size(), tree.count(xLo, xHi, yLo, yHi));
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RANGE 001: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Query trees of zero, one and two points, and check the argument errors.
+   */
+  @Test
+  void testRANGE_002_small_trees() {
+    try {
+      List<String> none = new ArrayList<String>();
+      RangeTree2D<String, String, String> empty =
+          new RangeTree2D<String, String, String>(none, none, none);
+      Assert.assertEquals(0, empty.count("a", "z", "a", "z"));
+      RangeTree2D<String, String, String> one =
+          new RangeTree2D<String, String, String>(List.of("m"), List.of("n"),
+              List.of("mn"));
+      Assert.assertEquals(List.of("mn"), one.report("m", "m", "n", "n"));
+      Assert.assertEquals(0, one.count("a", "l", "a", "z"));
+      RangeTree2D<Integer, Integer, String> two =
+          new RangeTree2D<Integer, Integer, String>(List.of(2, 1),
+              List.of(1, 2), List.of("b", "a"));
+      Assert.assertEquals(List.of("b", "a"), two.report(0, 3, 0, 3));
+      Assert.assertEquals(List.of("a"), two.report(0, 1, 0, 3));
+      try {
+        two.count(null, 1, 0, 3);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+      try {
+        new RangeTree2D<Integer, Integer, String>(List.of(1), List.of(1, 2),
+            List.of("a"));
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (IllegalArgumentException e) {
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RANGE 002: " + e.getMessage());
+    }
+  }
+}
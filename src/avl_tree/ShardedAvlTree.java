@@ -0,0 +1,470 @@
+package avl_tree;
+
+import exception.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe ordered map that splits the key space into ranges, each backed
+ * by its own AvlTree behind its own lock, so that writers to different ranges
+ * never wait for each other.
+ *
+ * The ranges are kept in an immutable layout that is replaced as a whole. A
+ * shard that grows past its neighbours is re-balanced online: the two shards
+ * are locked, concatenated and split again at their median key, each in
+ * O(log n), and published in a new layout, while operations on every other
+ * shard go on. Operations that locked a replaced shard notice it and retry on
+ * the new layout.
+ *
+ * Iteration and getInOrderTraversal go through the shards in key order, so
+ * their results are sorted. They are weakly consistent: each shard is read
+ * atomically, but writes to other shards may happen in between.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class ShardedAvlTree<K extends Comparable<K>, V> implements Iterable<K> {
+  // A shard is never split or re-balanced while it has fewer keys than this.
+  private static final int MIN_SHARD_SIZE = 256;
+
+  /**
+   * Range of keys backed by one tree.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  private static class Shard<K extends Comparable<K>, V> {
+    final AvlTree<K, V> tree; // Keys of the range, guarded by lock.
+    final ReentrantLock lock; // Lock of the range.
+    boolean retired; // True once replaced by a re-balance, guarded by lock.
+    volatile int size; // Number of keys, read without lock by re-balancing.
+
+    Shard(AvlTree<K, V> tree) {
+      this.tree = tree;
+      this.lock = new ReentrantLock();
+      this.retired = false;
+      this.size = tree.numKeys();
+    }
+  }
+
+  /**
+   * Immutable split of the key space into shards.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  private static class Layout<K extends Comparable<K>, V> {
+    final K[] bounds; // bounds[i] is the smallest key of shards[i + 1].
+    final Shard<K, V>[] shards; // Shards in key order.
+
+    Layout(K[] bounds, Shard<K, V>[] shards) {
+      this.bounds = bounds;
+      this.shards = shards;
+    }
+
+    /**
+     * @param key key to locate.
+     * @return index of the shard whose range contains key.
+     */
+    int indexOf(K key) {
+      int low = 0;
+      int high = this.bounds.length;
+      while (low < high) { // Count the bounds smaller or equal to key.
+        int middle = (low + high) >>> 1;
+        if (key.compareTo(this.bounds[middle]) < 0)
+          high = middle;
+        else
+          low = middle + 1;
+      }
+      return low;
+    }
+  }
+
+  private final int maxShards; // Number of shards to split the key space in.
+  private final ReentrantLock rebalanceLock; // One re-balance at a time.
+  private final AtomicInteger numKeys; // Number of keys of all shards.
+  private volatile Layout<K, V> layout; // Current split of the key space.
+
+  /**
+   * Constructor of an empty tree that starts with a single shard and splits it
+   * at the median key as it grows, until there are numShards shards.
+   *
+   * @param numShards number of shards, usually the number of writer threads.
+   */
+  public ShardedAvlTree(int numShards) {
+    if (numShards < 1)
+      throw new IllegalArgumentException("numShards must be positive");
+    this.maxShards = numShards;
+    this.rebalanceLock = new ReentrantLock();
+    this.numKeys = new AtomicInteger();
+    this.layout = new Layout<K, V>(newKeys(0), newShards(1));
+    this.layout.shards[0] = new Shard<K, V>(new AvlTree<K, V>());
+  }
+
+  /**
+   * Constructor of an empty tree with one shard per range between split keys,
+   * for a key distribution known in advance. The ranges still move when
+   * shards become skewed.
+   *
+   * @param splitKeys smallest keys of the second to last shards, increasing.
+   *
+   * @throws IllegalNullArgumentException if splitKeys or a split key is null.
+   */
+  public ShardedAvlTree(K[] splitKeys) throws IllegalNullArgumentException {
+    if (splitKeys == null)
+      throw new IllegalNullArgumentException();
+    for (int i = 0; i < splitKeys.length; i++) {
+      if (splitKeys[i] == null)
+        throw new IllegalNullArgumentException();
+      if (i > 0 && splitKeys[i - 1].compareTo(splitKeys[i]) >= 0)
+        throw new IllegalArgumentException("splitKeys must be increasing");
+    }
+    this.maxShards = splitKeys.length + 1;
+    this.rebalanceLock = new ReentrantLock();
+    this.numKeys = new AtomicInteger();
+    Shard<K, V>[] shards = newShards(this.maxShards);
+    for (int i = 0; i < shards.length; i++)
+      shards[i] = new Shard<K, V>(new AvlTree<K, V>());
+    this.layout = new Layout<K, V>(splitKeys.clone(), shards);
+  }
+
+  /**
+   * Add the key-value pair to the shard of key.
+   *
+   * @param key   A key to insert.
+   * @param value A value to insert.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws DuplicateKeyException        if key is already in the tree.
+   */
+  public void insert(K key, V value)
+      throws IllegalNullArgumentException, DuplicateKeyException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Shard<K, V> shard = lockShard(key);
+    try {
+      shard.tree.insert(key, value);
+      shard.size = shard.tree.numKeys();
+    } finally {
+      shard.lock.unlock();
+    }
+    this.numKeys.incrementAndGet();
+    rebalance(shard);
+  }
+
+  /**
+   * Associate value with key: replace the value if key is already in the tree,
+   * otherwise insert the key-value pair.
+   *
+   * @param key   A key to insert or update.
+   * @param value A value to associate with key.
+   * @return the previous value of key, or null if key was not present.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   */
+  public V put(K key, V value) throws IllegalNullArgumentException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Shard<K, V> shard = lockShard(key);
+    int added;
+    V previous;
+    try {
+      previous = shard.tree.put(key, value);
+      added = shard.tree.numKeys() - shard.size;
+      shard.size = shard.tree.numKeys();
+    } finally {
+      shard.lock.unlock();
+    }
+    if (added > 0) {
+      this.numKeys.incrementAndGet();
+      rebalance(shard);
+    }
+    return previous;
+  }
+
+  /**
+   * Remove key from its shard.
+   *
+   * @param key A key to remove.
+   * @return true always, indicating node removed successfully.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not in the tree.
+   */
+  public boolean remove(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Shard<K, V> shard = lockShard(key);
+    try {
+      shard.tree.remove(key);
+      shard.size = shard.tree.numKeys();
+    } finally {
+      shard.lock.unlock();
+    }
+    this.numKeys.decrementAndGet();
+    return true;
+  }
+
+  /**
+   * Returns the value associated with key.
+   *
+   * @param key A key to get the value associated with it.
+   * @return the value associated with key.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not in the tree.
+   */
+  public V get(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Shard<K, V> shard = lockShard(key);
+    try {
+      return shard.tree.get(key);
+    } finally {
+      shard.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns true if key is in the tree.
+   *
+   * @param key A key to look for.
+   * @return true if key is found, false otherwise.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   */
+  public boolean contains(K key) throws IllegalNullArgumentException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Shard<K, V> shard = lockShard(key);
+    try {
+      return shard.tree.contains(key);
+    } finally {
+      shard.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of keys of all shards.
+   *
+   * @return the number of key-value pairs in the tree.
+   */
+  public int numKeys() {
+    return this.numKeys.get();
+  }
+
+  /**
+   * Returns the current number of shards.
+   *
+   * @return the number of shards.
+   */
+  public int numShards() {
+    return this.layout.shards.length;
+  }
+
+  /**
+   * Returns the keys of all shards in sorted order.
+   *
+   * @return List of Keys in-order, empty if the tree is empty.
+   */
+  public List<K> getInOrderTraversal() {
+    List<K> keys = new ArrayList<K>(numKeys());
+    for (K key : this)
+      keys.add(key);
+    return keys;
+  }
+
+  /**
+   * Returns an iterator over the keys in increasing order. It copies one shard
+   * at a time, resuming after the last returned key when the shards have been
+   * re-balanced in between.
+   *
+   * @return iterator over the keys.
+   */
+  @Override
+  public Iterator<K> iterator() {
+    return new Iterator<K>() {
+      private Layout<K, V> layout = ShardedAvlTree.this.layout;
+      private int next = 0; // Index of the next shard to copy.
+      private K last = null; // Last returned key, null before the first.
+      private Iterator<K> chunk = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!this.chunk.hasNext()) {
+          if (this.next == this.layout.shards.length)
+            return false;
+          this.chunk = copyNext();
+        }
+        return true;
+      }
+
+      @Override
+      public K next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        this.last = this.chunk.next();
+        return this.last;
+      }
+
+      /**
+       * @return keys of the next shard greater than the last returned key.
+       */
+      private Iterator<K> copyNext() {
+        Shard<K, V> shard = this.layout.shards[this.next];
+        List<K> keys;
+        shard.lock.lock();
+        try {
+          if (shard.retired) { // Find where to resume in the new layout.
+            this.layout = ShardedAvlTree.this.layout;
+            this.next = this.last == null ? 0 : this.layout.indexOf(this.last);
+            return Collections.emptyIterator();
+          }
+          keys = shard.tree.getInOrderTraversal();
+        } finally {
+          shard.lock.unlock();
+        }
+        this.next++;
+        int from = 0; // Skip the keys already returned before a re-balance.
+        while (this.last != null && from < keys.size()
+            && keys.get(from).compareTo(this.last) <= 0)
+          from++;
+        return keys.subList(from, keys.size()).iterator();
+      }
+    };
+  }
+
+  /**
+   * Lock the shard whose range contains key, retrying on the new layout if the
+   * shard has been replaced meanwhile.
+   *
+   * @param key key to locate, not null.
+   * @return the locked shard, to be unlocked by the caller.
+   */
+  private Shard<K, V> lockShard(K key) {
+    while (true) {
+      Layout<K, V> current = this.layout;
+      Shard<K, V> shard = current.shards[current.indexOf(key)];
+      shard.lock.lock();
+      if (!shard.retired)
+        return shard;
+      shard.lock.unlock(); // Replaced by a re-balance, read the new layout.
+    }
+  }
+
+  /**
+   * Split a shard that has grown past MIN_SHARD_SIZE while there are fewer
+   * than maxShards shards, or share its keys with its smaller neighbour when
+   * it has more than twice as many. Skipped if another thread is already
+   * re-balancing, since it will look at the sizes again later.
+   *
+   * @param shard shard that has just grown.
+   */
+  private void rebalance(Shard<K, V> shard) {
+    int size = shard.size;
+    if (size < MIN_SHARD_SIZE || !this.rebalanceLock.tryLock())
+      return;
+    try {
+      Layout<K, V> current = this.layout;
+      int index = Arrays.asList(current.shards).indexOf(shard);
+      if (index < 0) // Already replaced.
+        return;
+      if (current.shards.length < this.maxShards) {
+        replace(current, index, index + 1, 2);
+        return;
+      }
+      int neighbour = index - 1; // Pick the smaller neighbour.
+      if (index == 0 || (index + 1 < current.shards.length
+          && current.shards[index + 1].size < current.shards[index - 1].size))
+        neighbour = index + 1;
+      if (neighbour < current.shards.length
+          && size > 2 * current.shards[neighbour].size + MIN_SHARD_SIZE)
+        replace(current, Math.min(index, neighbour),
+            Math.max(index, neighbour) + 1, 2);
+    } finally {
+      this.rebalanceLock.unlock();
+    }
+  }
+
+  /**
+   * Replace consecutive shards by count shards with the same number of keys,
+   * moving the nodes with AvlTree.concat and AvlTree.split, and publish the
+   * new layout. Called with rebalanceLock held, it locks the
+   * replaced shards in key order so it cannot deadlock with another thread,
+   * which never holds more than one shard lock.
+   *
+   * @param current layout to replace.
+   * @param from    index of the first shard to replace, inclusive.
+   * @param to      index of the last shard to replace, exclusive.
+   * @param count   number of new shards.
+   */
+  private void replace(Layout<K, V> current, int from, int to, int count) {
+    for (int i = from; i < to; i++)
+      current.shards[i].lock.lock();
+    try {
+      int size = 0;
+      for (int i = from; i < to; i++)
+        size += current.shards[i].tree.numKeys();
+      if (size < count) // Nothing worth splitting.
+        return;
+
+      int numShards = current.shards.length - (to - from) + count;
+      Shard<K, V>[] shards = newShards(numShards);
+      K[] bounds = newKeys(numShards - 1);
+      System.arraycopy(current.shards, 0, shards, 0, from);
+      System.arraycopy(current.bounds, 0, bounds, 0, from);
+      AvlTree<K, V> merged = new AvlTree<K, V>();
+      for (int i = from; i < to; i++)
+        AvlTree.concat(merged, current.shards[i].tree);
+      for (int i = count - 1; i > 0; i--) { // Cut equal slices from the top.
+        K bound = merged.selectKey((int) ((long) size * i / count));
+        shards[from + i] = new Shard<K, V>(merged.split(bound));
+        bounds[from + i - 1] = bound;
+      }
+      shards[from] = new Shard<K, V>(merged);
+      System.arraycopy(current.shards, to, shards, from + count,
+          current.shards.length - to);
+      // The bounds after the replaced range have not moved either.
+      System.arraycopy(current.bounds, to - 1, bounds, from + count - 1,
+          current.shards.length - to);
+      this.layout = new Layout<K, V>(bounds, shards);
+      for (int i = from; i < to; i++)
+        current.shards[i].retired = true;
+    } catch (IllegalNullArgumentException e) { // Keys are never null here.
+      throw new IllegalStateException(e);
+    } finally {
+      for (int i = from; i < to; i++)
+        current.shards[i].lock.unlock();
+    }
+  }
+
+  /**
+   * @param length number of keys.
+   * @return an empty array of keys.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private K[] newKeys(int length) {
+    return (K[]) new Comparable[length];
+  }
+
+  /**
+   * @param length number of shards.
+   * @return an empty array of shards.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Shard<K, V>[] newShards(int length) {
+    return (Shard<K, V>[]) new Shard[length];
+  }
+}
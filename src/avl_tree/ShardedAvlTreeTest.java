@@ -0,0 +1,91 @@
+package avl_tree;
+
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+class ShardedAvlTreeTest {
+  /**
+   * Grow a single shard past the split size with increasing keys, which makes
+   * the last shard the largest, and check the shards stay merged in order.
+   */
+  @Test
+  void testSHARD_001_split_and_rebalance_keep_order() {
+    try {
+      ShardedAvlTree<Integer, Integer> tree =
+          new ShardedAvlTree<Integer, Integer>(4);
+      List<Integer> expected = new ArrayList<Integer>();
+      for (int i = 0; i < 5000; i++) {
+        tree.insert(i, -i);
+        expected.add(i);
+      }
+      Assert.assertEquals(4, tree.numShards());
+      Assert.assertEquals(5000, tree.numKeys());
+      Assert.assertEquals(expected, tree.getInOrderTraversal());
+      for (int i = 0; i < 5000; i++)
+        Assert.assertEquals(Integer.valueOf(-i), tree.get(i));
+      for (int i = 0; i < 5000; i += 2)
+        tree.remove(i);
+      Assert.assertEquals(2500, tree.numKeys());
+      Assert.assertEquals(false, tree.contains(10));
+      Assert.assertEquals(null, tree.put(10, 1));
+      Assert.assertEquals(Integer.valueOf(1), tree.put(10, 2));
+      Assert.assertEquals(2501, tree.numKeys());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception SHARD 001: " + e.getMessage());
+    }
+    try {
+      ShardedAvlTree<Integer, Integer> tree =
+          new ShardedAvlTree<Integer, Integer>(new Integer[] {10, 20});
+      tree.insert(15, 15);
+      tree.insert(15, 15);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+  }
+
+  /**
+   * Insert disjoint key ranges from several threads while shards are split and
+   * re-balanced, then check that no key is lost or duplicated.
+   */
+  @Test
+  void testSHARD_002_concurrent_inserts() {
+    try {
+      ShardedAvlTree<Integer, Integer> tree =
+          new ShardedAvlTree<Integer, Integer>(8);
+      int numThreads = 4;
+      int perThread = 5000;
+      List<Thread> threads = new ArrayList<Thread>();
+      List<Throwable> errors = new ArrayList<Throwable>();
+      for (int t = 0; t < numThreads; t++) {
+        int offset = t;
+        Thread thread = new Thread(() -> {
+          try {
+            for (int i = 0; i < perThread; i++)
+              tree.insert(i * numThreads + offset, i);
+          } catch (Throwable e) {
+            synchronized (errors) {
+              errors.add(e);
+            }
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+      for (Thread thread : threads)
+        thread.join();
+      Assert.assertEquals(new ArrayList<Throwable>(), errors);
+      Assert.assertEquals(numThreads * perThread, tree.numKeys());
+      List<Integer> keys = tree.getInOrderTraversal();
+      Assert.assertEquals(numThreads * perThread, keys.size());
+      for (int i = 0; i < keys.size(); i++)
+        Assert.assertEquals(Integer.valueOf(i), keys.get(i));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception SHARD 002: " + e.getMessage());
+    }
+  }
+}
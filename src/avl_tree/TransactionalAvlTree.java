@@ -0,0 +1,600 @@
+package avl_tree;
+
+import exception.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * AVL tree with multi-key transactions under optimistic concurrency control.
+ * Nodes are immutable: an update copies the nodes on the path of its key and
+ * publishes the new root with a compare-and-set, so every root ever published
+ * is a consistent snapshot that readers use without locks.
+ *
+ * A transaction reads from the snapshot taken when it began, and buffers its
+ * writes. Its commit checks that every key it has read still has the value it
+ * read, applies the writes to the current root and publishes the result; if
+ * another commit got in first, the commit checks and applies again against
+ * the new root. Transactions only conflict when a key they read has really
+ * changed, in which case commit throws TransactionConflictException and the
+ * caller retries the transaction. Committed transactions are serializable.
+ *
+ * The operations of AvlTreeADT each run as a transaction of their own.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class TransactionalAvlTree<K extends Comparable<K>, V>
+    implements AvlTreeADT<K, V> {
+  private static final Object ABSENT = new Object(); // Value of missing keys.
+
+  /**
+   * Immutable node of a snapshot.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  static final class Node<K, V> {
+    final K key; // Key of node.
+    final V value; // Value of node.
+    final Node<K, V> left; // Left child.
+    final Node<K, V> right; // Right child.
+    final int height; // Height of the sub-tree.
+    final int size; // Number of nodes of the sub-tree.
+
+    /**
+     * Constructor of a node, computing its height and size.
+     *
+     * @param key   key of node.
+     * @param value value of node.
+     * @param left  left child.
+     * @param right right child.
+     */
+    Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+      this.key = key;
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      this.height = 1 + Math.max(height(left), height(right));
+      this.size = 1 + size(left) + size(right);
+    }
+  }
+
+  /**
+   * Transaction over the tree, to be used by one thread. Reads see the
+   * snapshot taken by begin and the writes of the transaction itself.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  public static final class Transaction<K extends Comparable<K>, V> {
+    private final TransactionalAvlTree<K, V> tree; // Tree to commit to.
+    private final Node<K, V> snapshot; // Root read by the transaction.
+    private final Map<K, Object> reads; // Value read of each key, or ABSENT.
+    private final TreeMap<K, Object> writes; // New value, or ABSENT.
+    private boolean done; // True once committed or aborted.
+
+    /**
+     * Constructor of a transaction on the current root of a tree.
+     *
+     * @param tree tree of the transaction.
+     */
+    private Transaction(TransactionalAvlTree<K, V> tree) {
+      this.tree = tree;
+      this.snapshot = tree.root.get();
+      this.reads = new HashMap<K, Object>();
+      this.writes = new TreeMap<K, Object>();
+      this.done = false;
+    }
+
+    /**
+     * Read a key as the transaction sees it, and remember what was read.
+     *
+     * @param key a key, not null.
+     * @return value of key, or ABSENT.
+     *
+     * @throws IllegalNullArgumentException if key is null.
+     * @throws IllegalStateException        if the transaction has ended.
+     */
+    private Object read(K key) throws IllegalNullArgumentException {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      if (this.done)
+        throw new IllegalStateException("transaction has ended");
+      if (this.writes.containsKey(key))
+        return this.writes.get(key);
+      Object value = this.reads.get(key);
+      if (value == null) { // First read of key.
+        Node<K, V> node = find(this.snapshot, key);
+        value = node == null ? ABSENT : node.value;
+        this.reads.put(key, value);
+      }
+      return value;
+    }
+
+    /**
+     * Returns the value associated with key.
+     *
+     * @param key A key to get the value associated with it.
+     * @return the value associated with key.
+     *
+     * @throws IllegalNullArgumentException if key is null.
+     * @throws KeyNotFoundException         if key is not found.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key)
+        throws IllegalNullArgumentException, KeyNotFoundException {
+      Object value = read(key);
+      if (value == ABSENT)
+        throw new KeyNotFoundException();
+      return (V) value;
+    }
+
+    /**
+     * Returns true if the key is in the tree.
+     *
+     * @param key A key to check if it exists in the tree.
+     * @return true if key is found, false otherwise.
+     *
+     * @throws IllegalNullArgumentException if key is null.
+     */
+    public boolean contains(K key) throws IllegalNullArgumentException {
+      return read(key) != ABSENT;
+    }
+
+    /**
+     * Add a key that must not be in the tree.
+     *
+     * @param key   A key to insert.
+     * @param value A value to insert.
+     *
+     * @throws IllegalNullArgumentException if key is null.
+     * @throws DuplicateKeyException        if key is already in the tree.
+     */
+    public void insert(K key, V value)
+        throws IllegalNullArgumentException, DuplicateKeyException {
+      if (read(key) != ABSENT)
+        throw new DuplicateKeyException();
+      this.writes.put(key, value);
+    }
+
+    /**
+     * Associate value with key, without reading key: the commit does not
+     * depend on the previous value.
+     *
+     * @param key   A key to insert or update.
+     * @param value A value to associate with key.
+     *
+     * @throws IllegalNullArgumentException if key is null.
+     */
+    public void put(K key, V value) throws IllegalNullArgumentException {
+      if (key == null)
+        throw new IllegalNullArgumentException();
+      if (this.done)
+        throw new IllegalStateException("transaction has ended");
+      this.writes.put(key, value);
+    }
+
+    /**
+     * Remove a key that must be in the tree.
+     *
+     * @param key A key to remove.
+     *
+     * @throws IllegalNullArgumentException if key is null.
+     * @throws KeyNotFoundException         if key is not found.
+     */
+    public void remove(K key)
+        throws IllegalNullArgumentException, KeyNotFoundException {
+      if (read(key) == ABSENT)
+        throw new KeyNotFoundException();
+      this.writes.put(key, ABSENT);
+    }
+
+    /**
+     * Validate the reads of the transaction and publish its writes
+     * atomically. A transaction without writes only ends, its reads came from
+     * one snapshot.
+     *
+     * @throws TransactionConflictException if a key read by the transaction
+     *                                      has changed since it was read.
+     * @throws IllegalStateException        if the transaction has ended.
+     */
+    public void commit() throws TransactionConflictException {
+      if (this.done)
+        throw new IllegalStateException("transaction has ended");
+      this.done = true;
+      if (this.writes.isEmpty())
+        return;
+      while (true) {
+        Node<K, V> current = this.tree.root.get();
+        if (current != this.snapshot)
+          for (Map.Entry<K, Object> read : this.reads.entrySet()) {
+            Node<K, V> node = find(current, read.getKey());
+            if ((node == null ? ABSENT : node.value) != read.getValue())
+              throw new TransactionConflictException();
+          }
+        Node<K, V> next = current;
+        for (Map.Entry<K, Object> write : this.writes.entrySet())
+          next = apply(next, write.getKey(), write.getValue());
+        if (this.tree.root.compareAndSet(current, next))
+          return;
+      }
+    }
+
+    /**
+     * End the transaction without publishing its writes.
+     */
+    public void abort() {
+      this.done = true;
+    }
+  }
+
+  private final AtomicReference<Node<K, V>> root; // Current snapshot.
+
+  /**
+   * Constructor of an empty tree.
+   */
+  public TransactionalAvlTree() {
+    this.root = new AtomicReference<Node<K, V>>(null);
+  }
+
+  /**
+   * Begin a transaction on the current snapshot.
+   *
+   * @return the transaction.
+   */
+  public Transaction<K, V> begin() {
+    return new Transaction<K, V>(this);
+  }
+
+  /**
+   * @return height of a sub-tree, 0 if it is empty.
+   */
+  private static int height(Node<?, ?> node) {
+    return node == null ? 0 : node.height;
+  }
+
+  /**
+   * @return size of a sub-tree, 0 if it is empty.
+   */
+  private static int size(Node<?, ?> node) {
+    return node == null ? 0 : node.size;
+  }
+
+  /**
+   * Find the node of a key in a snapshot.
+   *
+   * @param current root of the snapshot.
+   * @param key     key to look for.
+   * @return node of key, or null if it is not in the snapshot.
+   */
+  private static <K extends Comparable<K>, V> Node<K, V> find(
+      Node<K, V> current, K key) {
+    while (current != null) {
+      int compare = key.compareTo(current.key);
+      if (compare == 0)
+        return current;
+      current = compare < 0 ? current.left : current.right;
+    }
+    return null;
+  }
+
+  /**
+   * Apply one write to a snapshot.
+   *
+   * @param current root of the snapshot.
+   * @param key     written key.
+   * @param value   new value, or ABSENT to remove key.
+   * @return root of the new snapshot.
+   */
+  @SuppressWarnings("unchecked")
+  private static <K extends Comparable<K>, V> Node<K, V> apply(
+      Node<K, V> current, K key, Object value) {
+    if (value == ABSENT)
+      return find(current, key) == null ? current : remove(current, key);
+    return put(current, key, (V) value);
+  }
+
+  /**
+   * Copy the path of key with key associated to value.
+   *
+   * @param current root of the sub-tree.
+   * @param key     key to put.
+   * @param value   value of key.
+   * @return root of the new sub-tree.
+   */
+  private static <K extends Comparable<K>, V> Node<K, V> put(
+      Node<K, V> current, K key, V value) {
+    if (current == null)
+      return new Node<K, V>(key, value, null, null);
+    int compare = key.compareTo(current.key);
+    if (compare == 0)
+      return new Node<K, V>(key, value, current.left, current.right);
+    if (compare < 0)
+      return balance(current.key, current.value,
+          put(current.left, key, value), current.right);
+    return balance(current.key, current.value, current.left,
+        put(current.right, key, value));
+  }
+
+  /**
+   * Copy the path of a key that is in the sub-tree, without it.
+   *
+   * @param current root of the sub-tree.
+   * @param key     key to remove.
+   * @return root of the new sub-tree.
+   */
+  private static <K extends Comparable<K>, V> Node<K, V> remove(
+      Node<K, V> current, K key) {
+    int compare = key.compareTo(current.key);
+    if (compare < 0)
+      return balance(current.key, current.value, remove(current.left, key),
+          current.right);
+    if (compare > 0)
+      return balance(current.key, current.value, current.left,
+          remove(current.right, key));
+    if (current.left == null)
+      return current.right;
+    if (current.right == null)
+      return current.left;
+    Node<K, V> successor = current.right;
+    while (successor.left != null)
+      successor = successor.left;
+    return balance(successor.key, successor.value, current.left,
+        remove(current.right, successor.key));
+  }
+
+  /**
+   * Make a node from a key-value pair and two AVL sub-trees whose heights
+   * differ by at most two, rotating once or twice if they differ by two.
+   *
+   * @param key   key of node.
+   * @param value value of node.
+   * @param left  left sub-tree.
+   * @param right right sub-tree.
+   * @return root of the balanced sub-tree.
+   */
+  private static <K extends Comparable<K>, V> Node<K, V> balance(K key,
+      V value, Node<K, V> left, Node<K, V> right) {
+    int difference = height(left) - height(right);
+    if (difference > 1) { // Left heavy.
+      if (height(left.left) >= height(left.right)) // Left left case.
+        return new Node<K, V>(left.key, left.value, left.left,
+            new Node<K, V>(key, value, left.right, right));
+      Node<K, V> middle = left.right; // Left right case.
+      return new Node<K, V>(middle.key, middle.value,
+          new Node<K, V>(left.key, left.value, left.left, middle.left),
+          new Node<K, V>(key, value, middle.right, right));
+    }
+    if (difference < -1) { // Right heavy.
+      if (height(right.right) >= height(right.left)) // Right right case.
+        return new Node<K, V>(right.key, right.value,
+            new Node<K, V>(key, value, left, right.left), right.right);
+      Node<K, V> middle = right.left; // Right left case.
+      return new Node<K, V>(middle.key, middle.value,
+          new Node<K, V>(key, value, left, middle.left),
+          new Node<K, V>(right.key, right.value, middle.right, right.right));
+    }
+    return new Node<K, V>(key, value, left, right);
+  }
+
+  /**
+   * Run a write as a transaction of its own, against the latest root.
+   *
+   * @param key   written key.
+   * @param value new value, or ABSENT to remove key.
+   */
+  private void write(K key, Object value) {
+    while (true) {
+      Node<K, V> current = this.root.get();
+      if (this.root.compareAndSet(current, apply(current, key, value)))
+        return;
+    }
+  }
+
+  /**
+   * Returns the root node of the current snapshot.
+   *
+   * @return root of the tree, or null if the tree is empty.
+   */
+  Node<K, V> getRoot() {
+    return this.root.get();
+  }
+
+  @Override
+  public K getKeyAtRoot() {
+    Node<K, V> current = this.root.get();
+    return current == null ? null : current.key;
+  }
+
+  @Override
+  public K getKeyOfLeftChildOf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    Node<K, V> node = getExistingNode(key);
+    return node.left == null ? null : node.left.key;
+  }
+
+  @Override
+  public K getKeyOfRightChildOf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    Node<K, V> node = getExistingNode(key);
+    return node.right == null ? null : node.right.key;
+  }
+
+  /**
+   * @param key key to look for in the current snapshot.
+   * @return node of key.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found.
+   */
+  private Node<K, V> getExistingNode(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Node<K, V> node = find(this.root.get(), key);
+    if (node == null)
+      throw new KeyNotFoundException();
+    return node;
+  }
+
+  @Override
+  public int getHeight() {
+    return height(this.root.get());
+  }
+
+  @Override
+  public List<K> getInOrderTraversal() {
+    List<K> keys = new ArrayList<K>(numKeys());
+    traverse(this.root.get(), keys, 1);
+    return keys;
+  }
+
+  @Override
+  public List<K> getPreOrderTraversal() {
+    List<K> keys = new ArrayList<K>(numKeys());
+    traverse(this.root.get(), keys, 0);
+    return keys;
+  }
+
+  @Override
+  public List<K> getPostOrderTraversal() {
+    List<K> keys = new ArrayList<K>(numKeys());
+    traverse(this.root.get(), keys, 2);
+    return keys;
+  }
+
+  /**
+   * Traversal helper method.
+   *
+   * @param current root of the sub-tree.
+   * @param keys    list of keys to append to.
+   * @param visit   when to visit a node: 0 before, 1 between and 2 after its
+   *                children.
+   */
+  private void traverse(Node<K, V> current, List<K> keys, int visit) {
+    if (current == null)
+      return;
+    if (visit == 0)
+      keys.add(current.key);
+    traverse(current.left, keys, visit);
+    if (visit == 1)
+      keys.add(current.key);
+    traverse(current.right, keys, visit);
+    if (visit == 2)
+      keys.add(current.key);
+  }
+
+  @Override
+  public List<K> getLevelOrderTraversal() {
+    List<K> keys = new ArrayList<K>(numKeys());
+    List<Node<K, V>> level = new ArrayList<Node<K, V>>();
+    if (this.root.get() != null)
+      level.add(this.root.get());
+    while (!level.isEmpty()) {
+      List<Node<K, V>> next = new ArrayList<Node<K, V>>();
+      for (Node<K, V> node : level) {
+        keys.add(node.key);
+        if (node.left != null)
+          next.add(node.left);
+        if (node.right != null)
+          next.add(node.right);
+      }
+      level = next;
+    }
+    return keys;
+  }
+
+  @Override
+  public void insert(K key, V value)
+      throws IllegalNullArgumentException, DuplicateKeyException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    while (true) {
+      Node<K, V> current = this.root.get();
+      if (find(current, key) != null)
+        throw new DuplicateKeyException();
+      if (this.root.compareAndSet(current, put(current, key, value)))
+        return;
+    }
+  }
+
+  /**
+   * Associate value with key, inserting key if it is not in the tree.
+   *
+   * @param key   A key to insert or update.
+   * @param value A value to associate with key.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   */
+  public void put(K key, V value) throws IllegalNullArgumentException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    write(key, value);
+  }
+
+  @Override
+  public boolean remove(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    while (true) {
+      Node<K, V> current = this.root.get();
+      if (find(current, key) == null)
+        throw new KeyNotFoundException();
+      if (this.root.compareAndSet(current, remove(current, key)))
+        return true;
+    }
+  }
+
+  @Override
+  public V get(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    return getExistingNode(key).value;
+  }
+
+  @Override
+  public boolean contains(K key) throws IllegalNullArgumentException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    return find(this.root.get(), key) != null;
+  }
+
+  @Override
+  public int numKeys() {
+    return size(this.root.get());
+  }
+
+  /**
+   * Print the keys of the current snapshot level by level.
+   */
+  @Override
+  public void print() {
+    Node<K, V> current = this.root.get();
+    StringBuilder sb = new StringBuilder();
+    List<Node<K, V>> level = new ArrayList<Node<K, V>>();
+    if (current != null)
+      level.add(current);
+    for (int depth = 0; !level.isEmpty(); depth++) {
+      List<Node<K, V>> next = new ArrayList<Node<K, V>>();
+      sb.append(depth).append(':');
+      for (Node<K, V> node : level) {
+        sb.append('\t').append(node.key);
+        if (node.left != null)
+          next.add(node.left);
+        if (node.right != null)
+          next.add(node.right);
+      }
+      sb.append('\n');
+      level = next;
+    }
+    System.out.print(sb);
+  }
+}
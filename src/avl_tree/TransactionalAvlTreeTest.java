@@ -0,0 +1,198 @@
+package avl_tree;
+
+import static org.junit.Assert.fail;
+import exception.TransactionConflictException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+class TransactionalAvlTreeTest {
+  /**
+   * Check the order, heights and sizes of a snapshot.
+   *
+   * @param node root of the snapshot.
+   * @return height of the snapshot.
+   */
+  private int checkAvl(TransactionalAvlTree.Node<Integer, ?> node) {
+    if (node == null)
+      return 0;
+    int left = checkAvl(node.left);
+    int right = checkAvl(node.right);
+    if (node.left != null)
+      Assert.assertEquals(true, node.left.key < node.key);
+    if (node.right != null)
+      Assert.assertEquals(true, node.right.key > node.key);
+    Assert.assertEquals(true, Math.abs(left - right) <= 1);
+    Assert.assertEquals(1 + Math.max(left, right), node.height);
+    Assert.assertEquals(1 + (node.left == null ? 0 : node.left.size)
+        + (node.right == null ? 0 : node.right.size), node.size);
+    return node.height;
+  }
+
+  /**
+   * Run random single operations against a TreeMap.
+   */
+  @Test
+  void testTX_001_matches_tree_map() {
+    try {
+      Random random = new Random(3);
+      TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+      TransactionalAvlTree<Integer, String> tree =
+          new TransactionalAvlTree<Integer, String>();
+      for (int i = 0; i < 5000; i++) {
+        int key = random.nextInt(300);
+        if (random.nextInt(3) < 2) {
+          tree.put(key, "v" + i);
+          expected.put(key, "v" + i);
+        } else if (expected.remove(key) != null)
+          tree.remove(key);
+        if (i % 100 == 0)
+          checkAvl(tree.getRoot());
+      }
+      Assert.assertEquals(new ArrayList<Integer>(expected.keySet()),
+          tree.getInOrderTraversal());
+      Assert.assertEquals(expected.size(), tree.numKeys());
+      for (Integer key : expected.keySet())
+        Assert.assertEquals(expected.get(key), tree.get(key));
+      try {
+        tree.insert(expected.firstKey(), "x");
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception TX 001: " + e.getMessage());
+    }
+  }
+
+  /**
+   * A transaction sees its snapshot and its own writes, and conflicts when a
+   * key it read is changed before it commits.
+   */
+  @Test
+  void testTX_002_snapshot_and_conflict() {
+    try {
+      TransactionalAvlTree<Integer, String> tree =
+          new TransactionalAvlTree<Integer, String>();
+      for (int i = 0; i < 10; i++)
+        tree.insert(i, "v" + i);
+      TransactionalAvlTree.Transaction<Integer, String> first = tree.begin();
+      TransactionalAvlTree.Transaction<Integer, String> second = tree.begin();
+      TransactionalAvlTree.Transaction<Integer, String> reader = tree.begin();
+      Assert.assertEquals("v1", first.get(1));
+      first.put(1, "first");
+      first.remove(2);
+      Assert.assertEquals("first", first.get(1));
+      Assert.assertEquals(false, first.contains(2));
+      Assert.assertEquals("v2", tree.get(2)); // Not committed yet.
+
+      Assert.assertEquals("v3", second.get(3));
+      second.insert(20, "second");
+      second.commit(); // Disjoint from first.
+      Assert.assertEquals(false, reader.contains(20)); // Snapshot.
+      Assert.assertEquals("v2", reader.get(2));
+      reader.commit();
+      first.commit();
+      Assert.assertEquals("first", tree.get(1));
+      Assert.assertEquals("second", tree.get(20));
+      Assert.assertEquals(false, tree.contains(2));
+
+      TransactionalAvlTree.Transaction<Integer, String> third = tree.begin();
+      Assert.assertEquals(false, third.contains(2));
+      third.put(5, "third");
+      tree.insert(2, "again");
+      try {
+        third.commit();
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (TransactionConflictException e) {
+      }
+      Assert.assertEquals("v5", tree.get(5));
+      try {
+        third.get(5);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (IllegalStateException e) {
+      }
+      checkAvl(tree.getRoot());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception TX 002: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Threads move amounts between accounts in retried transactions, while
+   * readers check that every snapshot keeps the same total.
+   */
+  @Test
+  void testTX_003_concurrent_transfers() {
+    try {
+      final int accounts = 50;
+      final TransactionalAvlTree<Integer, Integer> tree =
+          new TransactionalAvlTree<Integer, Integer>();
+      for (int i = 0; i < accounts; i++)
+        tree.insert(i, 100);
+      final List<Throwable> errors = new ArrayList<Throwable>();
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int t = 0; t < 4; t++) {
+        final Random random = new Random(t);
+        threads.add(new Thread(() -> {
+          try {
+            for (int i = 0; i < 2000; i++) {
+              int from = random.nextInt(accounts);
+              int to = random.nextInt(accounts);
+              while (true) {
+                TransactionalAvlTree.Transaction<Integer, Integer> tx =
+                    tree.begin();
+                tx.put(from, tx.get(from) - 1);
+                tx.put(to, tx.get(to) + 1);
+                try {
+                  tx.commit();
+                  break;
+                } catch (TransactionConflictException e) {
+                }
+              }
+            }
+          } catch (Throwable e) {
+            synchronized (errors) {
+              errors.add(e);
+            }
+          }
+        }));
+      }
+      threads.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < 500; i++) {
+            TransactionalAvlTree.Transaction<Integer, Integer> tx =
+                tree.begin();
+            int total = 0;
+            for (int key = 0; key < accounts; key++)
+              total += tx.get(key);
+            tx.commit();
+            Assert.assertEquals(100 * accounts, total);
+          }
+        } catch (Throwable e) {
+          synchronized (errors) {
+            errors.add(e);
+          }
+        }
+      }));
+      for (Thread thread : threads)
+        thread.start();
+      for (Thread thread : threads)
+        thread.join();
+      Assert.assertEquals(0, errors.size());
+      int total = 0;
+      for (int key = 0; key < accounts; key++)
+        total += tree.get(key);
+      Assert.assertEquals(100 * accounts, total);
+      Assert.assertEquals(accounts, tree.numKeys());
+      checkAvl(tree.getRoot());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception TX 003: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package avl_tree;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operation counters of an AvlTree. A tree only records into it while it is
+ * attached with AvlTree.setMetrics, so a detached tree pays nothing but a null
+ * check per operation. Counters are striped (LongAdder), so one instance can be
+ * shared by many trees updated from different threads.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class TreeMetrics {
+  /**
+   * Operations that are counted separately.
+   */
+  public enum Operation {
+    GET, CONTAINS, INSERT, PUT, REMOVE, GET_ALL
+  }
+
+  private final LongAdder[] operations; // Number of operations by type.
+  private final LongAdder comparisons; // Key comparisons of all operations.
+  private final LongAdder pathLength; // Nodes visited by all descents.
+  private final LongAdder singleRotations; // Left-left and right-right cases.
+  private final LongAdder doubleRotations; // Left-right and right-left cases.
+  private final LongAdder traversals; // Number of traversals.
+  private final LongAdder traversedKeys; // Keys returned by all traversals.
+
+  /**
+   * Constructor that initializes all counters to zero.
+   */
+  public TreeMetrics() {
+    this.operations = new LongAdder[Operation.values().length];
+    for (int i = 0; i < this.operations.length; i++)
+      this.operations[i] = new LongAdder();
+    this.comparisons = new LongAdder();
+    this.pathLength = new LongAdder();
+    this.singleRotations = new LongAdder();
+    this.doubleRotations = new LongAdder();
+    this.traversals = new LongAdder();
+    this.traversedKeys = new LongAdder();
+  }
+
+  /**
+   * Record one finished operation.
+   *
+   * @param operation   type of the operation.
+   * @param comparisons key comparisons made by the operation.
+   * @param pathLength  nodes visited by the operation.
+   */
+  void recordOperation(Operation operation, int comparisons, int pathLength) {
+    this.operations[operation.ordinal()].increment();
+    this.comparisons.add(comparisons);
+    this.pathLength.add(pathLength);
+  }
+
+  /**
+   * Record one rotation case fixed while re-balancing.
+   *
+   * @param isDouble true for left-right and right-left cases.
+   */
+  void recordRotation(boolean isDouble) {
+    if (isDouble)
+      this.doubleRotations.increment();
+    else
+      this.singleRotations.increment();
+  }
+
+  /**
+   * Record one traversal.
+   *
+   * @param numKeys number of keys returned by the traversal.
+   */
+  void recordTraversal(int numKeys) {
+    this.traversals.increment();
+    this.traversedKeys.add(numKeys);
+  }
+
+  /**
+   * Reset all counters to zero. Not atomic with respect to concurrent updates.
+   */
+  public void reset() {
+    for (LongAdder counter : this.operations)
+      counter.reset();
+    this.comparisons.reset();
+    this.pathLength.reset();
+    this.singleRotations.reset();
+    this.doubleRotations.reset();
+    this.traversals.reset();
+    this.traversedKeys.reset();
+  }
+
+  /**
+   * Take a point-in-time copy of the counters.
+   *
+   * @return snapshot of the counters.
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[this.operations.length];
+    for (int i = 0; i < counts.length; i++)
+      counts[i] = this.operations[i].sum();
+    return new Snapshot(counts, this.comparisons.sum(), this.pathLength.sum(),
+        this.singleRotations.sum(), this.doubleRotations.sum(),
+        this.traversals.sum(), this.traversedKeys.sum());
+  }
+
+  /**
+   * Immutable copy of the counters of a TreeMetrics.
+   */
+  public static final class Snapshot {
+    private final long[] operations;
+    private final long comparisons;
+    private final long pathLength;
+    private final long singleRotations;
+    private final long doubleRotations;
+    private final long traversals;
+    private final long traversedKeys;
+
+    private Snapshot(long[] operations, long comparisons, long pathLength,
+        long singleRotations, long doubleRotations, long traversals,
+        long traversedKeys) {
+      this.operations = operations;
+      this.comparisons = comparisons;
+      this.pathLength = pathLength;
+      this.singleRotations = singleRotations;
+      this.doubleRotations = doubleRotations;
+      this.traversals = traversals;
+      this.traversedKeys = traversedKeys;
+    }
+
+    /**
+     * @param operation type of operation.
+     * @return number of operations of that type.
+     */
+    public long getOperations(Operation operation) {
+      return this.operations[operation.ordinal()];
+    }
+
+    /**
+     * @return number of operations of all types.
+     */
+    public long getTotalOperations() {
+      long total = 0;
+      for (long count : this.operations)
+        total += count;
+      return total;
+    }
+
+    /**
+     * @return key comparisons of all operations.
+     */
+    public long getComparisons() {
+      return this.comparisons;
+    }
+
+    /**
+     * @return nodes visited by all operations.
+     */
+    public long getPathLength() {
+      return this.pathLength;
+    }
+
+    /**
+     * @return number of left-left and right-right rotation cases.
+     */
+    public long getSingleRotations() {
+      return this.singleRotations;
+    }
+
+    /**
+     * @return number of left-right and right-left rotation cases.
+     */
+    public long getDoubleRotations() {
+      return this.doubleRotations;
+    }
+
+    /**
+     * @return number of traversals.
+     */
+    public long getTraversals() {
+      return this.traversals;
+    }
+
+    /**
+     * @return keys returned by all traversals.
+     */
+    public long getTraversedKeys() {
+      return this.traversedKeys;
+    }
+
+    /**
+     * @return average key comparisons per operation, 0 if there is none.
+     */
+    public double getComparisonsPerOperation() {
+      long total = getTotalOperations();
+      return total == 0 ? 0 : (double) this.comparisons / total;
+    }
+
+    /**
+     * @return average nodes visited per operation, 0 if there is none.
+     */
+    public double getPathLengthPerOperation() {
+      long total = getTotalOperations();
+      return total == 0 ? 0 : (double) this.pathLength / total;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder("TreeMetrics{");
+      for (Operation operation : Operation.values())
+        sb.append(operation).append('=').append(getOperations(operation))
+            .append(", ");
+      return sb.append("comparisons=").append(this.comparisons)
+          .append(", pathLength=").append(this.pathLength)
+          .append(", singleRotations=").append(this.singleRotations)
+          .append(", doubleRotations=").append(this.doubleRotations)
+          .append(", traversals=").append(this.traversals)
+          .append(", traversedKeys=").append(this.traversedKeys).append('}')
+          .toString();
+    }
+  }
+}
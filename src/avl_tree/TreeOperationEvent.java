@@ -0,0 +1,35 @@
+package avl_tree;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder event for an AvlTree operation. Only created while
+ * metrics are attached to the tree, and only committed when the operation took
+ * longer than the threshold of the recording (1 ms unless overridden).
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+@Name("avl_tree.TreeOperation")
+@Label("AVL Tree Operation")
+@Category("AVL Tree")
+@Description("Slow operation on an AvlTree")
+@Threshold("1 ms")
+@StackTrace(false)
+class TreeOperationEvent extends jdk.jfr.Event {
+  @Label("Operation")
+  String operation;
+
+  @Label("Comparisons")
+  int comparisons;
+
+  @Label("Path Length")
+  int pathLength;
+
+  @Label("Number of Keys")
+  int numKeys;
+}
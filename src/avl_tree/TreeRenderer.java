@@ -0,0 +1,251 @@
+package avl_tree;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class to write the structure of an AvlTree as indented text, Graphviz DOT or
+ * JSON. Each node is visited once, so the output is linear in the number of
+ * nodes written, and both the depth and the number of nodes can be limited to
+ * dump diagnostics of large trees safely. Cut sub-trees are marked in the
+ * output.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class TreeRenderer {
+  /**
+   * Supported output formats.
+   */
+  public enum Format {
+    TEXT, DOT, JSON
+  }
+
+  private static final String INDENT = "  "; // Indentation of one level.
+
+  private final Format format; // Output format.
+  private final int maxDepth; // Maximum number of levels to write.
+  private final int maxNodes; // Maximum number of nodes to write.
+  private int written; // Nodes written by the current render.
+
+  /**
+   * Constructor that takes the output format and the limits.
+   *
+   * @param format   output format.
+   * @param maxDepth maximum number of levels to write, at least 1.
+   * @param maxNodes maximum number of nodes to write, at least 1.
+   */
+  public TreeRenderer(Format format, int maxDepth, int maxNodes) {
+    if (format == null)
+      throw new IllegalArgumentException("Format is null.");
+    if (maxDepth < 1 || maxNodes < 1)
+      throw new IllegalArgumentException("Limits must be positive.");
+    this.format = format;
+    this.maxDepth = maxDepth;
+    this.maxNodes = maxNodes;
+  }
+
+  /**
+   * Write the tree to an output stream as UTF-8. Output is buffered and
+   * flushed at the end; the stream is not closed.
+   *
+   * @param tree tree to write.
+   * @param out  destination of the output.
+   * @throws IOException if out fails.
+   */
+  public <K extends Comparable<K>, V> void render(AvlTree<K, V> tree,
+      OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(
+        new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    render(tree, writer);
+    writer.flush();
+  }
+
+  /**
+   * Write the tree to an appendable.
+   *
+   * @param tree tree to write.
+   * @param out  destination of the output.
+   * @throws IOException if out fails.
+   */
+  public <K extends Comparable<K>, V> void render(AvlTree<K, V> tree,
+      Appendable out) throws IOException {
+    this.written = 0;
+    AvlTree.Node<K, V> root = tree.getRoot();
+    switch (this.format) {
+      case TEXT:
+        if (root == null)
+          out.append("(empty)\n");
+        else
+          renderText(root, "", 1, out);
+        break;
+      case DOT:
+        out.append("digraph AvlTree {\n");
+        out.append(INDENT).append("node [shape=circle];\n");
+        if (root != null)
+          renderDot(root, 1, out);
+        out.append("}\n");
+        break;
+      case JSON:
+        out.append("{\"numKeys\":").append(Integer.toString(tree.numKeys()))
+            .append(",\"height\":").append(Integer.toString(tree.getHeight()))
+            .append(",\"root\":");
+        renderJson(root, 1, out);
+        out.append("}\n");
+        break;
+    }
+  }
+
+  /**
+   * Check if a node can be written at the given depth.
+   *
+   * @param depth level of the node, the root is at level 1.
+   * @return true if both limits allow one more node.
+   */
+  private boolean canWrite(int depth) {
+    return depth <= this.maxDepth && this.written < this.maxNodes;
+  }
+
+  /**
+   * Recursive pre-order writer of the TEXT format: one node per line, children
+   * indented under their parent and prefixed with L or R.
+   *
+   * @param current node to write.
+   * @param prefix  label of the node, empty for the root.
+   * @param depth   level of the node.
+   * @param out     destination of the output.
+   * @throws IOException if out fails.
+   */
+  private <K, V> void renderText(AvlTree.Node<K, V> current, String prefix,
+      int depth, Appendable out) throws IOException {
+    for (int i = 1; i < depth; i++)
+      out.append(INDENT);
+    if (!canWrite(depth)) {
+      out.append(prefix).append("...\n"); // Sub-tree cut by a limit.
+      return;
+    }
+    this.written++;
+    out.append(prefix).append(String.valueOf(current.key)).append(" (h=")
+        .append(Integer.toString(current.height)).append(", bf=")
+        .append(Integer.toString(current.balanceFactor)).append(")\n");
+    if (current.left != null)
+      renderText(current.left, "L: ", depth + 1, out);
+    if (current.right != null)
+      renderText(current.right, "R: ", depth + 1, out);
+  }
+
+  /**
+   * Recursive writer of the DOT format. Nodes are named after their pre-order
+   * position, and cut sub-trees are drawn as a point.
+   *
+   * @param current node to write.
+   * @param depth   level of the node.
+   * @param out     destination of the output.
+   * @return name of the node written.
+   * @throws IOException if out fails.
+   */
+  private <K, V> String renderDot(AvlTree.Node<K, V> current, int depth,
+      Appendable out) throws IOException {
+    if (!canWrite(depth)) {
+      String name = "cut" + this.written + "_" + depth;
+      out.append(INDENT).append(name).append(" [shape=point];\n");
+      return name;
+    }
+    String name = "n" + this.written++;
+    out.append(INDENT).append(name).append(" [label=\"");
+    escapeDot(String.valueOf(current.key), out);
+    out.append("\"];\n");
+    if (current.left != null) {
+      String child = renderDot(current.left, depth + 1, out);
+      out.append(INDENT).append(name).append(" -> ").append(child)
+          .append(" [label=\"L\"];\n");
+    }
+    if (current.right != null) {
+      String child = renderDot(current.right, depth + 1, out);
+      out.append(INDENT).append(name).append(" -> ").append(child)
+          .append(" [label=\"R\"];\n");
+    }
+    return name;
+  }
+
+  /**
+   * Recursive writer of the JSON format. Each node is an object with its key,
+   * height, balance factor and children; cut sub-trees are written as
+   * {"truncated":true}.
+   *
+   * @param current node to write, may be null.
+   * @param depth   level of the node.
+   * @param out     destination of the output.
+   * @throws IOException if out fails.
+   */
+  private <K, V> void renderJson(AvlTree.Node<K, V> current, int depth,
+      Appendable out) throws IOException {
+    if (current == null) {
+      out.append("null");
+      return;
+    }
+    if (!canWrite(depth)) {
+      out.append("{\"truncated\":true}");
+      return;
+    }
+    this.written++;
+    out.append("{\"key\":\"");
+    escapeJson(String.valueOf(current.key), out);
+    out.append("\",\"height\":").append(Integer.toString(current.height))
+        .append(",\"balanceFactor\":")
+        .append(Integer.toString(current.balanceFactor)).append(",\"left\":");
+    renderJson(current.left, depth + 1, out);
+    out.append(",\"right\":");
+    renderJson(current.right, depth + 1, out);
+    out.append('}');
+  }
+
+  /**
+   * Write text as the content of a double-quoted DOT string. Graphviz has no
+   * unicode escape, so control characters and '&' are written as HTML
+   * entities, which it decodes in labels.
+   *
+   * @param text text to write.
+   * @param out  destination of the output.
+   * @throws IOException if out fails.
+   */
+  private void escapeDot(String text, Appendable out) throws IOException {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\')
+        out.append('\\').append(c);
+      else if (c == '\n')
+        out.append("\\n");
+      else if (c == '&')
+        out.append("&amp;");
+      else if (c < 0x20)
+        out.append("&#").append(Integer.toString(c)).append(';');
+      else
+        out.append(c);
+    }
+  }
+
+  /**
+   * Write text as the content of a double-quoted JSON string.
+   *
+   * @param text text to write.
+   * @param out  destination of the output.
+   * @throws IOException if out fails.
+   */
+  private void escapeJson(String text, Appendable out) throws IOException {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\')
+        out.append('\\').append(c);
+      else if (c == '\n')
+        out.append("\\n");
+      else if (c < 0x20)
+        out.append(String.format("\\u%04x", (int) c));
+      else
+        out.append(c);
+    }
+  }
+}
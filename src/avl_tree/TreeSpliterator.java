@@ -0,0 +1,156 @@
+package avl_tree;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spliterator over the nodes of an AvlTree in key order, for the streams of
+ * the tree. It covers a head node followed by a whole sub-tree, and splits by
+ * handing out the head and the left sub-tree, keeping the root of the sub-tree
+ * as its new head and the right sub-tree. Since both sub-trees of an AVL node
+ * differ in height by at most one, the halves are balanced, and the live
+ * counts of the sub-trees give the exact size of each half. Tombstones left by
+ * lazy deletion are skipped. The tree must not be modified while it is being
+ * traversed.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ * @param <T> is the type of element taken from each node.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+class TreeSpliterator<K, V, T> implements Spliterator<T> {
+  private final Function<AvlTree.Node<K, V>, T> element; // Element of a node.
+  private final Comparator<? super T> comparator; // Null for natural order.
+  private final int characteristics; // Characteristics of all the elements.
+  private AvlTree.Node<K, V> head; // First node to visit, null if none.
+  private AvlTree.Node<K, V> tree; // Sub-tree to visit after head.
+  private Deque<AvlTree.Node<K, V>> stack; // Set once the sub-tree is entered.
+  private long remaining; // Number of live nodes left.
+
+  /**
+   * Constructor of the spliterator of a whole tree.
+   *
+   * @param root            root of the tree.
+   * @param size            number of live nodes of the tree.
+   * @param element         function that takes the element of a node.
+   * @param comparator      comparator of the elements if they are sorted, null
+   *                        for natural order.
+   * @param characteristics characteristics other than SIZED and SUBSIZED.
+   */
+  TreeSpliterator(AvlTree.Node<K, V> root, int size,
+      Function<AvlTree.Node<K, V>, T> element,
+      Comparator<? super T> comparator, int characteristics) {
+    this.element = element;
+    this.comparator = comparator;
+    this.characteristics = characteristics;
+    this.head = null;
+    this.tree = root;
+    this.stack = null;
+    this.remaining = size;
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    // Nothing to hand out once the sub-tree is entered or it has no left part.
+    if (this.stack != null || this.tree == null
+        || (this.head == null && this.tree.left == null))
+      return null;
+    TreeSpliterator<K, V, T> prefix = new TreeSpliterator<K, V, T>(
+        this.tree.left, 0, this.element, this.comparator, this.characteristics);
+    prefix.head = this.head;
+    this.head = this.tree;
+    this.tree = this.tree.right;
+    prefix.remaining = (prefix.head == null || prefix.head.deleted ? 0 : 1)
+        + (prefix.tree == null ? 0 : prefix.tree.live);
+    this.remaining -= prefix.remaining;
+    return prefix;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (action == null)
+      throw new NullPointerException();
+    AvlTree.Node<K, V> next = nextNode();
+    if (next == null)
+      return false;
+    this.remaining--;
+    action.accept(this.element.apply(next));
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super T> action) {
+    if (action == null)
+      throw new NullPointerException();
+    for (AvlTree.Node<K, V> next = nextNode(); next != null; next = nextNode())
+      action.accept(this.element.apply(next));
+    this.remaining = 0;
+  }
+
+  /**
+   * Returns the next live node in key order.
+   *
+   * @return the next live node, or null if there is none left.
+   */
+  private AvlTree.Node<K, V> nextNode() {
+    AvlTree.Node<K, V> next = nextLinkedNode();
+    while (next != null && next.deleted) // Skip tombstones.
+      next = nextLinkedNode();
+    return next;
+  }
+
+  /**
+   * Returns the next node in key order: the head, then the sub-tree in order.
+   *
+   * @return the next node, or null if there is none left.
+   */
+  private AvlTree.Node<K, V> nextLinkedNode() {
+    if (this.head != null) {
+      AvlTree.Node<K, V> next = this.head;
+      this.head = null;
+      return next;
+    }
+    if (this.stack == null) { // Enter the sub-tree.
+      this.stack = new ArrayDeque<AvlTree.Node<K, V>>();
+      pushLeftSpine(this.tree);
+      this.tree = null;
+    }
+    if (this.stack.isEmpty())
+      return null;
+    AvlTree.Node<K, V> next = this.stack.pop();
+    pushLeftSpine(next.right);
+    return next;
+  }
+
+  /**
+   * Push a node and its left descendants, so the smallest ends on top.
+   *
+   * @param current node to start from, may be null.
+   */
+  private void pushLeftSpine(AvlTree.Node<K, V> current) {
+    for (; current != null; current = current.left)
+      this.stack.push(current);
+  }
+
+  @Override
+  public long estimateSize() {
+    return this.remaining;
+  }
+
+  @Override
+  public int characteristics() {
+    return this.characteristics | SIZED | SUBSIZED;
+  }
+
+  @Override
+  public Comparator<? super T> getComparator() {
+    if (!hasCharacteristics(SORTED))
+      throw new IllegalStateException();
+    return this.comparator;
+  }
+}
@@ -0,0 +1,5 @@
+package exception;
+
+@SuppressWarnings("serial")
+public class TransactionConflictException extends Exception {
+}
@@ -0,0 +1,726 @@
+package radix_tree;
+
+import exception.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adaptive radix tree (ART) over keys encoded as byte strings. An inner node
+ * branches on one byte of the key and stores the bytes shared by all the keys
+ * below it once, as its prefix, so a lookup reads each byte of the key at most
+ * once and never compares whole keys before it reaches a leaf: it costs
+ * O(key length) whatever the number of keys. Inner nodes grow and shrink
+ * between four sizes (4, 16, 48 and 256 children) so that sparse nodes stay
+ * small and dense nodes index their children directly.
+ *
+ * A leaf keeps its whole key, so a key with no sibling below some byte hangs
+ * from the first node where it differs from the others instead of from a
+ * chain of single-child nodes. A key that is a prefix of other keys is kept by
+ * the inner node where it ends. Keys are ordered as unsigned bytes.
+ *
+ * A radix tree has no key at most of its nodes. Its structural queries see
+ * each node through the smallest key below it: see getKeyAtRoot,
+ * getKeyOfLeftChildOf and getKeyOfRightChildOf.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public abstract class AbstractRadixTree<K, V> {
+  private static final byte[] EMPTY = new byte[0];
+
+  /**
+   * Node of a radix tree, either a leaf or an inner node.
+   *
+   * @param <V> is the generic type of value.
+   */
+  abstract static class Node<V> {
+  }
+
+  /**
+   * Leaf that stores a key-value pair with the whole encoded key.
+   *
+   * @param <V> is the generic type of value.
+   */
+  static final class Leaf<V> extends Node<V> {
+    final byte[] key; // Encoded key.
+    V value; // Value of key.
+
+    Leaf(byte[] key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Inner node. Its capacity, the length of children, is 4, 16, 48 or 256:
+   * with 4 or 16 children the bytes are kept sorted in keys, with 48 the slot
+   * of each byte is kept in index, and with 256 the byte is the slot.
+   *
+   * @param <V> is the generic type of value.
+   */
+  static final class Inner<V> extends Node<V> {
+    byte[] prefix; // Bytes shared by every key below, after the branch byte.
+    Leaf<V> leaf; // Key that ends right after the prefix, or null.
+    int count; // Number of children.
+    final byte[] keys; // Sorted branch bytes of 4 and 16 children, or null.
+    final byte[] index; // Slot + 1 of each byte for 48 children, or null.
+    final Node<V>[] children; // Children, see above for the slots.
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Inner(byte[] prefix, int capacity) {
+      this.prefix = prefix;
+      this.children = (Node<V>[]) new Node[capacity];
+      this.keys = capacity <= 16 ? new byte[capacity] : null;
+      this.index = capacity == 48 ? new byte[256] : null;
+    }
+
+    /**
+     * @param b branch byte, from 0 to 255.
+     * @return slot of the child of b, or -1 if there is none.
+     */
+    int slotOf(int b) {
+      if (this.keys != null) {
+        for (int i = 0; i < this.count; i++)
+          if ((this.keys[i] & 0xFF) == b)
+            return i;
+        return -1;
+      }
+      if (this.index != null)
+        return (this.index[b] & 0xFF) - 1;
+      return this.children[b] == null ? -1 : b;
+    }
+
+    /**
+     * @param b branch byte, from 0 to 255.
+     * @return child of b, or null if there is none.
+     */
+    Node<V> find(int b) {
+      int slot = slotOf(b);
+      return slot < 0 ? null : this.children[slot];
+    }
+
+    /**
+     * @param after branch byte, or -1 to start from the first.
+     * @return the smallest branch byte greater than after, or -1 if none.
+     */
+    int nextByte(int after) {
+      if (this.keys != null) {
+        for (int i = 0; i < this.count; i++)
+          if ((this.keys[i] & 0xFF) > after)
+            return this.keys[i] & 0xFF;
+        return -1;
+      }
+      for (int b = after + 1; b < 256; b++)
+        if (this.index != null ? this.index[b] != 0 : this.children[b] != null)
+          return b;
+      return -1;
+    }
+
+    /**
+     * Add a child in a node that is not full.
+     *
+     * @param b     branch byte of the child, not present yet.
+     * @param child child to add.
+     */
+    void add(int b, Node<V> child) {
+      if (this.keys != null) { // Shift the larger bytes to keep them sorted.
+        int i = this.count;
+        while (i > 0 && (this.keys[i - 1] & 0xFF) > b) {
+          this.keys[i] = this.keys[i - 1];
+          this.children[i] = this.children[i - 1];
+          i--;
+        }
+        this.keys[i] = (byte) b;
+        this.children[i] = child;
+      } else if (this.index != null) {
+        int slot = 0;
+        while (this.children[slot] != null) // There is a free slot.
+          slot++;
+        this.children[slot] = child;
+        this.index[b] = (byte) (slot + 1);
+      } else
+        this.children[b] = child;
+      this.count++;
+    }
+
+    /**
+     * Remove the child of a branch byte.
+     *
+     * @param b branch byte of an existing child.
+     */
+    void remove(int b) {
+      int slot = slotOf(b);
+      if (this.keys != null) { // Shift the larger bytes back.
+        for (int i = slot; i < this.count - 1; i++) {
+          this.keys[i] = this.keys[i + 1];
+          this.children[i] = this.children[i + 1];
+        }
+        this.children[this.count - 1] = null;
+      } else {
+        this.children[slot] = null;
+        if (this.index != null)
+          this.index[b] = 0;
+      }
+      this.count--;
+    }
+  }
+
+  private Node<V> root; // Root of the tree, null if empty.
+  private int numKeys; // Number of key-value pairs in the tree.
+
+  /**
+   * Constructor of an empty radix tree.
+   */
+  public AbstractRadixTree() {
+    this.root = null;
+    this.numKeys = 0;
+  }
+
+  /**
+   * @return root of the tree.
+   */
+  Node<V> getRoot() {
+    return this.root;
+  }
+
+  /**
+   * Encode a key into bytes whose unsigned order is the order of keys.
+   *
+   * @param key key to encode, not null.
+   * @return encoded key, not shared with the caller.
+   */
+  abstract byte[] encode(K key);
+
+  /**
+   * Decode a key encoded by encode.
+   *
+   * @param bytes encoded key.
+   * @return the key.
+   */
+  abstract K decode(byte[] bytes);
+
+  /**
+   * Returns the smallest key of the tree, the key of the root. If the tree is
+   * empty, returns null.
+   *
+   * @return smallest key, or null.
+   */
+  public K getKeyAtRoot() {
+    return this.root == null ? null : decode(firstLeaf(this.root).key);
+  }
+
+  /**
+   * Find the node that holds key: its leaf, or the inner node where it ends,
+   * and returns the smallest key below the first child of that node. Leaves
+   * have no children.
+   *
+   * @param key A key to search for.
+   * @return The smallest key below the first child of the node of key, or
+   *         null.
+   *
+   * @throws IllegalNullArgumentException if key argument is null.
+   * @throws KeyNotFoundException         if key is not found in this tree.
+   */
+  public K getKeyOfLeftChildOf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    Inner<V> node = getOwner(key);
+    int b = node == null ? -1 : node.nextByte(-1);
+    return b < 0 ? null : decode(firstLeaf(node.find(b)).key);
+  }
+
+  /**
+   * Find the node that holds key, and returns the smallest key below the last
+   * of its children if it has at least two, otherwise null.
+   *
+   * @param key A key to search for.
+   * @return The smallest key below the last child of the node of key, or null.
+   *
+   * @throws IllegalNullArgumentException if key argument is null.
+   * @throws KeyNotFoundException         if key is not found in this tree.
+   */
+  public K getKeyOfRightChildOf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    Inner<V> node = getOwner(key);
+    if (node == null || node.count < 2)
+      return null;
+    int last = -1;
+    for (int b = node.nextByte(-1); b >= 0; b = node.nextByte(b))
+      last = b;
+    return decode(firstLeaf(node.find(last)).key);
+  }
+
+  /**
+   * Returns the number of levels of nodes, leaves included, 0 for an empty
+   * tree.
+   *
+   * @return the number of levels that contain nodes.
+   */
+  public int getHeight() {
+    return getHeightHelper(this.root);
+  }
+
+  /**
+   * @param node root of sub-tree.
+   * @return number of levels of the sub-tree.
+   */
+  private int getHeightHelper(Node<V> node) {
+    if (node == null)
+      return 0;
+    int height = 0;
+    if (node instanceof Inner) {
+      Inner<V> inner = (Inner<V>) node;
+      for (int b = inner.nextByte(-1); b >= 0; b = inner.nextByte(b))
+        height = Math.max(height, getHeightHelper(inner.find(b)));
+    }
+    return 1 + height;
+  }
+
+  /**
+   * Returns the keys in sorted order: a key that ends at an inner node comes
+   * before the keys of its children, which follow in byte order.
+   *
+   * @return List of Keys in-order.
+   */
+  public List<K> getInOrderTraversal() {
+    List<K> keys = new ArrayList<K>(this.numKeys);
+    traverse(this.root, keys, true);
+    return keys;
+  }
+
+  /**
+   * A node holds its own key before the keys of its children, so the
+   * pre-order traversal is the in-order traversal.
+   *
+   * @return List of Keys in pre-order.
+   */
+  public List<K> getPreOrderTraversal() {
+    return getInOrderTraversal();
+  }
+
+  /**
+   * Returns the keys of the children of each node, in byte order, before the
+   * key of the node itself.
+   *
+   * @return List of Keys in post-order.
+   */
+  public List<K> getPostOrderTraversal() {
+    List<K> keys = new ArrayList<K>(this.numKeys);
+    traverse(this.root, keys, false);
+    return keys;
+  }
+
+  /**
+   * Traversal helper method.
+   *
+   * @param node     root of sub-tree.
+   * @param keys     list of keys to append to.
+   * @param preOrder true to visit the key of a node before its children.
+   */
+  private void traverse(Node<V> node, List<K> keys, boolean preOrder) {
+    if (node == null)
+      return;
+    if (node instanceof Leaf) {
+      keys.add(decode(((Leaf<V>) node).key));
+      return;
+    }
+    Inner<V> inner = (Inner<V>) node;
+    if (preOrder && inner.leaf != null)
+      keys.add(decode(inner.leaf.key));
+    for (int b = inner.nextByte(-1); b >= 0; b = inner.nextByte(b))
+      traverse(inner.find(b), keys, preOrder);
+    if (!preOrder && inner.leaf != null)
+      keys.add(decode(inner.leaf.key));
+  }
+
+  /**
+   * Returns the keys level by level, each level in sorted order.
+   *
+   * @return List of Keys in level-order.
+   */
+  public List<K> getLevelOrderTraversal() {
+    List<K> keys = new ArrayList<K>(this.numKeys);
+    List<Node<V>> level = new ArrayList<Node<V>>();
+    if (this.root != null)
+      level.add(this.root);
+    while (!level.isEmpty()) {
+      List<Node<V>> next = new ArrayList<Node<V>>();
+      for (Node<V> node : level) {
+        if (node instanceof Leaf) {
+          keys.add(decode(((Leaf<V>) node).key));
+          continue;
+        }
+        Inner<V> inner = (Inner<V>) node;
+        if (inner.leaf != null)
+          keys.add(decode(inner.leaf.key));
+        for (int b = inner.nextByte(-1); b >= 0; b = inner.nextByte(b))
+          next.add(inner.find(b));
+      }
+      level = next;
+    }
+    return keys;
+  }
+
+  /**
+   * Add the key-value pair to the tree.
+   *
+   * @param key   A key to insert.
+   * @param value A value to insert.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws DuplicateKeyException        if key is already in the tree.
+   */
+  public void insert(K key, V value)
+      throws IllegalNullArgumentException, DuplicateKeyException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    byte[] bytes = encode(key);
+    this.root = insertHelper(this.root, bytes, 0, new Leaf<V>(bytes, value));
+    this.numKeys++;
+  }
+
+  /**
+   * Insert helper method.
+   *
+   * @param node  root of the sub-tree, reached after depth bytes of the key.
+   * @param key   encoded key.
+   * @param depth number of bytes of key already matched.
+   * @param leaf  new leaf of key.
+   * @return root of the sub-tree after insertion.
+   *
+   * @throws DuplicateKeyException if key is already in the tree.
+   */
+  private Node<V> insertHelper(Node<V> node, byte[] key, int depth,
+      Leaf<V> leaf) throws DuplicateKeyException {
+    if (node == null)
+      return leaf;
+    if (node instanceof Leaf) { // Branch where both keys differ.
+      byte[] other = ((Leaf<V>) node).key;
+      int shared = mismatch(other, depth, key, depth,
+          Math.min(other.length, key.length) - depth);
+      if (other.length == key.length && depth + shared == key.length)
+        throw new DuplicateKeyException();
+      Inner<V> inner = new Inner<V>(slice(key, depth, depth + shared), 4);
+      hang(inner, (Leaf<V>) node, depth + shared);
+      hang(inner, leaf, depth + shared);
+      return inner;
+    }
+    Inner<V> inner = (Inner<V>) node;
+    int shared = mismatch(inner.prefix, 0, key, depth,
+        Math.min(inner.prefix.length, key.length - depth));
+    if (shared < inner.prefix.length) { // Key leaves the prefix, split it.
+      Inner<V> parent = new Inner<V>(slice(inner.prefix, 0, shared), 4);
+      int b = inner.prefix[shared] & 0xFF;
+      inner.prefix = slice(inner.prefix, shared + 1, inner.prefix.length);
+      parent.add(b, inner);
+      hang(parent, leaf, depth + shared);
+      return parent;
+    }
+    depth += inner.prefix.length;
+    if (depth == key.length) { // Key ends at this node.
+      if (inner.leaf != null)
+        throw new DuplicateKeyException();
+      inner.leaf = leaf;
+      return inner;
+    }
+    int b = key[depth] & 0xFF;
+    int slot = inner.slotOf(b);
+    if (slot >= 0) {
+      inner.children[slot] =
+          insertHelper(inner.children[slot], key, depth + 1, leaf);
+      return inner;
+    }
+    int capacity = inner.children.length;
+    if (inner.count == capacity) // Grow to the next size.
+      inner = resize(inner, capacity == 4 ? 16 : capacity == 16 ? 48 : 256);
+    inner.add(b, leaf);
+    return inner;
+  }
+
+  /**
+   * Hang a leaf from a new inner node whose prefix ends at depth: the leaf is
+   * kept by the node if its key ends there, otherwise it becomes a child.
+   *
+   * @param inner inner node, not full.
+   * @param leaf  leaf to hang.
+   * @param depth length of the key up to the end of the prefix of inner.
+   */
+  private void hang(Inner<V> inner, Leaf<V> leaf, int depth) {
+    if (leaf.key.length == depth)
+      inner.leaf = leaf;
+    else
+      inner.add(leaf.key[depth] & 0xFF, leaf);
+  }
+
+  /**
+   * Copy an inner node into a node of another capacity.
+   *
+   * @param inner    node to copy.
+   * @param capacity new capacity, at least its number of children.
+   * @return the new node.
+   */
+  private Inner<V> resize(Inner<V> inner, int capacity) {
+    Inner<V> copy = new Inner<V>(inner.prefix, capacity);
+    copy.leaf = inner.leaf;
+    for (int b = inner.nextByte(-1); b >= 0; b = inner.nextByte(b))
+      copy.add(b, inner.find(b));
+    return copy;
+  }
+
+  /**
+   * If key is found, remove the key-value pair from the tree. Inner nodes
+   * left with a single child are merged with it, and nodes shrink when they
+   * get sparse.
+   *
+   * @param key A key to remove.
+   * @return true always, indicating node removed successfully.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found.
+   */
+  public boolean remove(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    getLeaf(key); // Fail before changing anything.
+    this.root = removeHelper(this.root, encode(key), 0);
+    this.numKeys--;
+    return true;
+  }
+
+  /**
+   * Remove helper method, for a key known to be in the sub-tree.
+   *
+   * @param node  root of the sub-tree, reached after depth bytes of the key.
+   * @param key   encoded key.
+   * @param depth number of bytes of key already matched.
+   * @return root of the sub-tree after removal, null if it is empty.
+   */
+  private Node<V> removeHelper(Node<V> node, byte[] key, int depth) {
+    if (node instanceof Leaf)
+      return null;
+    Inner<V> inner = (Inner<V>) node;
+    depth += inner.prefix.length;
+    if (depth == key.length)
+      inner.leaf = null;
+    else {
+      int b = key[depth] & 0xFF;
+      int slot = inner.slotOf(b);
+      Node<V> child = removeHelper(inner.children[slot], key, depth + 1);
+      if (child != null)
+        inner.children[slot] = child;
+      else {
+        inner.remove(b);
+        int capacity = inner.children.length;
+        if (capacity == 256 && inner.count <= 40) // Shrink with hysteresis.
+          inner = resize(inner, 48);
+        else if (capacity == 48 && inner.count <= 12)
+          inner = resize(inner, 16);
+        else if (capacity == 16 && inner.count <= 3)
+          inner = resize(inner, 4);
+      }
+    }
+    if (inner.count == 0) // Only its own key, if any, is left.
+      return inner.leaf;
+    if (inner.count == 1 && inner.leaf == null) { // Merge with the child.
+      int b = inner.nextByte(-1);
+      Node<V> child = inner.find(b);
+      if (child instanceof Inner) {
+        Inner<V> only = (Inner<V>) child;
+        byte[] prefix = new byte[inner.prefix.length + 1 + only.prefix.length];
+        System.arraycopy(inner.prefix, 0, prefix, 0, inner.prefix.length);
+        prefix[inner.prefix.length] = (byte) b;
+        System.arraycopy(only.prefix, 0, prefix, inner.prefix.length + 1,
+            only.prefix.length);
+        only.prefix = prefix;
+      }
+      return child;
+    }
+    return inner;
+  }
+
+  /**
+   * Returns the value associated with key.
+   *
+   * @param key A key to get the value associated with it.
+   * @return the value associated with key.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found.
+   */
+  public V get(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    return getLeaf(key).value;
+  }
+
+  /**
+   * Returns true if the key is in the tree.
+   *
+   * @param key A key to check if it exists in the tree.
+   * @return true if key is found, false otherwise.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   */
+  public boolean contains(K key) throws IllegalNullArgumentException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    return findLeaf(encode(key)) != null;
+  }
+
+  /**
+   * Returns the number of key-value pairs in the tree.
+   *
+   * @return the number of key-value pairs in the tree.
+   */
+  public int numKeys() {
+    return this.numKeys;
+  }
+
+  /**
+   * Print the tree, one node per line indented by its depth: inner nodes show
+   * their branch byte and prefix in hexadecimal, and the key ending there.
+   */
+  public void print() {
+    StringBuilder sb = new StringBuilder();
+    printHelper(this.root, -1, 0, sb);
+    System.out.print(sb);
+  }
+
+  /**
+   * Print helper method.
+   *
+   * @param node   node to print.
+   * @param b      branch byte that leads to node, -1 for the root.
+   * @param indent depth of node.
+   * @param sb     builder to print into.
+   */
+  private void printHelper(Node<V> node, int b, int indent, StringBuilder sb) {
+    if (node == null)
+      return;
+    for (int i = 0; i < indent; i++)
+      sb.append("  ");
+    if (b >= 0)
+      sb.append(String.format("%02x ", b));
+    if (node instanceof Leaf) {
+      sb.append(decode(((Leaf<V>) node).key)).append('\n');
+      return;
+    }
+    Inner<V> inner = (Inner<V>) node;
+    sb.append('[');
+    for (byte p : inner.prefix)
+      sb.append(String.format("%02x", p & 0xFF));
+    sb.append("] node").append(inner.children.length);
+    if (inner.leaf != null)
+      sb.append(' ').append(decode(inner.leaf.key));
+    sb.append('\n');
+    for (int c = inner.nextByte(-1); c >= 0; c = inner.nextByte(c))
+      printHelper(inner.find(c), c, indent + 1, sb);
+  }
+
+  /**
+   * Find the leaf of an encoded key, reading each byte of the key once.
+   *
+   * @param key encoded key.
+   * @return leaf of key, or null if key is not in the tree.
+   */
+  private Leaf<V> findLeaf(byte[] key) {
+    Node<V> node = this.root;
+    int depth = 0;
+    while (node instanceof Inner) {
+      Inner<V> inner = (Inner<V>) node;
+      int length = inner.prefix.length;
+      if (key.length - depth < length
+          || mismatch(inner.prefix, 0, key, depth, length) < length)
+        return null;
+      depth += length;
+      if (depth == key.length)
+        return inner.leaf;
+      node = inner.find(key[depth++] & 0xFF);
+    }
+    Leaf<V> leaf = (Leaf<V>) node;
+    // A leaf hangs where its key first differs, check the rest of it.
+    if (leaf == null || leaf.key.length != key.length
+        || mismatch(leaf.key, 0, key, 0, key.length) < key.length)
+      return null;
+    return leaf;
+  }
+
+  /**
+   * @param key key to look for.
+   * @return leaf of key.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found.
+   */
+  private Leaf<V> getLeaf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Leaf<V> leaf = findLeaf(encode(key));
+    if (leaf == null)
+      throw new KeyNotFoundException();
+    return leaf;
+  }
+
+  /**
+   * Find the inner node where an existing key ends.
+   *
+   * @param key key to look for.
+   * @return inner node that keeps key, or null if key is in a leaf child.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found.
+   */
+  private Inner<V> getOwner(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    Leaf<V> leaf = getLeaf(key);
+    Node<V> node = this.root;
+    int depth = 0;
+    while (node instanceof Inner) {
+      Inner<V> inner = (Inner<V>) node;
+      if (inner.leaf == leaf)
+        return inner;
+      depth += inner.prefix.length;
+      node = inner.find(leaf.key[depth++] & 0xFF);
+    }
+    return null;
+  }
+
+  /**
+   * @param node root of a sub-tree, not null.
+   * @return leaf of the smallest key of the sub-tree.
+   */
+  private Leaf<V> firstLeaf(Node<V> node) {
+    while (node instanceof Inner) {
+      Inner<V> inner = (Inner<V>) node;
+      if (inner.leaf != null)
+        return inner.leaf;
+      node = inner.find(inner.nextByte(-1));
+    }
+    return (Leaf<V>) node;
+  }
+
+  /**
+   * @return number of bytes that a[from..) and b[offset..) share, looking at
+   *         no more than length bytes.
+   */
+  private static int mismatch(byte[] a, int from, byte[] b, int offset,
+      int length) {
+    int i = 0;
+    while (i < length && a[from + i] == b[offset + i])
+      i++;
+    return i;
+  }
+
+  /**
+   * @return copy of bytes[from..to).
+   */
+  private static byte[] slice(byte[] bytes, int from, int to) {
+    if (from == to)
+      return EMPTY;
+    byte[] slice = new byte[to - from];
+    System.arraycopy(bytes, from, slice, 0, to - from);
+    return slice;
+  }
+}
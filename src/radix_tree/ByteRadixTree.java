@@ -0,0 +1,33 @@
+package radix_tree;
+
+/**
+ * Adaptive radix tree of byte[] keys, ordered as unsigned bytes. Keys are
+ * copied on the way in and on the way out, so changing an array after it was
+ * passed to the tree does not change the tree.
+ *
+ * byte[] is not Comparable, so this tree cannot implement AvlTreeADT, but it
+ * has the same operations.
+ *
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class ByteRadixTree<V> extends AbstractRadixTree<byte[], V> {
+  /**
+   * @param key key to encode, not null.
+   * @return copy of key.
+   */
+  @Override
+  byte[] encode(byte[] key) {
+    return key.clone();
+  }
+
+  /**
+   * @param bytes encoded key.
+   * @return copy of bytes.
+   */
+  @Override
+  byte[] decode(byte[] bytes) {
+    return bytes.clone();
+  }
+}
@@ -0,0 +1,47 @@
+package radix_tree;
+
+import avl_tree.AvlTreeADT;
+
+/**
+ * Adaptive radix tree of String keys behind the same operations as the AVL
+ * tree. Each char is encoded as two bytes, high byte first, so that keys are
+ * ordered as by String.compareTo: traversals list the keys in the same order
+ * as the AVL tree does.
+ *
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class RadixTree<V> extends AbstractRadixTree<String, V>
+    implements AvlTreeADT<String, V> {
+  /**
+   * Encode a key as its chars, two bytes each, high byte first.
+   *
+   * @param key key to encode, not null.
+   * @return encoded key.
+   */
+  @Override
+  byte[] encode(String key) {
+    byte[] bytes = new byte[key.length() * 2];
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      bytes[2 * i] = (byte) (c >>> 8);
+      bytes[2 * i + 1] = (byte) c;
+    }
+    return bytes;
+  }
+
+  /**
+   * Decode a key encoded by encode.
+   *
+   * @param bytes encoded key.
+   * @return the key.
+   */
+  @Override
+  String decode(byte[] bytes) {
+    char[] chars = new char[bytes.length / 2];
+    for (int i = 0; i < chars.length; i++)
+      chars[i] = (char) ((bytes[2 * i] & 0xFF) << 8 | bytes[2 * i + 1] & 0xFF);
+    return new String(chars);
+  }
+}
@@ -0,0 +1,220 @@
+package radix_tree;
+
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RadixTreeTest {
+  RadixTree<String> tree1;
+  ByteRadixTree<Integer> tree2;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    tree1 = new RadixTree<String>();
+    tree2 = new ByteRadixTree<Integer>();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    tree1 = null;
+    tree2 = null;
+  }
+
+  /**
+   * Check the shape of a radix tree: every inner node has at least two keys
+   * below it, its children fit its size, which is not too large for them, and
+   * the sorted bytes of the small sizes are in order.
+   */
+  private <V> void checkNodes(AbstractRadixTree.Node<V> node) {
+    if (!(node instanceof AbstractRadixTree.Inner))
+      return;
+    AbstractRadixTree.Inner<V> inner = (AbstractRadixTree.Inner<V>) node;
+    int capacity = inner.children.length;
+    Assert.assertEquals(true, inner.count + (inner.leaf == null ? 0 : 1) >= 2);
+    Assert.assertEquals(true, inner.count <= capacity);
+    Assert.assertEquals(true, capacity == 4 || capacity == 16 && inner.count > 3
+        || capacity == 48 && inner.count > 12 || inner.count > 40);
+    int found = 0;
+    for (int b = inner.nextByte(-1); b >= 0; b = inner.nextByte(b)) {
+      found++;
+      checkNodes(inner.find(b));
+    }
+    Assert.assertEquals(inner.count, found);
+    if (inner.keys != null)
+      for (int i = 1; i < inner.count; i++)
+        Assert.assertEquals(true,
+            (inner.keys[i - 1] & 0xFF) < (inner.keys[i] & 0xFF));
+  }
+
+  /**
+   * Insert keys that are prefixes of each other, and check lookups, order and
+   * the structural queries.
+   */
+  @Test
+  void testRADIX_001_prefix_keys() {
+    try {
+      String[] keys = {"romane", "romanus", "romulus", "rubens", "ruber",
+          "rubicon", "rubicundus", "rom", "r", ""};
+      for (String key : keys)
+        tree1.insert(key, key.toUpperCase());
+      checkNodes(tree1.getRoot());
+      Assert.assertEquals(keys.length, tree1.numKeys());
+      for (String key : keys)
+        Assert.assertEquals(key.toUpperCase(), tree1.get(key));
+      Assert.assertEquals(false, tree1.contains("roman"));
+      Assert.assertEquals(false, tree1.contains("romanesque"));
+      Assert.assertEquals(false, tree1.contains("ro"));
+
+      List<String> sorted = new ArrayList<String>(Arrays.asList(keys));
+      sorted.sort(null);
+      Assert.assertEquals(sorted, tree1.getInOrderTraversal());
+      Assert.assertEquals(sorted, tree1.getPreOrderTraversal());
+      Assert.assertEquals("", tree1.getKeyAtRoot());
+      Assert.assertEquals("r", tree1.getKeyOfLeftChildOf(""));
+      Assert.assertEquals(null, tree1.getKeyOfRightChildOf(""));
+      Assert.assertEquals("rom", tree1.getKeyOfLeftChildOf("r"));
+      // Both 'o' and 'u' start with byte 0, the node of "r" has one child.
+      Assert.assertEquals(null, tree1.getKeyOfRightChildOf("r"));
+      Assert.assertEquals(null, tree1.getKeyOfLeftChildOf("rubicon"));
+      List<String> post = tree1.getPostOrderTraversal();
+      Assert.assertEquals("", post.get(post.size() - 1));
+      Assert.assertEquals("r", post.get(post.size() - 2));
+      Assert.assertEquals(keys.length, tree1.getLevelOrderTraversal().size());
+      Assert.assertEquals("", tree1.getLevelOrderTraversal().get(0));
+
+      try {
+        tree1.insert("rom", "x");
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+      try {
+        tree1.getKeyOfLeftChildOf("roman");
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+      try {
+        tree1.get(null);
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+
+      tree1.remove("r");
+      tree1.remove("rom");
+      tree1.remove("");
+      checkNodes(tree1.getRoot());
+      sorted.removeAll(Arrays.asList("r", "rom", ""));
+      Assert.assertEquals(sorted, tree1.getInOrderTraversal());
+      Assert.assertEquals("romane", tree1.getKeyAtRoot());
+      try {
+        tree1.remove("rom");
+        fail("Not supposed to reach here. Should have thrown exception.");
+      } catch (Exception e) {
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RADIX 001: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Run random inserts and removes of strings over a small alphabet against a
+   * TreeMap, so nodes split, merge, grow and shrink.
+   */
+  @Test
+  void testRADIX_002_matches_tree_map() {
+    try {
+      Random random = new Random(11);
+      TreeMap<String, String> expected = new TreeMap<String, String>();
+      for (int i = 0; i < 20000; i++) {
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(5);
+        for (int j = 0; j < length; j++)
+          sb.append((char) ('a' + random.nextInt(60)));
+        if (random.nextInt(10) == 0)
+          sb.append('\u0100'); // Differs from 'a' in its high byte.
+        String key = sb.toString();
+        if (random.nextInt(3) != 0) {
+          if (expected.containsKey(key))
+            Assert.assertEquals(expected.get(key), tree1.get(key));
+          else {
+            tree1.insert(key, "v" + i);
+            expected.put(key, "v" + i);
+          }
+        } else if (expected.remove(key) != null)
+          tree1.remove(key);
+        else
+          Assert.assertEquals(false, tree1.contains(key));
+        if (i % 1000 == 0) {
+          checkNodes(tree1.getRoot());
+          Assert.assertEquals(new ArrayList<String>(expected.keySet()),
+              tree1.getInOrderTraversal());
+        }
+      }
+      Assert.assertEquals(expected.size(), tree1.numKeys());
+      for (String key : new ArrayList<String>(expected.keySet())) {
+        tree1.remove(key);
+        if (random.nextInt(100) == 0)
+          checkNodes(tree1.getRoot());
+      }
+      Assert.assertEquals(0, tree1.numKeys());
+      Assert.assertEquals(0, tree1.getHeight());
+      Assert.assertEquals(null, tree1.getKeyAtRoot());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RADIX 002: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Fill a node with all 256 bytes, then empty it, with byte[] keys ordered
+   * as unsigned bytes.
+   */
+  @Test
+  void testRADIX_003_byte_keys() {
+    try {
+      for (int b = 255; b >= 0; b--)
+        tree2.insert(new byte[] {7, (byte) b, 1}, b);
+      checkNodes(tree2.getRoot());
+      Assert.assertEquals(256, ((AbstractRadixTree.Inner<Integer>) tree2
+          .getRoot()).children.length);
+      Assert.assertEquals(2, tree2.getHeight());
+      tree2.insert(new byte[] {7}, -1); // Kept by the root.
+      Assert.assertEquals(0, tree2.getKeyOfLeftChildOf(new byte[] {7})[1]);
+      Assert.assertEquals(-1, tree2.getKeyOfRightChildOf(new byte[] {7})[1]);
+      tree2.remove(new byte[] {7});
+      List<byte[]> keys = tree2.getInOrderTraversal();
+      for (int b = 0; b < 256; b++) {
+        Assert.assertEquals(b, keys.get(b)[1] & 0xFF);
+        Assert.assertEquals(Integer.valueOf(b), tree2.get(keys.get(b)));
+      }
+      byte[] key = {7, 5, 1};
+      tree2.remove(key);
+      key[1] = 6; // The tree keeps its own copy.
+      Assert.assertEquals(false, tree2.contains(new byte[] {7, 5, 1}));
+      Assert.assertEquals(true, tree2.contains(new byte[] {7, 6, 1}));
+      for (int b = 0; b < 255; b++)
+        if (b != 5)
+          tree2.remove(new byte[] {7, (byte) b, 1});
+      checkNodes(tree2.getRoot());
+      Assert.assertEquals(1, tree2.numKeys());
+      Assert.assertEquals(1, tree2.getHeight());
+      Assert.assertEquals(255, tree2.getKeyAtRoot()[1] & 0xFF);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RADIX 003: " + e.getMessage());
+    }
+  }
+}
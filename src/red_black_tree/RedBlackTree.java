@@ -0,0 +1,613 @@
+package red_black_tree;
+
+import avl_tree.AvlTreeADT;
+import exception.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to implement a red-black tree behind the same operations as the AVL
+ * tree. A red-black tree is less strictly balanced (height at most 2 log n
+ * instead of 1.44 log n) but re-balances every insert with at most two
+ * rotations and every remove with at most three, which suits write-heavy
+ * workloads.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class RedBlackTree<K extends Comparable<K>, V>
+    implements AvlTreeADT<K, V> {
+  private static final boolean RED = true;
+  private static final boolean BLACK = false;
+
+  /**
+   * Class to represent node on a red-black tree. A node stores a key-value
+   * pair, references to its children and its parent, and its color.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  static class Node<K, V> {
+    K key; // Key of node.
+    V value; // Value of node.
+    Node<K, V> left; // Reference to its left child node.
+    Node<K, V> right; // Reference to its right child node.
+    Node<K, V> parent; // Reference to its parent node, null for the root.
+    boolean color; // RED or BLACK.
+
+    /**
+     * Constructor of a new red node.
+     *
+     * @param key    key of node.
+     * @param value  value of node.
+     * @param parent reference to its parent node.
+     */
+    Node(K key, V value, Node<K, V> parent) {
+      this.key = key;
+      this.value = value;
+      this.parent = parent;
+      this.color = RED; // New nodes are red so black heights do not change.
+    }
+  }
+
+  private Node<K, V> root; // Root of the tree.
+  private int numKeys; // Number of key-value pairs in the tree.
+
+  /**
+   * Constructor of this red-black tree. Initialize root as null and numKeys as
+   * 0.
+   */
+  public RedBlackTree() {
+    this.root = null;
+    this.numKeys = 0;
+  }
+
+  /**
+   * Returns the key that is in the root node of this tree. If root is null,
+   * returns null.
+   *
+   * @return key found at root node, or null.
+   */
+  @Override
+  public K getKeyAtRoot() {
+    return this.root == null ? null : this.root.key;
+  }
+
+  /**
+   * Tries to find a node with a key that matches the specified key. If a
+   * matching node is found, it returns the key that is in the left child. If
+   * the left child of the found node is null, returns null.
+   *
+   * @param key A key to search for.
+   * @return The key that is in the left child of the found key.
+   *
+   * @throws IllegalNullArgumentException if key argument is null.
+   * @throws KeyNotFoundException         if key is not found in this tree.
+   */
+  @Override
+  public K getKeyOfLeftChildOf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    Node<K, V> node = getExistingNode(key);
+    return node.left == null ? null : node.left.key;
+  }
+
+  /**
+   * Tries to find a node with a key that matches the specified key. If a
+   * matching node is found, it returns the key that is in the right child. If
+   * the right child of the found node is null, returns null.
+   *
+   * @param key A key to search for.
+   * @return The key that is in the right child of the found key.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found in this tree.
+   */
+  @Override
+  public K getKeyOfRightChildOf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    Node<K, V> node = getExistingNode(key);
+    return node.right == null ? null : node.right.key;
+  }
+
+  /**
+   * Returns the height of this tree, the number of levels that contain keys.
+   * Nodes do not store their height, so this walks the whole tree.
+   *
+   * @return the number of levels that contain keys in this tree.
+   */
+  @Override
+  public int getHeight() {
+    return getHeight(this.root);
+  }
+
+  /**
+   * Recursive method to compute the height of a sub-tree.
+   *
+   * @param current root of the sub-tree.
+   * @return height of the sub-tree, 0 if it is empty.
+   */
+  private int getHeight(Node<K, V> current) {
+    if (current == null)
+      return 0;
+    return 1 + Math.max(getHeight(current.left), getHeight(current.right));
+  }
+
+  /**
+   * Returns the keys of the data structure in sorted order: L V R.
+   *
+   * @return List of Keys in-order.
+   */
+  @Override
+  public List<K> getInOrderTraversal() {
+    List<K> keys = new ArrayList<K>(this.numKeys);
+    getInOrderHelper(this.root, keys);
+    return keys;
+  }
+
+  /**
+   * Recursive method to traverse tree in-order.
+   *
+   * @param current the current node.
+   * @param keys    list to add the keys to.
+   */
+  private void getInOrderHelper(Node<K, V> current, List<K> keys) {
+    if (current == null)
+      return;
+    getInOrderHelper(current.left, keys);
+    keys.add(current.key);
+    getInOrderHelper(current.right, keys);
+  }
+
+  /**
+   * Returns the keys of the data structure in pre-order: V L R.
+   *
+   * @return List of Keys in pre-order.
+   */
+  @Override
+  public List<K> getPreOrderTraversal() {
+    List<K> keys = new ArrayList<K>(this.numKeys);
+    getPreOrderHelper(this.root, keys);
+    return keys;
+  }
+
+  /**
+   * Recursive method to traverse tree pre-order.
+   *
+   * @param current the current node.
+   * @param keys    list to add the keys to.
+   */
+  private void getPreOrderHelper(Node<K, V> current, List<K> keys) {
+    if (current == null)
+      return;
+    keys.add(current.key);
+    getPreOrderHelper(current.left, keys);
+    getPreOrderHelper(current.right, keys);
+  }
+
+  /**
+   * Returns the keys of the data structure in post-order: L R V.
+   *
+   * @return List of Keys in post-order.
+   */
+  @Override
+  public List<K> getPostOrderTraversal() {
+    List<K> keys = new ArrayList<K>(this.numKeys);
+    getPostOrderHelper(this.root, keys);
+    return keys;
+  }
+
+  /**
+   * Recursive method to traverse tree post-order.
+   *
+   * @param current the current node.
+   * @param keys    list to add the keys to.
+   */
+  private void getPostOrderHelper(Node<K, V> current, List<K> keys) {
+    if (current == null)
+      return;
+    getPostOrderHelper(current.left, keys);
+    getPostOrderHelper(current.right, keys);
+    keys.add(current.key);
+  }
+
+  /**
+   * Returns the keys of the data structure in level-order, the root first and
+   * then each level from left to right.
+   *
+   * @return List of Keys in level-order.
+   */
+  @Override
+  public List<K> getLevelOrderTraversal() {
+    List<K> keys = new ArrayList<K>(this.numKeys);
+    List<Node<K, V>> level = new ArrayList<Node<K, V>>();
+    if (this.root != null)
+      level.add(this.root);
+    while (!level.isEmpty()) { // Loop through each level.
+      List<Node<K, V>> next = new ArrayList<Node<K, V>>();
+      for (Node<K, V> node : level) {
+        keys.add(node.key);
+        if (node.left != null)
+          next.add(node.left);
+        if (node.right != null)
+          next.add(node.right);
+      }
+      level = next;
+    }
+    return keys;
+  }
+
+  /**
+   * Add the key-value pair to the data structure and increase the number of
+   * keys. The duplicate check is done by the same descent that finds the
+   * insertion point.
+   *
+   * @param key   A key to insert.
+   * @param value A value to insert.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws DuplicateKeyException        if key is already in the tree.
+   */
+  @Override
+  public void insert(K key, V value)
+      throws IllegalNullArgumentException, DuplicateKeyException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Node<K, V> parent = null;
+    Node<K, V> current = this.root;
+    int compare = 0;
+    while (current != null) { // Descend to the insertion point.
+      parent = current;
+      compare = key.compareTo(current.key);
+      if (compare < 0)
+        current = current.left;
+      else if (compare > 0)
+        current = current.right;
+      else
+        throw new DuplicateKeyException();
+    }
+    Node<K, V> newNode = new Node<K, V>(key, value, parent);
+    if (parent == null)
+      this.root = newNode;
+    else if (compare < 0)
+      parent.left = newNode;
+    else
+      parent.right = newNode;
+    fixAfterInsert(newNode);
+    this.numKeys++;
+  }
+
+  /**
+   * Restore the red-black properties after inserting a red node: recolor
+   * while the uncle is red, then fix the remaining red-red violation with at
+   * most two rotations.
+   *
+   * @param node node just inserted.
+   */
+  private void fixAfterInsert(Node<K, V> node) {
+    while (node != this.root && colorOf(node.parent) == RED) {
+      Node<K, V> parent = node.parent;
+      Node<K, V> grandParent = parent.parent;
+      if (parent == grandParent.left) {
+        Node<K, V> uncle = grandParent.right;
+        if (colorOf(uncle) == RED) { // Recolor and continue upwards.
+          parent.color = BLACK;
+          uncle.color = BLACK;
+          grandParent.color = RED;
+          node = grandParent;
+        } else {
+          if (node == parent.right) { // Left right case.
+            node = parent;
+            rotateLeft(node);
+            parent = node.parent;
+          }
+          parent.color = BLACK; // Left left case.
+          grandParent.color = RED;
+          rotateRight(grandParent);
+        }
+      } else {
+        Node<K, V> uncle = grandParent.left;
+        if (colorOf(uncle) == RED) { // Recolor and continue upwards.
+          parent.color = BLACK;
+          uncle.color = BLACK;
+          grandParent.color = RED;
+          node = grandParent;
+        } else {
+          if (node == parent.left) { // Right left case.
+            node = parent;
+            rotateRight(node);
+            parent = node.parent;
+          }
+          parent.color = BLACK; // Right right case.
+          grandParent.color = RED;
+          rotateLeft(grandParent);
+        }
+      }
+    }
+    this.root.color = BLACK;
+  }
+
+  /**
+   * If key is found, remove the key-value pair from the data structure and
+   * decrease number keys.
+   *
+   * @param key A key to remove.
+   * @return true always, indicating node removed successfully.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found in this tree.
+   */
+  @Override
+  public boolean remove(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    Node<K, V> node = getExistingNode(key);
+    if (node.left != null && node.right != null) {
+      // Copy the in-order successor into node, then remove the successor,
+      // which has at most one child.
+      Node<K, V> successor = node.right;
+      while (successor.left != null)
+        successor = successor.left;
+      node.key = successor.key;
+      node.value = successor.value;
+      node = successor;
+    }
+    Node<K, V> child = node.left != null ? node.left : node.right;
+    if (child != null) { // Splice the child in place of node.
+      replace(node, child);
+      if (node.color == BLACK)
+        fixAfterRemove(child);
+    } else if (node.parent == null) { // Removing the only node.
+      this.root = null;
+    } else { // Leaf: fix while it is still linked, then unlink it.
+      if (node.color == BLACK)
+        fixAfterRemove(node);
+      replace(node, null);
+    }
+    node.left = node.right = node.parent = null;
+    this.numKeys--;
+    return true;
+  }
+
+  /**
+   * Restore the red-black properties after removing a black node, with at
+   * most three rotations.
+   *
+   * @param node node that took the place of the removed one and is short of
+   *             one black node.
+   */
+  private void fixAfterRemove(Node<K, V> node) {
+    while (node != this.root && colorOf(node) == BLACK) {
+      Node<K, V> parent = node.parent;
+      if (node == parent.left) {
+        Node<K, V> sibling = parent.right;
+        if (colorOf(sibling) == RED) { // Make the sibling black.
+          sibling.color = BLACK;
+          parent.color = RED;
+          rotateLeft(parent);
+          sibling = parent.right;
+        }
+        if (colorOf(sibling.left) == BLACK
+            && colorOf(sibling.right) == BLACK) {
+          sibling.color = RED; // Push the missing black upwards.
+          node = parent;
+        } else {
+          if (colorOf(sibling.right) == BLACK) {
+            sibling.left.color = BLACK;
+            sibling.color = RED;
+            rotateRight(sibling);
+            sibling = parent.right;
+          }
+          sibling.color = parent.color;
+          parent.color = BLACK;
+          sibling.right.color = BLACK;
+          rotateLeft(parent);
+          node = this.root; // Done.
+        }
+      } else {
+        Node<K, V> sibling = parent.left;
+        if (colorOf(sibling) == RED) { // Make the sibling black.
+          sibling.color = BLACK;
+          parent.color = RED;
+          rotateRight(parent);
+          sibling = parent.left;
+        }
+        if (colorOf(sibling.left) == BLACK
+            && colorOf(sibling.right) == BLACK) {
+          sibling.color = RED; // Push the missing black upwards.
+          node = parent;
+        } else {
+          if (colorOf(sibling.left) == BLACK) {
+            sibling.right.color = BLACK;
+            sibling.color = RED;
+            rotateLeft(sibling);
+            sibling = parent.left;
+          }
+          sibling.color = parent.color;
+          parent.color = BLACK;
+          sibling.left.color = BLACK;
+          rotateRight(parent);
+          node = this.root; // Done.
+        }
+      }
+    }
+    node.color = BLACK;
+  }
+
+  /**
+   * Returns the value associated with the specified key.
+   *
+   * @param key A key to get the value associated with it.
+   * @return the value associated with the give key if found.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found in this tree.
+   */
+  @Override
+  public V get(K key) throws IllegalNullArgumentException, KeyNotFoundException {
+    return getExistingNode(key).value;
+  }
+
+  /**
+   * Returns true if the key is in the data structure.
+   *
+   * @param key A key to check if it exists in data structure.
+   * @return true if key is found, false otherwise.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   */
+  @Override
+  public boolean contains(K key) throws IllegalNullArgumentException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    return getNode(key) != null;
+  }
+
+  /**
+   * Returns the number of key-value pairs in the data structure.
+   *
+   * @return the number of key-value pairs in the data structure.
+   */
+  @Override
+  public int numKeys() {
+    return this.numKeys;
+  }
+
+  /**
+   * Print the tree sideways, one key per line with the right sub-tree above
+   * and the left sub-tree below its parent. Red keys are marked with *.
+   *
+   * Look from bottom to top to read the keys in order.
+   */
+  @Override
+  public void print() {
+    StringBuilder sb = new StringBuilder();
+    printHelper(this.root, "", sb);
+    System.out.print(sb);
+  }
+
+  /**
+   * Recursive method to print a sub-tree sideways.
+   *
+   * @param current root of the sub-tree.
+   * @param indent  indentation of current.
+   * @param sb      buffer to print into.
+   */
+  private void printHelper(Node<K, V> current, String indent,
+      StringBuilder sb) {
+    if (current == null)
+      return;
+    printHelper(current.right, indent + "|       ", sb);
+    sb.append(indent).append(indent.isEmpty() ? "" : "|-------")
+        .append(current.key).append(current.color == RED ? "*" : "")
+        .append('\n');
+    printHelper(current.left, indent + "|       ", sb);
+  }
+
+  /**
+   * Find the node of a key, checking the argument the way the public lookups
+   * do.
+   *
+   * @param key key to be looked for.
+   * @return node that contains key.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found in this tree.
+   */
+  private Node<K, V> getExistingNode(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Node<K, V> node = getNode(key);
+    if (node == null)
+      throw new KeyNotFoundException();
+    return node;
+  }
+
+  /**
+   * Get node helper method.
+   *
+   * @param key key to be looked for.
+   * @return node that contains key given if found, otherwise null.
+   */
+  Node<K, V> getNode(K key) {
+    Node<K, V> current = this.root;
+    while (current != null) {
+      int compare = key.compareTo(current.key);
+      if (compare < 0)
+        current = current.left;
+      else if (compare > 0)
+        current = current.right;
+      else
+        return current;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the root node, for tests of this package.
+   *
+   * @return root of the tree, or null if the tree is empty.
+   */
+  Node<K, V> getRoot() {
+    return this.root;
+  }
+
+  /**
+   * Returns the color of a node, treating null leaves as black.
+   *
+   * @param node node, may be null.
+   * @return color of the node.
+   */
+  private static boolean colorOf(Node<?, ?> node) {
+    return node == null ? BLACK : node.color;
+  }
+
+  /**
+   * Replace node by replacement in the link from its parent.
+   *
+   * @param node        node to unlink.
+   * @param replacement node to link instead, may be null.
+   */
+  private void replace(Node<K, V> node, Node<K, V> replacement) {
+    if (replacement != null)
+      replacement.parent = node.parent;
+    if (node.parent == null)
+      this.root = replacement;
+    else if (node == node.parent.left)
+      node.parent.left = replacement;
+    else
+      node.parent.right = replacement;
+  }
+
+  /**
+   * Rotate the sub-tree rooted at node to the left.
+   *
+   * @param node root of the sub-tree, its right child becomes the new root.
+   */
+  private void rotateLeft(Node<K, V> node) {
+    Node<K, V> newRoot = node.right;
+    node.right = newRoot.left;
+    if (newRoot.left != null)
+      newRoot.left.parent = node;
+    replace(node, newRoot);
+    newRoot.left = node;
+    node.parent = newRoot;
+  }
+
+  /**
+   * Rotate the sub-tree rooted at node to the right.
+   *
+   * @param node root of the sub-tree, its left child becomes the new root.
+   */
+  private void rotateRight(Node<K, V> node) {
+    Node<K, V> newRoot = node.left;
+    node.left = newRoot.right;
+    if (newRoot.right != null)
+      newRoot.right.parent = node;
+    replace(node, newRoot);
+    newRoot.right = node;
+    node.parent = newRoot;
+  }
+}
@@ -0,0 +1,571 @@
+package red_black_tree;
+
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RedBlackTreeTest {
+  RedBlackTree<String, String> tree1;
+  RedBlackTree<Integer, String> tree2;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    tree1 = new RedBlackTree<String, String>();
+    tree2 = new RedBlackTree<Integer, String>();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    tree1 = null;
+    tree2 = null;
+  }
+
+  /**
+   * Check the red-black properties of a tree: the root is black, no red node
+   * has a red child, every path has the same number of black nodes, keys are
+   * in order and parent links match child links.
+   */
+  private <K extends Comparable<K>, V> void checkProperties(
+      RedBlackTree<K, V> tree) {
+    RedBlackTree.Node<K, V> root = tree.getRoot();
+    if (root == null)
+      return;
+    Assert.assertEquals(null, root.parent);
+    Assert.assertEquals(false, root.color);
+    checkProperties(root);
+  }
+
+  /**
+   * Recursive checker of the red-black properties.
+   *
+   * @return black height of the sub-tree.
+   */
+  private <K extends Comparable<K>, V> int checkProperties(
+      RedBlackTree.Node<K, V> current) {
+    if (current == null)
+      return 1;
+    if (current.left != null) {
+      Assert.assertEquals(current, current.left.parent);
+      Assert.assertEquals(true, current.left.key.compareTo(current.key) < 0);
+      if (current.color)
+        Assert.assertEquals(false, current.left.color);
+    }
+    if (current.right != null) {
+      Assert.assertEquals(current, current.right.parent);
+      Assert.assertEquals(true, current.right.key.compareTo(current.key) > 0);
+      if (current.color)
+        Assert.assertEquals(false, current.right.color);
+    }
+    int left = checkProperties(current.left);
+    int right = checkProperties(current.right);
+    Assert.assertEquals(left, right);
+    return left + (current.color ? 0 : 1);
+  }
+
+  /**
+   * Insert three values in sorted order and then check the root, left, and
+   * right keys to see if re-balancing occurred.
+   */
+  @Test
+  void testRBT_001_insert_sorted_order_simple() {
+    try {
+      tree2.insert(10, "10");
+      tree2.insert(20, "20");
+      tree2.insert(30, "30");
+      Assert.assertEquals(Integer.valueOf(20), tree2.getKeyAtRoot());
+      Assert.assertEquals(Integer.valueOf(10), tree2.getKeyOfLeftChildOf(20));
+      Assert.assertEquals(Integer.valueOf(30), tree2.getKeyOfRightChildOf(20));
+      checkProperties(tree2);
+      tree2.print();
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 001: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Insert three values in reverse sorted order and then check the root,
+   * left, and right keys to see if re-balancing occurred.
+   */
+  @Test
+  void testRBT_002_insert_reversed_sorted_order_simple() {
+    try {
+      tree2.insert(999, "nine nine nine");
+      tree2.insert(88, "eight eight");
+      tree2.insert(7, "seven");
+      Assert.assertEquals(Integer.valueOf(88), tree2.getKeyAtRoot());
+      Assert.assertEquals(Integer.valueOf(7), tree2.getKeyOfLeftChildOf(88));
+      Assert.assertEquals(Integer.valueOf(999),
+          tree2.getKeyOfRightChildOf(88));
+      checkProperties(tree2);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 002: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Insert three values so that a right-left and then a left-right double
+   * rotation is needed to fix the tree.
+   */
+  @Test
+  void testRBT_003_insert_double_rotation_cases() {
+    try {
+      tree2.insert(10, "10");
+      tree2.insert(30, "30");
+      tree2.insert(20, "20");
+      Assert.assertEquals(Integer.valueOf(20), tree2.getKeyAtRoot());
+      Assert.assertEquals(Integer.valueOf(10), tree2.getKeyOfLeftChildOf(20));
+      Assert.assertEquals(Integer.valueOf(30), tree2.getKeyOfRightChildOf(20));
+
+      tree1.insert("30", "30");
+      tree1.insert("10", "10");
+      tree1.insert("20", "20");
+      Assert.assertEquals("20", tree1.getKeyAtRoot());
+      Assert.assertEquals("10", tree1.getKeyOfLeftChildOf("20"));
+      Assert.assertEquals("30", tree1.getKeyOfRightChildOf("20"));
+      checkProperties(tree1);
+      checkProperties(tree2);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 003: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Insert one key and check every operation, then remove it.
+   */
+  @Test
+  void testRBT_004_insert_one_check_everything() {
+    try {
+      tree1.insert("aa", "value");
+      Assert.assertEquals("aa", tree1.getKeyAtRoot());
+      Assert.assertEquals(null, tree1.getKeyOfLeftChildOf("aa"));
+      Assert.assertEquals(null, tree1.getKeyOfRightChildOf("aa"));
+      Assert.assertEquals(1, tree1.getHeight());
+      Assert.assertEquals(1, tree1.numKeys());
+      Assert.assertEquals("value", tree1.get("aa"));
+      Assert.assertEquals(true, tree1.contains("aa"));
+      Assert.assertEquals(1, tree1.getInOrderTraversal().size());
+      Assert.assertEquals(1, tree1.getPreOrderTraversal().size());
+      Assert.assertEquals(1, tree1.getPostOrderTraversal().size());
+      Assert.assertEquals(1, tree1.getLevelOrderTraversal().size());
+
+      Assert.assertEquals(true, tree1.remove("aa"));
+      Assert.assertEquals(null, tree1.getKeyAtRoot());
+      Assert.assertEquals(0, tree1.getHeight());
+      Assert.assertEquals(0, tree1.numKeys());
+      Assert.assertEquals(false, tree1.contains("aa"));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 004: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Insert seven keys and check the four traversals.
+   */
+  @Test
+  void testRBT_005_insert_integer_traversals() {
+    try {
+      for (int key : new int[] {40, 20, 60, 10, 30, 50, 70})
+        tree2.insert(key, "v" + key);
+      Assert.assertEquals(List.of(10, 20, 30, 40, 50, 60, 70),
+          tree2.getInOrderTraversal());
+      Assert.assertEquals(List.of(40, 20, 10, 30, 60, 50, 70),
+          tree2.getPreOrderTraversal());
+      Assert.assertEquals(List.of(10, 30, 20, 50, 70, 60, 40),
+          tree2.getPostOrderTraversal());
+      Assert.assertEquals(List.of(40, 20, 60, 10, 30, 50, 70),
+          tree2.getLevelOrderTraversal());
+      Assert.assertEquals(3, tree2.getHeight());
+      checkProperties(tree2);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 005: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Insert keys in sorted order and check that the height stays within the
+   * red-black bound of 2 log2(n + 1).
+   */
+  @Test
+  void testRBT_006_heights_with_sorted_inserts() {
+    try {
+      for (int i = 1; i <= 1023; i++) {
+        tree2.insert(i, "v" + i);
+        double bound = 2 * Math.log(i + 1) / Math.log(2);
+        Assert.assertEquals(true, tree2.getHeight() <= bound);
+      }
+      Assert.assertEquals(1023, tree2.numKeys());
+      checkProperties(tree2);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 006: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Insert and remove random keys, checking the properties and the content
+   * against a TreeSet after every operation.
+   */
+  @Test
+  void testRBT_007_random_insert_remove_keeps_properties() {
+    try {
+      Random random = new Random(42);
+      TreeSet<Integer> expected = new TreeSet<Integer>();
+      for (int i = 0; i < 3000; i++) {
+        int key = random.nextInt(500);
+        if (expected.contains(key)) {
+          Assert.assertEquals(true, tree2.remove(key));
+          expected.remove(key);
+        } else {
+          tree2.insert(key, "v" + key);
+          expected.add(key);
+        }
+        checkProperties(tree2);
+        Assert.assertEquals(expected.size(), tree2.numKeys());
+      }
+      Assert.assertEquals(new ArrayList<Integer>(expected),
+          tree2.getInOrderTraversal());
+      List<Integer> keys = new ArrayList<Integer>(expected);
+      Collections.shuffle(keys, random);
+      for (int key : keys) {
+        Assert.assertEquals("v" + key, tree2.get(key));
+        tree2.remove(key);
+        checkProperties(tree2);
+      }
+      Assert.assertEquals(0, tree2.numKeys());
+      Assert.assertEquals(null, tree2.getKeyAtRoot());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 007: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Check exception handling and edge cases.
+   */
+  @Test
+  void testRBT_008_check_exception_handling_and_edge_cases() {
+    Assert.assertEquals(null, tree1.getKeyAtRoot());
+    Assert.assertEquals(0, tree1.getInOrderTraversal().size());
+    Assert.assertEquals(0, tree1.getLevelOrderTraversal().size());
+    try {
+      tree1.insert(null, "value");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree1.insert("aa", "value");
+      tree1.insert("aa", "other");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    Assert.assertEquals(1, tree1.numKeys());
+    try {
+      tree1.remove("zz");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree1.get("zz");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree1.getKeyOfLeftChildOf("zz");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree1.contains(null);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    Assert.assertEquals(1, tree1.numKeys());
+  }
+
+  /**
+   * Insert two keys, check every operation, then remove the root.
+   */
+  @Test
+  void testRBT_009_insert_two_check_everything() {
+    try {
+      tree2.insert(2000, "My birth year.");
+      tree2.insert(16, "My birth day.");
+      Assert.assertEquals(2, tree2.numKeys());
+      Assert.assertEquals(Integer.valueOf(2000), tree2.getKeyAtRoot());
+      Assert.assertEquals(Integer.valueOf(16),
+          tree2.getKeyOfLeftChildOf(2000));
+      Assert.assertEquals(null, tree2.getKeyOfRightChildOf(2000));
+      Assert.assertEquals(null, tree2.getKeyOfLeftChildOf(16));
+      Assert.assertEquals(null, tree2.getKeyOfRightChildOf(16));
+      Assert.assertEquals(2, tree2.getHeight());
+      Assert.assertEquals(List.of(16, 2000), tree2.getInOrderTraversal());
+      Assert.assertEquals(List.of(2000, 16), tree2.getPreOrderTraversal());
+      Assert.assertEquals(List.of(16, 2000), tree2.getPostOrderTraversal());
+      Assert.assertEquals(List.of(2000, 16), tree2.getLevelOrderTraversal());
+      Assert.assertEquals("My birth day.", tree2.get(16));
+      Assert.assertEquals(true, tree2.contains(2000));
+      Assert.assertEquals(true, tree2.contains(16));
+      Assert.assertEquals(false, tree2.contains(15));
+      checkProperties(tree2);
+
+      Assert.assertEquals(true, tree2.remove(2000));
+      Assert.assertEquals(1, tree2.numKeys());
+      Assert.assertEquals(Integer.valueOf(16), tree2.getKeyAtRoot());
+      Assert.assertEquals(null, tree2.getKeyOfLeftChildOf(16));
+      Assert.assertEquals(null, tree2.getKeyOfRightChildOf(16));
+      Assert.assertEquals(1, tree2.getHeight());
+      Assert.assertEquals(false, tree2.contains(2000));
+      checkProperties(tree2);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 009: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Insert nine keys, remove one, and check the keys, traversals and
+   * properties that remain.
+   */
+  @Test
+  void testRBT_010_insert_nine_remove_one() {
+    try {
+      for (int key : new int[] {50, 30, 70, 20, 40, 60, 80, 10, 90})
+        tree2.insert(key, "v" + key);
+      Assert.assertEquals(9, tree2.numKeys());
+      checkProperties(tree2);
+
+      Assert.assertEquals(true, tree2.remove(30));
+      Assert.assertEquals(8, tree2.numKeys());
+      Assert.assertEquals(false, tree2.contains(30));
+      Assert.assertEquals(List.of(10, 20, 40, 50, 60, 70, 80, 90),
+          tree2.getInOrderTraversal());
+      Assert.assertEquals(8, tree2.getPreOrderTraversal().size());
+      Assert.assertEquals(8, tree2.getPostOrderTraversal().size());
+      List<Integer> levelOrder = tree2.getLevelOrderTraversal();
+      Assert.assertEquals(8, levelOrder.size());
+      Assert.assertEquals(tree2.getKeyAtRoot(), levelOrder.get(0));
+      Assert.assertEquals(true, tree2.getHeight() <= 4);
+      checkProperties(tree2);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 010: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Insert string keys and check the four traversals.
+   */
+  @Test
+  void testRBT_011_insert_string_traversals() {
+    try {
+      for (String key : new String[] {"dd", "bb", "ff", "aa", "cc", "ee",
+          "gg"})
+        tree1.insert(key, key.toUpperCase());
+      Assert.assertEquals(List.of("aa", "bb", "cc", "dd", "ee", "ff", "gg"),
+          tree1.getInOrderTraversal());
+      Assert.assertEquals(List.of("dd", "bb", "aa", "cc", "ff", "ee", "gg"),
+          tree1.getPreOrderTraversal());
+      Assert.assertEquals(List.of("aa", "cc", "bb", "ee", "gg", "ff", "dd"),
+          tree1.getPostOrderTraversal());
+      Assert.assertEquals(List.of("dd", "bb", "ff", "aa", "cc", "ee", "gg"),
+          tree1.getLevelOrderTraversal());
+      Assert.assertEquals("CC", tree1.get("cc"));
+      checkProperties(tree1);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 011: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Check that get and contains do not change the tree.
+   */
+  @Test
+  void testRBT_012_get_and_contains_do_not_affect_tree() {
+    try {
+      for (int i = 1; i <= 20; i++)
+        tree2.insert(i * 3, "v" + i);
+      List<Integer> before = tree2.getLevelOrderTraversal();
+      int height = tree2.getHeight();
+      for (int i = 0; i <= 61; i++) {
+        if (i % 3 == 0 && i > 0 && i <= 60)
+          Assert.assertEquals("v" + (i / 3), tree2.get(i));
+        Assert.assertEquals(i % 3 == 0 && i > 0 && i <= 60,
+            tree2.contains(i));
+      }
+      Assert.assertEquals(before, tree2.getLevelOrderTraversal());
+      Assert.assertEquals(height, tree2.getHeight());
+      Assert.assertEquals(20, tree2.numKeys());
+      checkProperties(tree2);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 012: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Check the height after inserts and removals that each trigger
+   * re-balancing.
+   */
+  @Test
+  void testRBT_013_heights_after_multiple_rebalancing() {
+    try {
+      for (int i = 1; i <= 9; i++) {
+        tree2.insert(i * 111, "v" + i);
+        double bound = 2 * Math.log(i + 1) / Math.log(2);
+        Assert.assertEquals(true, tree2.getHeight() <= bound);
+        checkProperties(tree2);
+      }
+      int remaining = 9;
+      for (int key : new int[] {333, 555, 999, 444, 666, 777}) {
+        Assert.assertEquals(true, tree2.remove(key));
+        remaining--;
+        double bound = 2 * Math.log(remaining + 1) / Math.log(2);
+        Assert.assertEquals(true, tree2.getHeight() <= bound);
+        checkProperties(tree2);
+      }
+      Assert.assertEquals(List.of(111, 222, 888), tree2.getInOrderTraversal());
+      Assert.assertEquals(2, tree2.getHeight());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 013: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Check the number of keys after inserts and removals that each trigger
+   * re-balancing.
+   */
+  @Test
+  void testRBT_014_num_keys_after_multiple_rebalancing() {
+    try {
+      for (int i = 1; i <= 9; i++) {
+        tree2.insert(i * 111, "v" + i);
+        Assert.assertEquals(i, tree2.numKeys());
+      }
+      int remaining = 9;
+      for (int key : new int[] {333, 555, 999, 444, 666, 777}) {
+        tree2.remove(key);
+        Assert.assertEquals(--remaining, tree2.numKeys());
+        Assert.assertEquals(remaining, tree2.getInOrderTraversal().size());
+      }
+      Assert.assertEquals(3, tree2.numKeys());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 014: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Check the exception handling and edge cases of every operation on both
+   * an empty and a single-key tree.
+   */
+  @Test
+  void testRBT_015_check_all_exception_handling_and_edge_cases() {
+    Assert.assertEquals(null, tree1.getKeyAtRoot());
+    Assert.assertEquals(null, tree2.getKeyAtRoot());
+    Assert.assertEquals(0, tree1.getHeight());
+    Assert.assertEquals(0, tree2.getHeight());
+    Assert.assertEquals(0, tree1.numKeys());
+    Assert.assertEquals(0, tree2.numKeys());
+    Assert.assertEquals(0, tree1.getInOrderTraversal().size());
+    Assert.assertEquals(0, tree1.getPreOrderTraversal().size());
+    Assert.assertEquals(0, tree1.getPostOrderTraversal().size());
+    Assert.assertEquals(0, tree1.getLevelOrderTraversal().size());
+    Assert.assertEquals(0, tree2.getInOrderTraversal().size());
+    Assert.assertEquals(0, tree2.getPreOrderTraversal().size());
+    Assert.assertEquals(0, tree2.getPostOrderTraversal().size());
+    Assert.assertEquals(0, tree2.getLevelOrderTraversal().size());
+    try {
+      tree1.insert("123", "abc");
+      tree2.insert(123, "abc");
+      Assert.assertEquals(null, tree1.getKeyOfLeftChildOf("123"));
+      Assert.assertEquals(null, tree1.getKeyOfRightChildOf("123"));
+      Assert.assertEquals(null, tree2.getKeyOfLeftChildOf(123));
+      Assert.assertEquals(null, tree2.getKeyOfRightChildOf(123));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception RBT 015: " + e.getMessage());
+    }
+    try {
+      tree2.insert(123, "duplicate");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree2.insert(null, "abc");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree1.remove(null);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree2.remove(null);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree2.remove(789);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree1.getKeyOfLeftChildOf(null);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree2.getKeyOfRightChildOf(null);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree1.getKeyOfRightChildOf("XYZ");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree2.getKeyOfLeftChildOf(789);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree1.get(null);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree2.get(789);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      tree2.contains(null);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    Assert.assertEquals(1, tree1.numKeys());
+    Assert.assertEquals(1, tree2.numKeys());
+  }
+}
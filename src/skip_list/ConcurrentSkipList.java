@@ -0,0 +1,532 @@
+package skip_list;
+
+import avl_tree.AvlTreeADT;
+import exception.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+/**
+ * Class to implement a lock-free skip list behind the same operations as the
+ * AVL tree. Links are updated with compare-and-set: a node is logically
+ * removed by marking its links, from the top level down to level 0, and is
+ * physically unlinked by the next traversal that meets it. Lookups never
+ * retry, inserts and removes retry only when a neighbouring link changed under
+ * them. Traversals and iterators are weakly consistent: they never fail under
+ * concurrent updates and see every key present for their whole duration.
+ *
+ * A skip list has no child links. Its structural queries are defined on the
+ * towers of the list instead: see getKeyAtRoot, getKeyOfLeftChildOf and
+ * getKeyOfRightChildOf.
+ *
+ * @param <K> is the generic type of key.
+ * @param <V> is the generic type of value.
+ *
+ * @author Khoa Thien Le (Harry).
+ */
+public class ConcurrentSkipList<K extends Comparable<K>, V>
+    implements AvlTreeADT<K, V>, Iterable<K> {
+  private static final int MAX_LEVEL = 32; // Levels 0 to MAX_LEVEL - 1.
+
+  /**
+   * Class to represent a tower of the skip list. The head and tail sentinels
+   * have a null key.
+   *
+   * @param <K> is the generic type of key.
+   * @param <V> is the generic type of value.
+   */
+  @SuppressWarnings("hiding")
+  static class Node<K, V> {
+    final K key; // Key of node.
+    volatile V value; // Value of node.
+    final AtomicMarkableReference<Node<K, V>>[] next; // Link of each level,
+                                                      // marked when removed.
+
+    /**
+     * Constructor of a tower.
+     *
+     * @param key      key of node.
+     * @param value    value of node.
+     * @param topLevel highest level of the tower.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Node(K key, V value, int topLevel) {
+      this.key = key;
+      this.value = value;
+      this.next = new AtomicMarkableReference[topLevel + 1];
+    }
+
+    /**
+     * @return highest level of the tower.
+     */
+    int topLevel() {
+      return this.next.length - 1;
+    }
+  }
+
+  private final Node<K, V> head; // Sentinel smaller than every key.
+  private final Node<K, V> tail; // Sentinel greater than every key.
+  private final AtomicInteger numKeys; // Number of key-value pairs.
+
+  /**
+   * Constructor of an empty skip list: every level of the head links to the
+   * tail.
+   */
+  public ConcurrentSkipList() {
+    this.head = new Node<K, V>(null, null, MAX_LEVEL - 1);
+    this.tail = new Node<K, V>(null, null, MAX_LEVEL - 1);
+    for (int level = 0; level < MAX_LEVEL; level++) {
+      this.head.next[level] =
+          new AtomicMarkableReference<Node<K, V>>(this.tail, false);
+      this.tail.next[level] =
+          new AtomicMarkableReference<Node<K, V>>(null, false);
+    }
+    this.numKeys = new AtomicInteger();
+  }
+
+  /**
+   * Compare a key with the key of a node, treating the tail as greater than
+   * every key.
+   *
+   * @param node node to compare with, not the head.
+   * @param key  key to compare.
+   * @return negative, zero or positive as the node key is smaller, equal or
+   *         greater than key.
+   */
+  private int compare(Node<K, V> node, K key) {
+    return node == this.tail ? 1 : node.key.compareTo(key);
+  }
+
+  /**
+   * Find the neighbours of a key at every level, unlinking marked nodes met
+   * on the way. preds[level] is the last node smaller than key and
+   * succs[level] the first node not smaller.
+   *
+   * @param key   key to search for.
+   * @param preds output array of predecessors, one per level.
+   * @param succs output array of successors, one per level.
+   * @return true if succs[0] holds key.
+   */
+  private boolean find(K key, Node<K, V>[] preds, Node<K, V>[] succs) {
+    boolean[] marked = {false};
+    retry: while (true) {
+      Node<K, V> pred = this.head;
+      for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+        Node<K, V> curr = pred.next[level].getReference();
+        while (true) {
+          Node<K, V> succ = curr == this.tail ? null
+              : curr.next[level].get(marked);
+          while (curr != this.tail && marked[0]) { // Unlink removed node.
+            if (!pred.next[level].compareAndSet(curr, succ, false, false))
+              continue retry; // Predecessor changed, start again.
+            curr = succ;
+            succ = curr == this.tail ? null : curr.next[level].get(marked);
+          }
+          if (compare(curr, key) < 0) { // Move right.
+            pred = curr;
+            curr = succ;
+          } else { // Move down.
+            break;
+          }
+        }
+        preds[level] = pred;
+        succs[level] = curr;
+      }
+      return compare(succs[0], key) == 0;
+    }
+  }
+
+  /**
+   * Wait-free lookup of the node of a key. Marked nodes are skipped, not
+   * unlinked.
+   *
+   * @param key key to search for.
+   * @return node that contains key, or null.
+   */
+  private Node<K, V> getNode(K key) {
+    boolean[] marked = {false};
+    Node<K, V> pred = this.head;
+    Node<K, V> curr = null;
+    for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+      curr = pred.next[level].getReference();
+      while (true) {
+        Node<K, V> succ = curr == this.tail ? null
+            : curr.next[level].get(marked);
+        while (curr != this.tail && marked[0]) { // Skip removed node.
+          curr = succ;
+          succ = curr == this.tail ? null : curr.next[level].get(marked);
+        }
+        if (compare(curr, key) < 0) {
+          pred = curr;
+          curr = succ;
+        } else {
+          break;
+        }
+      }
+    }
+    return compare(curr, key) == 0 ? curr : null;
+  }
+
+  /**
+   * Draw the top level of a new tower: level l with probability 2^-(l+1).
+   *
+   * @return top level of the new tower.
+   */
+  private static int randomLevel() {
+    int bits = ThreadLocalRandom.current().nextInt();
+    return Math.min(Integer.numberOfTrailingZeros(bits), MAX_LEVEL - 1);
+  }
+
+  /**
+   * Returns the first key of the highest level in use, where every search
+   * starts. If the list is empty, returns null.
+   *
+   * @return key found at the top of the list, or null.
+   */
+  @Override
+  public K getKeyAtRoot() {
+    for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+      Node<K, V> node = firstNode(level);
+      if (node != this.tail)
+        return node.key;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the key reached by dropping from the top of the tower of key to
+   * the level below and moving right once, or null if the tower has a single
+   * level or that key is also the right child.
+   *
+   * @param key A key to search for.
+   * @return The key below the top of the tower of key, or null.
+   *
+   * @throws IllegalNullArgumentException if key argument is null.
+   * @throws KeyNotFoundException         if key is not found in this list.
+   */
+  @Override
+  public K getKeyOfLeftChildOf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    Node<K, V> node = getExistingNode(key);
+    int top = node.topLevel();
+    if (top == 0)
+      return null;
+    Node<K, V> down = nextNode(node, top - 1);
+    Node<K, V> right = nextNode(node, top);
+    return down == right || down == this.tail ? null : down.key;
+  }
+
+  /**
+   * Returns the key that follows key at the top level of its tower, or null
+   * if there is none.
+   *
+   * @param key A key to search for.
+   * @return The next key at the top level of the tower of key, or null.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found in this list.
+   */
+  @Override
+  public K getKeyOfRightChildOf(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    Node<K, V> node = getExistingNode(key);
+    Node<K, V> right = nextNode(node, node.topLevel());
+    return right == this.tail ? null : right.key;
+  }
+
+  /**
+   * Returns the number of levels in use, 0 for an empty list.
+   *
+   * @return the number of levels that contain keys.
+   */
+  @Override
+  public int getHeight() {
+    for (int level = MAX_LEVEL - 1; level >= 0; level--)
+      if (firstNode(level) != this.tail)
+        return level + 1;
+    return 0;
+  }
+
+  /**
+   * Returns the keys of the data structure in sorted order. The traversal is
+   * weakly consistent.
+   *
+   * @return List of Keys in-order.
+   */
+  @Override
+  public List<K> getInOrderTraversal() {
+    List<K> keys = new ArrayList<K>();
+    for (K key : this)
+      keys.add(key);
+    return keys;
+  }
+
+  /**
+   * A skip list only has the sorted order, so this is the in-order traversal.
+   *
+   * @return List of Keys in sorted order.
+   */
+  @Override
+  public List<K> getPreOrderTraversal() {
+    return getInOrderTraversal();
+  }
+
+  /**
+   * A skip list only has the sorted order, so this is the in-order traversal.
+   *
+   * @return List of Keys in sorted order.
+   */
+  @Override
+  public List<K> getPostOrderTraversal() {
+    return getInOrderTraversal();
+  }
+
+  /**
+   * Returns the keys level by level from the highest level in use, each level
+   * in sorted order. A key appears once, at the top level of its tower.
+   *
+   * @return List of Keys in level-order.
+   */
+  @Override
+  public List<K> getLevelOrderTraversal() {
+    List<K> keys = new ArrayList<K>();
+    for (int level = getHeight() - 1; level >= 0; level--) {
+      for (Node<K, V> node = firstNode(level); node != this.tail;
+          node = nextNode(node, level))
+        if (node.topLevel() == level)
+          keys.add(node.key);
+    }
+    return keys;
+  }
+
+  /**
+   * Add the key-value pair to the data structure and increase the number of
+   * keys. The new tower is linked at level 0 first, which makes the key
+   * visible, then at each level above.
+   *
+   * @param key   A key to insert.
+   * @param value A value to insert.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws DuplicateKeyException        if key is already in the list.
+   */
+  @Override
+  public void insert(K key, V value)
+      throws IllegalNullArgumentException, DuplicateKeyException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    int topLevel = randomLevel();
+    Node<K, V>[] preds = newNodeArray();
+    Node<K, V>[] succs = newNodeArray();
+    while (true) {
+      if (find(key, preds, succs))
+        throw new DuplicateKeyException();
+      Node<K, V> newNode = new Node<K, V>(key, value, topLevel);
+      for (int level = 0; level <= topLevel; level++)
+        newNode.next[level] =
+            new AtomicMarkableReference<Node<K, V>>(succs[level], false);
+      if (!preds[0].next[0].compareAndSet(succs[0], newNode, false, false))
+        continue; // Level 0 changed, search again.
+      this.numKeys.incrementAndGet();
+      for (int level = 1; level <= topLevel; level++) {
+        while (true) {
+          Node<K, V> succ = newNode.next[level].getReference();
+          if (newNode.next[level].isMarked())
+            return; // Removed concurrently, stop linking.
+          if (succ != succs[level]
+              && !newNode.next[level].compareAndSet(succ, succs[level], false,
+                  false))
+            continue;
+          if (preds[level].next[level].compareAndSet(succs[level], newNode,
+              false, false))
+            break;
+          find(key, preds, succs); // Neighbours changed, search again.
+        }
+      }
+      return;
+    }
+  }
+
+  /**
+   * If key is found, remove the key-value pair from the data structure and
+   * decrease number keys. The thread that marks level 0 owns the removal.
+   *
+   * @param key A key to remove.
+   * @return true always, indicating node removed successfully.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found in this list.
+   */
+  @Override
+  public boolean remove(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Node<K, V>[] preds = newNodeArray();
+    Node<K, V>[] succs = newNodeArray();
+    if (!find(key, preds, succs))
+      throw new KeyNotFoundException();
+    Node<K, V> node = succs[0];
+    boolean[] marked = {false};
+    for (int level = node.topLevel(); level >= 1; level--) { // Mark upper.
+      Node<K, V> succ = node.next[level].get(marked);
+      while (!marked[0]) {
+        node.next[level].compareAndSet(succ, succ, false, true);
+        succ = node.next[level].get(marked);
+      }
+    }
+    Node<K, V> succ = node.next[0].get(marked);
+    while (true) { // Mark level 0.
+      if (node.next[0].compareAndSet(succ, succ, false, true)) {
+        this.numKeys.decrementAndGet();
+        find(key, preds, succs); // Unlink the tower.
+        return true;
+      }
+      succ = node.next[0].get(marked);
+      if (marked[0]) // Another thread removed it first.
+        throw new KeyNotFoundException();
+    }
+  }
+
+  /**
+   * Returns the value associated with the specified key.
+   *
+   * @param key A key to get the value associated with it.
+   * @return the value associated with the give key if found.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found in this list.
+   */
+  @Override
+  public V get(K key) throws IllegalNullArgumentException, KeyNotFoundException {
+    return getExistingNode(key).value;
+  }
+
+  /**
+   * Returns true if the key is in the data structure.
+   *
+   * @param key A key to check if it exists in data structure.
+   * @return true if key is found, false otherwise.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   */
+  @Override
+  public boolean contains(K key) throws IllegalNullArgumentException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    return getNode(key) != null;
+  }
+
+  /**
+   * Returns the number of key-value pairs in the data structure.
+   *
+   * @return the number of key-value pairs in the data structure.
+   */
+  @Override
+  public int numKeys() {
+    return this.numKeys.get();
+  }
+
+  /**
+   * Print the list, one line per level from the highest level in use.
+   */
+  @Override
+  public void print() {
+    StringBuilder sb = new StringBuilder();
+    for (int level = getHeight() - 1; level >= 0; level--) {
+      sb.append(level).append(':');
+      for (Node<K, V> node = firstNode(level); node != this.tail;
+          node = nextNode(node, level))
+        sb.append('\t').append(node.key);
+      sb.append('\n');
+    }
+    System.out.print(sb);
+  }
+
+  /**
+   * Returns a weakly consistent iterator over the keys in sorted order.
+   *
+   * @return iterator over the keys.
+   */
+  @Override
+  public Iterator<K> iterator() {
+    return new Iterator<K>() {
+      private Node<K, V> next = firstNode(0);
+
+      @Override
+      public boolean hasNext() {
+        return this.next != tail;
+      }
+
+      @Override
+      public K next() {
+        if (this.next == tail)
+          throw new NoSuchElementException();
+        K key = this.next.key;
+        this.next = nextNode(this.next, 0);
+        return key;
+      }
+    };
+  }
+
+  /**
+   * Find the node of a key, checking the argument the way the public lookups
+   * do.
+   *
+   * @param key key to be looked for.
+   * @return node that contains key.
+   *
+   * @throws IllegalNullArgumentException if key is null.
+   * @throws KeyNotFoundException         if key is not found in this list.
+   */
+  private Node<K, V> getExistingNode(K key)
+      throws IllegalNullArgumentException, KeyNotFoundException {
+    if (key == null)
+      throw new IllegalNullArgumentException();
+    Node<K, V> node = getNode(key);
+    if (node == null)
+      throw new KeyNotFoundException();
+    return node;
+  }
+
+  /**
+   * Returns the first unmarked node of a level.
+   *
+   * @param level level to read.
+   * @return first node, or the tail if the level is empty.
+   */
+  private Node<K, V> firstNode(int level) {
+    return nextNode(this.head, level);
+  }
+
+  /**
+   * Returns the first unmarked node after node at a level.
+   *
+   * @param node  node to start from.
+   * @param level level to read.
+   * @return next node, or the tail if there is none.
+   */
+  private Node<K, V> nextNode(Node<K, V> node, int level) {
+    boolean[] marked = {false};
+    Node<K, V> next = node.next[level].getReference();
+    while (next != this.tail) {
+      Node<K, V> after = next.next[level].get(marked);
+      if (!marked[0])
+        break;
+      next = after; // Skip removed node.
+    }
+    return next;
+  }
+
+  /**
+   * @return an array of nodes with one slot per level.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Node<K, V>[] newNodeArray() {
+    return (Node<K, V>[]) new Node[MAX_LEVEL];
+  }
+}
@@ -0,0 +1,196 @@
+package skip_list;
+
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentSkipListTest {
+  ConcurrentSkipList<String, String> list1;
+  ConcurrentSkipList<Integer, String> list2;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    list1 = new ConcurrentSkipList<String, String>();
+    list2 = new ConcurrentSkipList<Integer, String>();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    list1 = null;
+    list2 = null;
+  }
+
+  /**
+   * Run the same task on several threads and wait for all of them.
+   */
+  private void runThreads(int numThreads, Runnable task) throws Exception {
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < numThreads; i++)
+      threads.add(new Thread(task));
+    for (Thread thread : threads)
+      thread.start();
+    for (Thread thread : threads)
+      thread.join();
+  }
+
+  /**
+   * Insert, get, remove and traverse keys on a single thread.
+   */
+  @Test
+  void testCSL_001_insert_get_remove_single_thread() {
+    try {
+      Assert.assertEquals(null, list2.getKeyAtRoot());
+      Assert.assertEquals(0, list2.getHeight());
+      for (int key : new int[] {50, 20, 80, 10, 30, 70, 90})
+        list2.insert(key, "v" + key);
+      Assert.assertEquals(7, list2.numKeys());
+      Assert.assertEquals(List.of(10, 20, 30, 50, 70, 80, 90),
+          list2.getInOrderTraversal());
+      Assert.assertEquals(7, list2.getLevelOrderTraversal().size());
+      Assert.assertEquals(true, list2.getHeight() >= 1);
+      Assert.assertEquals(true, list2.getKeyAtRoot() != null);
+      Assert.assertEquals("v30", list2.get(30));
+      Assert.assertEquals(true, list2.contains(90));
+      Assert.assertEquals(false, list2.contains(60));
+
+      Assert.assertEquals(true, list2.remove(50));
+      Assert.assertEquals(false, list2.contains(50));
+      Assert.assertEquals(6, list2.numKeys());
+      Assert.assertEquals(List.of(10, 20, 30, 70, 80, 90),
+          list2.getInOrderTraversal());
+      list2.print();
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception CSL 001: " + e.getMessage());
+    }
+  }
+
+  /**
+   * The right child of the last key of its level is null, and the left child
+   * of a single-level tower is null.
+   */
+  @Test
+  void testCSL_002_structural_queries() {
+    try {
+      list1.insert("aa", "aa");
+      Assert.assertEquals("aa", list1.getKeyAtRoot());
+      Assert.assertEquals(null, list1.getKeyOfRightChildOf("aa"));
+      Assert.assertEquals(null, list1.getKeyOfLeftChildOf("aa"));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception CSL 002: " + e.getMessage());
+    }
+    try {
+      list1.getKeyOfLeftChildOf("zz");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+  }
+
+  /**
+   * Insert disjoint key ranges from several threads, then check every key.
+   */
+  @Test
+  void testCSL_003_concurrent_inserts() {
+    try {
+      AtomicInteger nextThread = new AtomicInteger();
+      runThreads(8, () -> {
+        int base = nextThread.getAndIncrement() * 1000;
+        try {
+          for (int i = 0; i < 1000; i++)
+            list2.insert(base + i, "v" + (base + i));
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      });
+      Assert.assertEquals(8000, list2.numKeys());
+      List<Integer> keys = list2.getInOrderTraversal();
+      Assert.assertEquals(8000, keys.size());
+      for (int i = 0; i < 8000; i++)
+        Assert.assertEquals(Integer.valueOf(i), keys.get(i));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception CSL 003: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Insert and remove the same keys from several threads. Each key ends up
+   * present or absent, and numKeys matches the keys left in the list.
+   */
+  @Test
+  void testCSL_004_concurrent_inserts_and_removes() {
+    try {
+      AtomicInteger inserted = new AtomicInteger();
+      AtomicInteger removed = new AtomicInteger();
+      runThreads(8, () -> {
+        for (int i = 0; i < 20000; i++) {
+          int key = (i * 7919) % 500;
+          try {
+            if ((i & 1) == 0) {
+              list2.insert(key, "v" + key);
+              inserted.incrementAndGet();
+            } else {
+              list2.remove(key);
+              removed.incrementAndGet();
+            }
+          } catch (Exception e) { // Lost the race on this key.
+          }
+        }
+      });
+      List<Integer> keys = list2.getInOrderTraversal();
+      Assert.assertEquals(inserted.get() - removed.get(), keys.size());
+      Assert.assertEquals(keys.size(), list2.numKeys());
+      for (int i = 1; i < keys.size(); i++)
+        Assert.assertEquals(true, keys.get(i - 1) < keys.get(i));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Unexpected exception CSL 004: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Check exception handling and edge cases.
+   */
+  @Test
+  void testCSL_005_check_exception_handling_and_edge_cases() {
+    try {
+      list1.insert(null, "value");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      list1.insert("aa", "value");
+      list1.insert("aa", "other");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      list1.remove("zz");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      list1.get("zz");
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    try {
+      list1.contains(null);
+      fail("Not supposed to reach here. Should have thrown exception.");
+    } catch (Exception e) {
+    }
+    Assert.assertEquals(1, list1.numKeys());
+  }
+}